@@ -7,4 +7,45 @@ public class Constants {
 
     public static final int LIGHT_OPERATION_TIMEOUT_MILLS=5000;
     public static final int HEAVY_OPERATION_TIMEOUT_MILLS=10000;
+    public static final int BULK_OPERATION_TIMEOUT_MILLS=120000;
+
+    public static final int ROLE_CACHE_MAX_SIZE=100000;
+    public static final long ROLE_CACHE_TTL_MILLS=60000;
+    public static final long ROLE_CACHE_NEGATIVE_TTL_MILLS=10000;
+
+    public static final long FAQ_CACHE_TTL_MILLS=600000;
+
+    public static final int MAX_ROLES_BATCH_SIZE=1000;
+    public static final int ROLES_QUERY_CHUNK_SIZE=500;
+
+    public static final int BULK_CHUNK_SIZE=500;
+    public static final int BULK_CONCURRENCY=2;
+    //У FAQ 3 параметра на строку, а MSSQL принимает не больше 2100 параметров в запросе
+    public static final int MAX_FAQ_BULK_CHUNK_SIZE=600;
+
+    public static final int EXPORT_PAGE_SIZE=1000;
+
+    public static final int SEARCH_DEFAULT_LIMIT=10;
+    public static final int SEARCH_MAX_LIMIT=50;
+    public static final int MAX_SEARCH_QUERY_LENGTH=500;
+
+    public static final int SUGGEST_DEFAULT_LIMIT=5;
+    public static final double SUGGEST_DEFAULT_MIN_SIMILARITY=0.3;
+
+    public static final int AUTOCOMPLETE_DEFAULT_LIMIT=8;
+
+    public static final int PAGE_DEFAULT_LIMIT=50;
+    public static final int PAGE_MAX_LIMIT=500;
+
+    public static final int CATALOG_CHANGES_DEFAULT_LIMIT=500;
+    public static final int CATALOG_CHANGES_MAX_LIMIT=1000;
+
+    //Отметка "полезно" весит как столько показов
+    public static final int FAQ_HELPFUL_WEIGHT=10;
+    //2 параметра на строку, в MSSQL не больше 2100 параметров в запросе
+    public static final int FAQ_STATS_FLUSH_CHUNK_SIZE=1000;
+
+    //У вопроса 3 параметра на строку, а MSSQL принимает не больше 2100 параметров в запросе
+    public static final int MAX_QUESTION_BATCH_SIZE=600;
+    public static final long INGEST_TICKET_TTL_MILLS=600000;
 }
@@ -0,0 +1,87 @@
+package ru.cache;
+
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import jakarta.inject.Inject;
+import ru.events.ChangeAction;
+import ru.events.FAQChangedEvent;
+import ru.events.ThemeChangedEvent;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+//Монотонные версии списка тем и FAQ каждой темы, используются как ETag.
+//Единственный наблюдатель изменений для кэшей списков: сначала сбрасываются кэши, затем растёт версия.
+//При обратном порядке запрос между ними получил бы новый ETag со старым телом и держал бы его до следующего изменения
+@ApplicationScoped
+public class CatalogVersions {
+
+    @Inject
+    FAQCache faqCache;
+
+    @Inject
+    JsonBodyCache bodyCache;
+
+    //Метка запуска: версии после рестарта начинаются заново и не должны совпасть со старыми ETag клиентов
+    private final String epoch = Long.toString(System.currentTimeMillis(), 36);
+
+    private final AtomicLong themesVersion = new AtomicLong();
+    private final ConcurrentHashMap<Integer, AtomicLong> faqVersions = new ConcurrentHashMap<>();
+    //Увеличивается, когда тема изменённого FAQ неизвестна - устаревают все темы сразу
+    private final AtomicLong allFaqVersion = new AtomicLong();
+
+    public String themesTag() {
+        return epoch + "-t" + themesVersion.get();
+    }
+
+    public String faqTag(Integer themeId) {
+        AtomicLong version = faqVersions.get(themeId);
+        return epoch + "-f" + themeId + "-" + allFaqVersion.get() + "." + (version == null ? 0 : version.get());
+    }
+
+    //Совпадает ли тег с одним из перечисленных в If-None-Match
+    public static boolean matches(String ifNoneMatch, String tag) {
+        if (ifNoneMatch == null || ifNoneMatch.isBlank()) {
+            return false;
+        }
+        for (String candidate : ifNoneMatch.split(",")) {
+            String value = candidate.trim();
+            if (value.startsWith("W/")) {
+                value = value.substring(2);
+            }
+            if (value.length() >= 2 && value.startsWith("\"") && value.endsWith("\"")) {
+                value = value.substring(1, value.length() - 1);
+            }
+            if (value.equals(tag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    void onFAQChanged(@Observes FAQChangedEvent event) {
+        faqCache.faqChanged(event);
+        bodyCache.faqChanged(event);
+        if (event.themeId() == null) {
+            allFaqVersion.incrementAndGet();
+            return;
+        }
+        bumpFaq(event.themeId());
+        if (event.previousThemeId() != null && !event.previousThemeId().equals(event.themeId())) {
+            bumpFaq(event.previousThemeId());
+        }
+    }
+
+    void onThemeChanged(@Observes ThemeChangedEvent event) {
+        faqCache.themeChanged(event);
+        bodyCache.themeChanged(event);
+        themesVersion.incrementAndGet();
+        if (event.action() == ChangeAction.DELETED) {
+            bumpFaq(event.themeId());
+        }
+    }
+
+    private void bumpFaq(Integer themeId) {
+        faqVersions.computeIfAbsent(themeId, id->new AtomicLong()).incrementAndGet();
+    }
+}
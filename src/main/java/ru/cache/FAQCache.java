@@ -0,0 +1,85 @@
+package ru.cache;
+
+import io.smallrye.mutiny.Uni;
+import jakarta.enterprise.context.ApplicationScoped;
+import ru.Constants;
+import ru.dto.FAQView;
+import ru.events.ChangeAction;
+import ru.events.FAQChangedEvent;
+import ru.events.ThemeChangedEvent;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+//Списки FAQ по темам. Сбрасывается при изменении FAQ и удалении темы
+@ApplicationScoped
+public class FAQCache {
+
+    private record CachedList(List<FAQView> faqs, long expiresAt) {}
+
+    private final ConcurrentHashMap<Integer, CachedList> byTheme = new ConcurrentHashMap<>();
+    //Увеличивается при каждом сбросе, чтобы не положить в кэш список, прочитанный до изменения
+    private final AtomicLong generation = new AtomicLong();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder invalidations = new LongAdder();
+
+    public Uni<List<FAQView>> get(Integer themeId, Supplier<Uni<List<FAQView>>> loader) {
+        CachedList cached = byTheme.get(themeId);
+        if (cached != null && cached.expiresAt() >= System.currentTimeMillis()) {
+            hits.increment();
+            return Uni.createFrom().item(cached.faqs());
+        }
+        misses.increment();
+        long loadGeneration = generation.get();
+        return loader.get().map(faqs->{
+            CachedList loaded = new CachedList(List.copyOf(faqs), System.currentTimeMillis() + Constants.FAQ_CACHE_TTL_MILLS);
+            if (generation.get() == loadGeneration) {
+                byTheme.put(themeId, loaded);
+                if (generation.get() != loadGeneration) {
+                    byTheme.remove(themeId, loaded);
+                }
+            }
+            return loaded.faqs();
+        });
+    }
+
+    public void invalidate(Integer themeId) {
+        generation.incrementAndGet();
+        invalidations.increment();
+        if (themeId == null) {
+            byTheme.clear();
+        } else {
+            byTheme.remove(themeId);
+        }
+    }
+
+    //Вызывается из CatalogVersions до смены версии, чтобы под новым ETag не отдать старое тело
+    void faqChanged(FAQChangedEvent event) {
+        invalidate(event.themeId());
+        if (event.previousThemeId() != null && !event.previousThemeId().equals(event.themeId())) {
+            invalidate(event.previousThemeId());
+        }
+    }
+
+    void themeChanged(ThemeChangedEvent event) {
+        if (event.action() == ChangeAction.DELETED) {
+            invalidate(event.themeId());
+        }
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("themes", byTheme.size());
+        stats.put("hits", hits.sum());
+        stats.put("misses", misses.sum());
+        stats.put("invalidations", invalidations.sum());
+        return stats;
+    }
+}
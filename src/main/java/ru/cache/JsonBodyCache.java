@@ -0,0 +1,148 @@
+package ru.cache;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.smallrye.mutiny.Uni;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import ru.events.ChangeAction;
+import ru.events.FAQChangedEvent;
+import ru.events.ThemeChangedEvent;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+import java.util.zip.GZIPOutputStream;
+
+//Готовые UTF-8 json тела ответов для списков тем и FAQ. Пересобираются только после изменения данных.
+//Тело хранит ETag, прочитанный до загрузки данных: запрос, присоединившийся к загрузке, начатой до изменения,
+//получает старое тело со старым тегом, а не с новым - иначе клиент получал бы 304 на устаревшие данные
+@ApplicationScoped
+public class JsonBodyCache {
+
+    public static final String THEMES_KEY = "themes";
+    private static final String FAQ_KEY_PREFIX = "faq:theme:";
+
+    public static String faqKey(Integer themeId) {
+        return FAQ_KEY_PREFIX + themeId;
+    }
+
+    public static final class CachedBody {
+        private final String tag;
+        private final byte[] json;
+        private volatile byte[] gzip;
+
+        private CachedBody(String tag, byte[] json) {
+            this.tag = tag;
+            this.json = json;
+        }
+
+        public String tag() {
+            return tag;
+        }
+
+        public byte[] json() {
+            return json;
+        }
+
+        //gzip вариант считается при первом запросе с Accept-Encoding: gzip
+        public byte[] gzip() {
+            byte[] compressed = gzip;
+            if (compressed == null) {
+                ByteArrayOutputStream out = new ByteArrayOutputStream(json.length / 4 + 64);
+                try (GZIPOutputStream gzipOut = new GZIPOutputStream(out)) {
+                    gzipOut.write(json);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                compressed = out.toByteArray();
+                gzip = compressed;
+            }
+            return compressed;
+        }
+    }
+
+    @Inject
+    ObjectMapper mapper;
+
+    private final ConcurrentHashMap<String, CachedBody> bodies = new ConcurrentHashMap<>();
+    private final AtomicLong generation = new AtomicLong();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder invalidations = new LongAdder();
+
+    //loader возвращает объект ответа (обёртку), который сериализуется один раз; tag - текущая версия данных.
+    //Тело с другим тегом (загружено между сбросом и сменой версии) считается устаревшим и загружается заново
+    public Uni<CachedBody> get(String key, Supplier<String> tag, Supplier<Uni<?>> loader) {
+        String currentTag = tag.get();
+        CachedBody cached = bodies.get(key);
+        if (cached != null) {
+            if (cached.tag().equals(currentTag)) {
+                hits.increment();
+                return Uni.createFrom().item(cached);
+            }
+            bodies.remove(key, cached);
+        }
+        misses.increment();
+        long loadGeneration = generation.get();
+        return loader.get().map(response->{
+            CachedBody body;
+            try {
+                body = new CachedBody(currentTag, mapper.writeValueAsBytes(response));
+            } catch (JsonProcessingException e) {
+                throw new UncheckedIOException(e);
+            }
+            if (generation.get() == loadGeneration) {
+                bodies.put(key, body);
+                if (generation.get() != loadGeneration) {
+                    bodies.remove(key, body);
+                }
+            }
+            return body;
+        });
+    }
+
+    public void invalidate(String key) {
+        generation.incrementAndGet();
+        invalidations.increment();
+        bodies.remove(key);
+    }
+
+    //Вызывается из CatalogVersions до смены версии, чтобы под новым ETag не отдать старое тело
+    void faqChanged(FAQChangedEvent event) {
+        if (event.themeId() == null) {
+            generation.incrementAndGet();
+            invalidations.increment();
+            bodies.keySet().removeIf(key->key.startsWith(FAQ_KEY_PREFIX));
+            return;
+        }
+        invalidate(faqKey(event.themeId()));
+        if (event.previousThemeId() != null) {
+            invalidate(faqKey(event.previousThemeId()));
+        }
+    }
+
+    void themeChanged(ThemeChangedEvent event) {
+        invalidate(THEMES_KEY);
+        if (event.action() == ChangeAction.DELETED) {
+            invalidate(faqKey(event.themeId()));
+        }
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("bodies", bodies.size());
+        stats.put("bytes", bodies.values().stream().mapToLong(body->body.json().length).sum());
+        stats.put("hits", hits.sum());
+        stats.put("misses", misses.sum());
+        stats.put("invalidations", invalidations.sum());
+        return stats;
+    }
+}
@@ -0,0 +1,95 @@
+package ru.cache;
+
+import jakarta.enterprise.context.ApplicationScoped;
+import ru.Constants;
+import ru.entities.Role;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+@ApplicationScoped
+public class RoleCache {
+
+    //Запись кэша. role == null - отрицательная запись (пользователь не найден)
+    public record CachedRole(Role role, long expiresAt) {
+        public boolean userExists() {
+            return role != null;
+        }
+    }
+
+    private final ConcurrentHashMap<Long, CachedRole> entries = new ConcurrentHashMap<>();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    //Получить роль из кэша, null - промах
+    public CachedRole get(Long userId) {
+        CachedRole cached = entries.get(userId);
+        if (cached == null) {
+            misses.increment();
+            return null;
+        }
+        if (cached.expiresAt() < System.currentTimeMillis()) {
+            if (entries.remove(userId, cached)) {
+                evictions.increment();
+            }
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        return cached;
+    }
+
+    //Запомнить роль пользователя
+    public void put(Long userId, Role role) {
+        store(userId, new CachedRole(role, System.currentTimeMillis() + Constants.ROLE_CACHE_TTL_MILLS));
+    }
+
+    //Запомнить что пользователь не существует
+    public void putMissing(Long userId) {
+        store(userId, new CachedRole(null, System.currentTimeMillis() + Constants.ROLE_CACHE_NEGATIVE_TTL_MILLS));
+    }
+
+    public void evict(Long userId) {
+        if (entries.remove(userId) != null) {
+            evictions.increment();
+        }
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("size", entries.size());
+        stats.put("hits", hits.sum());
+        stats.put("misses", misses.sum());
+        stats.put("evictions", evictions.sum());
+        return stats;
+    }
+
+    private void store(Long userId, CachedRole cached) {
+        if (entries.size() >= Constants.ROLE_CACHE_MAX_SIZE && !entries.containsKey(userId)) {
+            shrink();
+        }
+        entries.put(userId, cached);
+    }
+
+    //Сначала выкидываем просроченные записи, если их не хватило - произвольные 10% кэша
+    private void shrink() {
+        long now = System.currentTimeMillis();
+        entries.forEach((id, cached) -> {
+            if (cached.expiresAt() < now && entries.remove(id, cached)) {
+                evictions.increment();
+            }
+        });
+        int toRemove = entries.size() - Constants.ROLE_CACHE_MAX_SIZE * 9 / 10;
+        Iterator<Long> iterator = entries.keySet().iterator();
+        while (toRemove > 0 && iterator.hasNext()) {
+            iterator.next();
+            iterator.remove();
+            evictions.increment();
+            toRemove--;
+        }
+    }
+}
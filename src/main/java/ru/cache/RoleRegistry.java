@@ -0,0 +1,111 @@
+package ru.cache;
+
+import io.quarkus.hibernate.reactive.panache.Panache;
+import io.quarkus.runtime.StartupEvent;
+import io.quarkus.vertx.VertxContextSupport;
+import io.smallrye.mutiny.Uni;
+import io.vertx.core.Context;
+import io.vertx.core.Vertx;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import jakarta.ws.rs.NotFoundException;
+import org.jboss.logging.Logger;
+import ru.entities.Role;
+
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+@ApplicationScoped
+public class RoleRegistry {
+
+    public static final String USER_ROLE = "user";
+    public static final String ADMIN_ROLE = "admin";
+    public static final String BLOCKED_ROLE = "blocked";
+
+    private static final Map<String, String> NOT_FOUND_MESSAGES = Map.of(
+            USER_ROLE, "Default user role not found",
+            ADMIN_ROLE, "Admin user role not found",
+            BLOCKED_ROLE, "Blocked user role not found"
+    );
+
+    private final Logger logger = Logger.getLogger(RoleRegistry.class);
+
+    //Неизменяемые снимки таблицы User_Roles, null - ещё не загружены
+    private volatile Map<String, Role> rolesByName;
+    private volatile Map<Integer, Role> rolesById;
+
+    //Перечитывание, общее для всех обращений, пришедших до его окончания
+    private final AtomicReference<Uni<Void>> inFlightRefresh = new AtomicReference<>();
+
+    void onStart(@Observes StartupEvent event) {
+        try {
+            VertxContextSupport.subscribeAndAwait(this::refresh);
+        } catch (Throwable e) {
+            logger.warn("Не удалось загрузить роли при старте, загрузка будет выполнена при первом обращении", e);
+        }
+    }
+
+    //Перечитать роли из БД. Пока роли не загружены, каждое обращение вызывает refresh - одновременные вызовы
+    //присоединяются к уже идущему чтению, как в FAQIndex.load()
+    public Uni<Void> refresh() {
+        return Uni.createFrom().deferred(()->{
+            Uni<Void> shared = inFlightRefresh.get();
+            if (shared == null) {
+                AtomicReference<Uni<Void>> created = new AtomicReference<>();
+                created.set(load()
+                        .onTermination().invoke(()->inFlightRefresh.compareAndSet(created.get(), null))
+                        .memoize().indefinitely());
+                shared = inFlightRefresh.compareAndExchange(null, created.get());
+                if (shared == null) {
+                    shared = created.get();
+                }
+            }
+            //Результат возвращается в контекст своего запроса, а не того, который выполнил чтение
+            Context context = Vertx.currentContext();
+            if (context == null) {
+                return shared;
+            }
+            return shared.emitOn(task->context.runOnContext(v->task.run()));
+        });
+    }
+
+    private Uni<Void> load() {
+        return Panache.withSession(()->Role.<Role>listAll())
+                .invoke(roles->{
+                    rolesById = roles.stream()
+                            .collect(Collectors.toUnmodifiableMap(Role::getId, Function.identity()));
+                    rolesByName = roles.stream()
+                            .collect(Collectors.toUnmodifiableMap(Role::getName, Function.identity()));
+                })
+                .replaceWithVoid();
+    }
+
+    //Получить роль по имени. Запрос в БД только если роли ещё не загружены
+    public Uni<Role> getRole(String name) {
+        Map<String, Role> roles = rolesByName;
+        if(roles!=null) {
+            return lookup(roles, name);
+        }
+        return refresh().chain(()->lookup(rolesByName, name));
+    }
+
+    //Все роли по id. Запрос в БД только если роли ещё не загружены
+    public Uni<Map<Integer, Role>> getRolesById() {
+        Map<Integer, Role> roles = rolesById;
+        if(roles!=null) {
+            return Uni.createFrom().item(roles);
+        }
+        return refresh().map(v->rolesById);
+    }
+
+    private Uni<Role> lookup(Map<String, Role> roles, String name) {
+        Role role = roles.get(name);
+        if(role==null) {
+            return Uni.createFrom().failure(()->new NotFoundException(
+                    NOT_FOUND_MESSAGES.getOrDefault(name, "Role '" + name + "' not found")));
+        }
+        return Uni.createFrom().item(role);
+    }
+}
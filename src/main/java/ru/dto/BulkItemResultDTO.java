@@ -0,0 +1,35 @@
+package ru.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import org.eclipse.microprofile.openapi.annotations.media.Schema;
+
+@Schema(description = "Результат обработки одного элемента пакетной операции")
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class BulkItemResultDTO {
+
+    public static final String CREATED = "created";
+    public static final String UPDATED = "updated";
+    public static final String EXISTS = "exists";
+    public static final String DUPLICATE = "duplicate";
+    public static final String INVALID = "invalid";
+    public static final String FAILED = "failed";
+
+    @Schema(description = "Порядковый номер элемента во входных данных, начиная с 0")
+    public long index;
+
+    @Schema(description = "Id записи, если известен")
+    public Long id;
+
+    @Schema(description = "Итог: created, updated, exists, duplicate, invalid или failed")
+    public String status;
+
+    @Schema(description = "Причина для invalid и failed")
+    public String message;
+
+    public BulkItemResultDTO(long index, Long id, String status, String message) {
+        this.index = index;
+        this.id = id;
+        this.status = status;
+        this.message = message;
+    }
+}
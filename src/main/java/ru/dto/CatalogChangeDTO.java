@@ -0,0 +1,37 @@
+package ru.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import org.eclipse.microprofile.openapi.annotations.media.Schema;
+import ru.entities.Theme;
+
+@Schema(description = "Изменение каталога из журнала вместе с текущим состоянием записи")
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class CatalogChangeDTO {
+
+    @Schema(description = "Версия изменения, строго возрастает")
+    public long version;
+
+    @Schema(description = "Тип записи: theme или faq")
+    public String entityType;
+
+    @Schema(description = "Id записи")
+    public long entityId;
+
+    @Schema(description = "CREATED, UPDATED или DELETED")
+    public String action;
+
+    @Schema(description = "Текущее состояние FAQ. Нет для DELETED и для записей, удалённых позже этого изменения")
+    public FAQExportDTO faq;
+
+    @Schema(description = "Текущее состояние темы. Нет для DELETED и для записей, удалённых позже этого изменения")
+    public Theme theme;
+
+    public CatalogChangeDTO(long version, String entityType, long entityId, String action, FAQExportDTO faq, Theme theme) {
+        this.version = version;
+        this.entityType = entityType;
+        this.entityId = entityId;
+        this.action = action;
+        this.faq = faq;
+        this.theme = theme;
+    }
+}
@@ -0,0 +1,24 @@
+package ru.dto;
+
+import org.eclipse.microprofile.openapi.annotations.media.Schema;
+
+import java.util.List;
+
+@Schema(description = "Изменения каталога после указанной версии")
+public class CatalogChangesDTO {
+
+    @Schema(description = "Версия, до которой применены изменения; передаётся как since в следующем запросе")
+    public long version;
+
+    @Schema(description = "Есть ли ещё изменения после version")
+    public boolean hasMore;
+
+    @Schema(description = "Изменения по возрастанию версии")
+    public List<CatalogChangeDTO> changes;
+
+    public CatalogChangesDTO(long version, boolean hasMore, List<CatalogChangeDTO> changes) {
+        this.version = version;
+        this.hasMore = hasMore;
+        this.changes = changes;
+    }
+}
@@ -0,0 +1,25 @@
+package ru.dto;
+
+import org.eclipse.microprofile.openapi.annotations.media.Schema;
+import ru.entities.Theme;
+
+import java.util.List;
+
+@Schema(description = "Полный снимок каталога: все темы и FAQ с версией журнала изменений")
+public class CatalogSnapshotDTO {
+
+    @Schema(description = "Версия журнала на момент начала чтения снимка")
+    public long version;
+
+    @Schema(description = "Все темы по возрастанию Id")
+    public List<Theme> themes;
+
+    @Schema(description = "Все FAQ по возрастанию Id")
+    public List<FAQExportDTO> faqs;
+
+    public CatalogSnapshotDTO(long version, List<Theme> themes, List<FAQExportDTO> faqs) {
+        this.version = version;
+        this.themes = themes;
+        this.faqs = faqs;
+    }
+}
@@ -0,0 +1,34 @@
+package ru.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import org.eclipse.microprofile.openapi.annotations.media.Schema;
+
+@Schema(description = "Уведомление об изменении темы, FAQ или роли пользователя. Содержит только ключ записи, данные запрашиваются отдельно")
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class ChangeNotificationDTO {
+
+    public static final String RESYNC = "resync";
+
+    @Schema(description = "Тип записи: theme, faq, role или resync - часть уведомлений потеряна и локальную копию нужно догрузить")
+    public String entityType;
+
+    @Schema(description = "Id записи (для role - MAX_ID пользователя)")
+    public Long entityId;
+
+    @Schema(description = "CREATED, UPDATED или DELETED")
+    public String action;
+
+    @Schema(description = "Версия в журнале изменений каталога (для theme и faq)")
+    public Long version;
+
+    @Schema(description = "Новая роль (для role)")
+    public String role;
+
+    public ChangeNotificationDTO(String entityType, Long entityId, String action, Long version, String role) {
+        this.entityType = entityType;
+        this.entityId = entityId;
+        this.action = action;
+        this.version = version;
+        this.role = role;
+    }
+}
@@ -0,0 +1,26 @@
+package ru.dto;
+
+import org.eclipse.microprofile.openapi.annotations.media.Schema;
+
+@Schema(description = "Вариант автодополнения: вопрос FAQ или название темы")
+public class CompletionDTO {
+
+    @Schema(description = "Тип варианта: faq или theme")
+    public String type;
+
+    @Schema(description = "Id записи FAQ или темы")
+    public Long id;
+
+    @Schema(description = "Полный текст вопроса или название темы")
+    public String text;
+
+    @Schema(description = "Вес популярности, по которому отсортированы варианты")
+    public long weight;
+
+    public CompletionDTO(String type, Long id, String text, long weight) {
+        this.type = type;
+        this.id = id;
+        this.text = text;
+        this.weight = weight;
+    }
+}
@@ -0,0 +1,30 @@
+package ru.dto;
+
+import org.eclipse.microprofile.openapi.annotations.media.Schema;
+
+@Schema(description = "Запись FAQ для выгрузки каталога, вместе с темой")
+public class FAQExportDTO {
+
+    @Schema(description = "Id записи FAQ")
+    public Long id;
+
+    @Schema(description = "Текст вопроса")
+    public String question;
+
+    @Schema(description = "Текст ответа")
+    public String answer;
+
+    @Schema(description = "Id темы")
+    public Integer themeId;
+
+    @Schema(description = "Название темы")
+    public String theme;
+
+    public FAQExportDTO(Long id, String question, String answer, Integer themeId, String theme) {
+        this.id = id;
+        this.question = question;
+        this.answer = answer;
+        this.themeId = themeId;
+        this.theme = theme;
+    }
+}
@@ -0,0 +1,34 @@
+package ru.dto;
+
+import org.eclipse.microprofile.openapi.annotations.media.Schema;
+
+@Schema(description = "Запись FAQ со счётчиками показов и отметок \"полезно\"")
+public class FAQPopularityDTO {
+
+    @Schema(description = "Id записи FAQ")
+    public Long id;
+
+    @Schema(description = "Текст вопроса")
+    public String question;
+
+    @Schema(description = "Id темы")
+    public Integer themeId;
+
+    @Schema(description = "Название темы")
+    public String theme;
+
+    @Schema(description = "Сколько раз FAQ был отдан в списке своей темы")
+    public long views;
+
+    @Schema(description = "Сколько раз FAQ отмечен полезным")
+    public long helpful;
+
+    public FAQPopularityDTO(Long id, String question, Integer themeId, String theme, long views, long helpful) {
+        this.id = id;
+        this.question = question;
+        this.themeId = themeId;
+        this.theme = theme;
+        this.views = views;
+        this.helpful = helpful;
+    }
+}
@@ -0,0 +1,30 @@
+package ru.dto;
+
+import org.eclipse.microprofile.openapi.annotations.media.Schema;
+
+@Schema(description = "Запись FAQ, найденная поиском, и её релевантность")
+public class FAQSearchHitDTO {
+
+    @Schema(description = "Id записи FAQ")
+    public Long id;
+
+    @Schema(description = "Текст вопроса")
+    public String question;
+
+    @Schema(description = "Текст ответа")
+    public String answer;
+
+    @Schema(description = "Название темы")
+    public String theme;
+
+    @Schema(description = "Релевантность, чем больше - тем лучше совпадение")
+    public double score;
+
+    public FAQSearchHitDTO(Long id, String question, String answer, String theme, double score) {
+        this.id = id;
+        this.question = question;
+        this.answer = answer;
+        this.theme = theme;
+        this.score = score;
+    }
+}
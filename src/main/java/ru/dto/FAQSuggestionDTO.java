@@ -0,0 +1,22 @@
+package ru.dto;
+
+import org.eclipse.microprofile.openapi.annotations.media.Schema;
+
+@Schema(description = "Вопрос FAQ, похожий на текст пользователя")
+public class FAQSuggestionDTO {
+
+    @Schema(description = "Id записи FAQ")
+    public Long id;
+
+    @Schema(description = "Текст вопроса FAQ")
+    public String question;
+
+    @Schema(description = "Сходство по триграммам от 0 до 1")
+    public double similarity;
+
+    public FAQSuggestionDTO(Long id, String question, double similarity) {
+        this.id = id;
+        this.question = question;
+        this.similarity = similarity;
+    }
+}
@@ -0,0 +1,12 @@
+package ru.dto;
+
+import org.eclipse.microprofile.openapi.annotations.media.Schema;
+
+//Запись FAQ для списков: ровно те поля, что уходят клиенту (тот же json, что у сущности FAQ)
+@Schema(description = "Запись FAQ")
+public record FAQView(
+        @Schema(description = "Id записи FAQ") Long id,
+        @Schema(description = "Текст вопроса") String question,
+        @Schema(description = "Текст ответа") String answer,
+        @Schema(description = "Название темы") String theme) {
+}
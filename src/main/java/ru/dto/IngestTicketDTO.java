@@ -0,0 +1,32 @@
+package ru.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import org.eclipse.microprofile.openapi.annotations.media.Schema;
+
+@Schema(description = "Квитанция асинхронно принятого вопроса и состояние его сохранения")
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class IngestTicketDTO {
+
+    public static final String QUEUED = "queued";
+    public static final String SAVED = "saved";
+    public static final String FAILED = "failed";
+
+    @Schema(description = "Номер квитанции")
+    public String ticket;
+
+    @Schema(description = "queued - ждёт записи в БД, saved - сохранён, failed - не сохранён")
+    public String status;
+
+    @Schema(description = "Id сохранённого вопроса (для saved)")
+    public Long questionId;
+
+    @Schema(description = "Причина для failed")
+    public String message;
+
+    public IngestTicketDTO(String ticket, String status, Long questionId, String message) {
+        this.ticket = ticket;
+        this.status = status;
+        this.questionId = questionId;
+        this.message = message;
+    }
+}
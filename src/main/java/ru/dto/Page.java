@@ -0,0 +1,7 @@
+package ru.dto;
+
+import java.util.List;
+
+//Страница списка и курсор следующей страницы (null - страница последняя)
+public record Page<T>(List<T> items, String nextCursor) {
+}
@@ -0,0 +1,27 @@
+package ru.dto;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
+import org.eclipse.microprofile.openapi.annotations.media.Schema;
+import ru.Constants;
+
+import java.util.List;
+
+@Schema(description = "DTO со списком Id пользователей для пакетного запроса")
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class UserIdsDTO {
+
+    @Schema(
+            description = "Id пользователей (MAX_ID)",
+            required = true,
+            maxItems = Constants.MAX_ROLES_BATCH_SIZE
+    )
+    @NotEmpty(message = "Ids can not be empty")
+    @Size(max = Constants.MAX_ROLES_BATCH_SIZE, message = "Ids cannot contain more than " + Constants.MAX_ROLES_BATCH_SIZE + " elements")
+    public List<@NotNull(message = "Id can not be null") @Min(value = 1, message = "Id must be positive number") Long> ids;
+
+    public UserIdsDTO() {}
+}
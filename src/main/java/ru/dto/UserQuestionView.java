@@ -0,0 +1,14 @@
+package ru.dto;
+
+import org.eclipse.microprofile.openapi.annotations.media.Schema;
+
+import java.time.LocalDateTime;
+
+//Вопрос пользователя для списков: ровно те поля, что уходят клиенту (тот же json, что у сущности UserQuestion)
+@Schema(description = "Вопрос пользователя")
+public record UserQuestionView(
+        @Schema(description = "Id вопроса") Long id,
+        @Schema(description = "Текст вопроса") String question,
+        @Schema(description = "Текст ответа, null если ответа ещё нет") String answer,
+        @Schema(description = "Дата создания вопроса") LocalDateTime questionCreationDate) {
+}
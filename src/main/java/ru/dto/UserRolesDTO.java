@@ -0,0 +1,21 @@
+package ru.dto;
+
+import org.eclipse.microprofile.openapi.annotations.media.Schema;
+
+import java.util.List;
+import java.util.Map;
+
+@Schema(description = "Роли пользователей, найденные пакетным запросом")
+public class UserRolesDTO {
+
+    @Schema(description = "Имя роли по Id пользователя")
+    public Map<Long, String> roles;
+
+    @Schema(description = "Id пользователей, которых нет в системе")
+    public List<Long> missing;
+
+    public UserRolesDTO(Map<Long, String> roles, List<Long> missing) {
+        this.roles = roles;
+        this.missing = missing;
+    }
+}
@@ -0,0 +1,22 @@
+package ru.endPoints;
+
+import io.vertx.core.buffer.Buffer;
+import jakarta.ws.rs.core.HttpHeaders;
+import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.Response;
+import ru.cache.JsonBodyCache;
+
+//Ответы из заранее сериализованных тел, без повторного прохода Jackson
+final class CachedResponses {
+
+    private CachedResponses() {}
+
+    static Response.ResponseBuilder ok(JsonBodyCache.CachedBody body, String acceptEncoding) {
+        Response.ResponseBuilder builder = Response.ok().type(MediaType.APPLICATION_JSON_TYPE)
+                .header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        if (acceptEncoding != null && acceptEncoding.contains("gzip")) {
+            return builder.entity(Buffer.buffer(body.gzip())).header(HttpHeaders.CONTENT_ENCODING, "gzip");
+        }
+        return builder.entity(Buffer.buffer(body.json()));
+    }
+}
@@ -0,0 +1,239 @@
+package ru.endPoints;
+
+import io.smallrye.mutiny.Uni;
+import jakarta.inject.Inject;
+import jakarta.ws.rs.DefaultValue;
+import jakarta.ws.rs.GET;
+import jakarta.ws.rs.Path;
+import jakarta.ws.rs.Produces;
+import jakarta.ws.rs.QueryParam;
+import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.Response;
+import org.eclipse.microprofile.faulttolerance.Bulkhead;
+import org.eclipse.microprofile.faulttolerance.Timeout;
+import org.eclipse.microprofile.openapi.annotations.Operation;
+import org.eclipse.microprofile.openapi.annotations.media.Content;
+import org.eclipse.microprofile.openapi.annotations.media.Schema;
+import org.eclipse.microprofile.openapi.annotations.parameters.Parameter;
+import org.eclipse.microprofile.openapi.annotations.responses.APIResponse;
+import org.eclipse.microprofile.openapi.annotations.tags.Tag;
+import ru.Constants;
+import ru.repositories.CatalogRepository;
+import ru.wrappers.CatalogChangesResponseWrapper;
+import ru.wrappers.CatalogSnapshotResponseWrapper;
+
+@Path("/DB/catalog")
+@Produces(MediaType.APPLICATION_JSON)
+@Tag(name = "Catalog Resource", description = "Синхронизация локальных копий тем и FAQ: полный снимок и изменения после версии")
+public class CatalogResource {
+
+    @Inject
+    CatalogRepository repo;
+
+    //Полный снимок каталога с версией
+    @GET
+    @Path("/snapshot")
+    @Timeout(Constants.HEAVY_OPERATION_TIMEOUT_MILLS)
+    @Bulkhead(value = 2, waitingTaskQueue = 10)
+    @Operation(summary = "Получить все темы и FAQ с версией журнала изменений",
+                description = "Нужен один раз при запуске реплики (или после потери версии). Дальше реплика запрашивает только " +
+                        "/changes с полученной версией. Изменения, сделанные во время чтения снимка, могут уже быть в нём " +
+                        "и прийти ещё раз в /changes - их повторное применение ничего не меняет."
+    )
+    @APIResponse(
+            responseCode = "200",
+            description = "Снимок каталога",
+            content = @Content(
+                    mediaType = MediaType.APPLICATION_JSON,
+                    schema = @Schema(implementation = CatalogSnapshotResponseWrapper.class),
+                    example = """
+                            {
+                                "data": {
+                                    "version": 1542,
+                                    "themes": [
+                                        {
+                                            "id": 1,
+                                            "name": "Поступление"
+                                        }
+                                    ],
+                                    "faqs": [
+                                        {
+                                            "id": 1,
+                                            "question": "Как поступить?",
+                                            "answer": "Подать документы в приёмную комиссию.",
+                                            "themeId": 1,
+                                            "theme": "Поступление"
+                                        }
+                                    ]
+                                },
+                                "message": "success"
+                            }
+                    """
+            )
+    )
+    @APIResponse(
+            responseCode = "408",
+            description = "Таймаут запроса",
+            content = @Content(
+                    mediaType = MediaType.APPLICATION_JSON,
+                    schema = @Schema(implementation = CatalogSnapshotResponseWrapper.class),
+                    example = """
+                            {
+                                "data": null,
+                                "message": "Request timeout. Try again later."
+                            }
+                            """
+            )
+    )
+    @APIResponse(
+            responseCode = "429",
+            description = "Слишком много одновременных запросов снимка",
+            content = @Content(
+                    mediaType = MediaType.APPLICATION_JSON,
+                    schema = @Schema(implementation = CatalogSnapshotResponseWrapper.class),
+                    example = """
+                            {
+                                "data": null,
+                                "message": "Service experience high loads. Try again later."
+                            }
+                    """
+            )
+    )
+    @APIResponse(
+            responseCode = "503",
+            description = "Ошибка подключения к БД",
+            content = @Content(
+                    mediaType = MediaType.APPLICATION_JSON,
+                    schema = @Schema(implementation = CatalogSnapshotResponseWrapper.class),
+                    example = """
+                            {
+                                "data": null,
+                                "message": "SqlServer Exception occurred: Unable to connect to database"
+                            }
+                    """
+            )
+    )
+    public Uni<Response> snapshot() {
+        return repo.snapshot().onItem()
+                .transform(snapshot->Response.ok().entity(new CatalogSnapshotResponseWrapper(snapshot)).build());
+    }
+
+    //Изменения после версии
+    @GET
+    @Path("/changes")
+    @Timeout(Constants.LIGHT_OPERATION_TIMEOUT_MILLS)
+    @Operation(summary = "Получить изменения тем и FAQ после версии since",
+                description = "Изменения отдаются по возрастанию версии вместе с текущим состоянием записи. " +
+                        "Для DELETED и для записей, удалённых позже, состояния нет - их удаление придёт отдельным изменением. " +
+                        "Удаление темы записывается вместе с удалением всех её FAQ. " +
+                        "Полученную version нужно передать как since в следующем запросе; при hasMore = true запросить сразу ещё раз."
+    )
+    @Parameter(
+            name = "since",
+            description = "Последняя применённая версия (из снимка или предыдущего ответа)",
+            required = true,
+            example = "1542",
+            schema = @Schema(implementation = Long.class)
+    )
+    @Parameter(
+            name = "limit",
+            description = "Максимальное количество изменений в ответе (1-" + Constants.CATALOG_CHANGES_MAX_LIMIT + ")",
+            example = "500",
+            schema = @Schema(implementation = Integer.class, defaultValue = "" + Constants.CATALOG_CHANGES_DEFAULT_LIMIT)
+    )
+    @APIResponse(
+            responseCode = "200",
+            description = "Изменения после since, список может быть пустым",
+            content = @Content(
+                    mediaType = MediaType.APPLICATION_JSON,
+                    schema = @Schema(implementation = CatalogChangesResponseWrapper.class),
+                    example = """
+                            {
+                                "data": {
+                                    "version": 1545,
+                                    "hasMore": false,
+                                    "changes": [
+                                        {
+                                            "version": 1543,
+                                            "entityType": "theme",
+                                            "entityId": 12,
+                                            "action": "CREATED",
+                                            "theme": {
+                                                "id": 12,
+                                                "name": "Общежитие"
+                                            }
+                                        },
+                                        {
+                                            "version": 1544,
+                                            "entityType": "faq",
+                                            "entityId": 415,
+                                            "action": "UPDATED",
+                                            "faq": {
+                                                "id": 415,
+                                                "question": "Как заселиться в общежитие?",
+                                                "answer": "Обратиться в студгородок с направлением.",
+                                                "themeId": 12,
+                                                "theme": "Общежитие"
+                                            }
+                                        },
+                                        {
+                                            "version": 1545,
+                                            "entityType": "faq",
+                                            "entityId": 97,
+                                            "action": "DELETED"
+                                        }
+                                    ]
+                                },
+                                "message": "success"
+                            }
+                    """
+            )
+    )
+    @APIResponse(
+            responseCode = "400",
+            description = "Отрицательная версия или некорректный limit",
+            content = @Content(
+                    mediaType = MediaType.APPLICATION_JSON,
+                    schema = @Schema(implementation = CatalogChangesResponseWrapper.class),
+                    example = """
+                            {
+                                "data": null,
+                                "message": "Version cannot be negative"
+                            }
+                    """
+            )
+    )
+    @APIResponse(
+            responseCode = "408",
+            description = "Таймаут запроса",
+            content = @Content(
+                    mediaType = MediaType.APPLICATION_JSON,
+                    schema = @Schema(implementation = CatalogChangesResponseWrapper.class),
+                    example = """
+                            {
+                                "data": null,
+                                "message": "Request timeout. Try again later."
+                            }
+                            """
+            )
+    )
+    @APIResponse(
+            responseCode = "503",
+            description = "Ошибка подключения к БД",
+            content = @Content(
+                    mediaType = MediaType.APPLICATION_JSON,
+                    schema = @Schema(implementation = CatalogChangesResponseWrapper.class),
+                    example = """
+                            {
+                                "data": null,
+                                "message": "SqlServer Exception occurred: Unable to connect to database"
+                            }
+                    """
+            )
+    )
+    public Uni<Response> changes(@QueryParam("since") long since,
+                                 @QueryParam("limit") @DefaultValue("" + Constants.CATALOG_CHANGES_DEFAULT_LIMIT) int limit) {
+        return repo.changesSince(since, limit).onItem()
+                .transform(changes->Response.ok().entity(new CatalogChangesResponseWrapper(changes)).build());
+    }
+}
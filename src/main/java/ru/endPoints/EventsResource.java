@@ -0,0 +1,55 @@
+package ru.endPoints;
+
+import io.smallrye.mutiny.Multi;
+import jakarta.inject.Inject;
+import jakarta.ws.rs.GET;
+import jakarta.ws.rs.Path;
+import jakarta.ws.rs.Produces;
+import jakarta.ws.rs.core.MediaType;
+import org.eclipse.microprofile.openapi.annotations.Operation;
+import org.eclipse.microprofile.openapi.annotations.media.Content;
+import org.eclipse.microprofile.openapi.annotations.media.Schema;
+import org.eclipse.microprofile.openapi.annotations.responses.APIResponse;
+import org.eclipse.microprofile.openapi.annotations.tags.Tag;
+import org.jboss.resteasy.reactive.RestStreamElementType;
+import ru.dto.ChangeNotificationDTO;
+import ru.events.ChangeBroadcaster;
+
+@Path("/DB/events")
+@Tag(name = "Events Resource", description = "Уведомления об изменениях тем, FAQ и ролей пользователей")
+public class EventsResource {
+
+    @Inject
+    ChangeBroadcaster broadcaster;
+
+    //Подписка на уведомления об изменениях
+    @GET
+    @Path("/stream")
+    @Produces(MediaType.SERVER_SENT_EVENTS)
+    @RestStreamElementType(MediaType.APPLICATION_JSON)
+    @Operation(summary = "Подписаться на уведомления об изменениях (Server-Sent Events)",
+                description = "После коммита каждого изменения темы, FAQ или роли пользователя отправляет событие с типом и Id записи " +
+                        "и версией журнала каталога. Уведомления, которые клиент не успевает читать, копятся в ограниченной очереди; " +
+                        "при её переполнении самые старые выбрасываются и клиент получает событие с entityType = resync - " +
+                        "тогда нужно догрузить каталог через /DB/catalog/changes с последней применённой версией и сбросить кэш ролей. " +
+                        "Уведомления, сделанные до подключения, не повторяются."
+    )
+    @APIResponse(
+            responseCode = "200",
+            description = "Поток событий",
+            content = @Content(
+                    mediaType = MediaType.SERVER_SENT_EVENTS,
+                    schema = @Schema(implementation = ChangeNotificationDTO.class),
+                    example = """
+                            data:{"entityType":"faq","entityId":415,"action":"UPDATED","version":1544}
+
+                            data:{"entityType":"role","entityId":123456789,"action":"UPDATED","role":"admin"}
+
+                            data:{"entityType":"resync"}
+                    """
+            )
+    )
+    public Multi<ChangeNotificationDTO> stream() {
+        return broadcaster.subscribe();
+    }
+}
@@ -1,10 +1,14 @@
 package ru.endPoints;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.smallrye.common.annotation.Blocking;
+import io.smallrye.mutiny.Multi;
 import io.smallrye.mutiny.Uni;
 import jakarta.inject.Inject;
 import jakarta.validation.Valid;
 import jakarta.validation.constraints.NotNull;
 import jakarta.ws.rs.*;
+import jakarta.ws.rs.core.HttpHeaders;
 import jakarta.ws.rs.core.MediaType;
 import jakarta.ws.rs.core.Response;
 import org.eclipse.microprofile.faulttolerance.Bulkhead;
@@ -17,12 +21,29 @@ import org.eclipse.microprofile.openapi.annotations.parameters.Parameter;
 import org.eclipse.microprofile.openapi.annotations.parameters.RequestBody;
 import org.eclipse.microprofile.openapi.annotations.responses.APIResponse;
 import org.eclipse.microprofile.openapi.annotations.tags.Tag;
+import org.jboss.resteasy.reactive.RestStreamElementType;
+import org.jboss.resteasy.reactive.common.util.RestMediaType;
 import ru.Constants;
+import ru.cache.CatalogVersions;
+import ru.cache.JsonBodyCache;
+import ru.wrappers.BulkResultResponseWrapper;
+import ru.wrappers.CompletionsResponseWrapper;
 import ru.wrappers.FAQListResponseWrapper;
+import ru.wrappers.FAQPopularityResponseWrapper;
 import ru.wrappers.FAQResponseWrapper;
+import ru.wrappers.FAQSearchResponseWrapper;
+import ru.wrappers.FAQSuggestionsResponseWrapper;
 import ru.dto.FAQDTO;
+import ru.dto.FAQExportDTO;
 import ru.dto.FAQFullDTO;
 import ru.repositories.FAQRepository;
+import ru.repositories.FAQStatsRepository;
+import ru.search.FAQSearchIndex;
+import ru.search.FAQVectorIndex;
+import ru.search.TypeaheadIndex;
+import ru.stats.FAQStats;
+
+import java.io.InputStream;
 
 @Path("/DB/FAQ")
 @Produces(MediaType.APPLICATION_JSON)
@@ -32,6 +53,33 @@ public class FAQResource {
     @Inject
     FAQRepository repo;
 
+    @Inject
+    ObjectMapper mapper;
+
+    @Inject
+    SingleFlight singleFlight;
+
+    @Inject
+    JsonBodyCache bodyCache;
+
+    @Inject
+    CatalogVersions versions;
+
+    @Inject
+    FAQSearchIndex searchIndex;
+
+    @Inject
+    TypeaheadIndex typeahead;
+
+    @Inject
+    FAQVectorIndex vectorIndex;
+
+    @Inject
+    FAQStats faqStats;
+
+    @Inject
+    FAQStatsRepository statsRepo;
+
     @GET
     @Path("/getAllByTheme/{id}")
     @Timeout(Constants.LIGHT_OPERATION_TIMEOUT_MILLS)
@@ -43,7 +91,10 @@ public class FAQResource {
             successThreshold = 2
     )
     @Operation(summary = "Получить все FAQ по ID темы",
-                description = "Возвращает список FAQ в виде json массива в обёртке."
+                description = "Возвращает список FAQ в виде json массива в обёртке. " +
+                        "Возвращает ETag версии темы. При повторном запросе с If-None-Match отвечает 304, если FAQ темы не менялись. " +
+                        "С параметрами limit/cursor возвращает страницу FAQ по возрастанию Id и nextCursor, если есть следующая страница; " +
+                        "такие запросы идут в БД мимо кэша."
     )
     @Parameter(
             name = "id",
@@ -52,6 +103,17 @@ public class FAQResource {
             example = "5",
             schema = @Schema(implementation = Integer.class)
     )
+    @Parameter(
+            name = "limit",
+            description = "Размер страницы (1-" + Constants.PAGE_MAX_LIMIT + "). Без limit и cursor возвращается весь список",
+            example = "50",
+            schema = @Schema(implementation = Integer.class, defaultValue = "" + Constants.PAGE_DEFAULT_LIMIT)
+    )
+    @Parameter(
+            name = "cursor",
+            description = "nextCursor из ответа с предыдущей страницей. Без него возвращается первая страница",
+            schema = @Schema(implementation = String.class)
+    )
     @RequestBody(required = false)
     @APIResponse(
             responseCode = "200",
@@ -80,9 +142,13 @@ public class FAQResource {
             """
             )
     )
+    @APIResponse(
+            responseCode = "304",
+            description = "Данные не изменились с версии, переданной в If-None-Match. Тело ответа пустое, БД не запрашивается."
+    )
     @APIResponse(
             responseCode = "400",
-            description = "Некорректный Id темы (число <=0). Иное поведение при вводе текста.",
+            description = "Некорректный Id темы (число <=0), limit или cursor. Иное поведение при вводе текста.",
             content = @Content(
                     mediaType = MediaType.APPLICATION_JSON,
                     schema = @Schema(implementation = FAQListResponseWrapper.class),
@@ -166,9 +232,496 @@ public class FAQResource {
                     """
             )
     )
-    public Uni<Response> getAllByTheme(@PathParam("id") Integer id) {
-        return repo.findByThemeId(id).onItem()
-                .transform(res->Response.ok().entity(new FAQListResponseWrapper(res)).build());
+    public Uni<Response> getAllByTheme(@PathParam("id") Integer id,
+                                       @QueryParam("limit") Integer limit,
+                                       @QueryParam("cursor") String cursor,
+                                       @HeaderParam(HttpHeaders.ACCEPT_ENCODING) String acceptEncoding,
+                                       @HeaderParam(HttpHeaders.IF_NONE_MATCH) String ifNoneMatch) {
+        //Текущая версия - для If-None-Match и страниц: если данные изменятся во время чтения, клиент просто перезапросит их
+        String tag = versions.faqTag(id);
+        if (CatalogVersions.matches(ifNoneMatch, tag)) {
+            if (cursor == null) {
+                faqStats.themeServed(id);
+            }
+            return Uni.createFrom().item(Response.notModified().tag(tag).build());
+        }
+        //Страницы не кэшируются: их много и повторяются они редко. Показ темы считается по первой странице
+        if (limit != null || cursor != null) {
+            return repo.findPageByThemeId(id, cursor, limit != null ? limit : Constants.PAGE_DEFAULT_LIMIT)
+                    .onItem().invoke(()->{
+                        if (cursor == null) {
+                            faqStats.themeServed(id);
+                        }
+                    })
+                    .onItem().transform(page->Response.ok().entity(new FAQListResponseWrapper(page.items(), page.nextCursor())).tag(tag).build());
+        }
+        //Тег ответа берётся из тела: общая загрузка могла начаться до изменения, тогда и тег у неё старый
+        return singleFlight.execute("faq:theme:" + id, ()->bodyCache.get(JsonBodyCache.faqKey(id), ()->versions.faqTag(id),
+                        ()->repo.findByThemeId(id).map(FAQListResponseWrapper::new)))
+                .onItem().invoke(()->faqStats.themeServed(id))
+                .onItem().transform(body->CachedResponses.ok(body, acceptEncoding).tag(body.tag()).build());
+    }
+
+    @GET
+    @Path("/search")
+    @Timeout(Constants.LIGHT_OPERATION_TIMEOUT_MILLS)
+    @Operation(summary = "Полнотекстовый поиск по вопросам и ответам FAQ",
+                description = "Ищет по всем темам без запросов к БД. Учитывает словоформы (лёгкий стемминг), регистр и ё/е не важны. " +
+                        "Результаты отсортированы по релевантности (BM25), совпадения в вопросе весят больше совпадений в ответе."
+    )
+    @Parameter(
+            name = "q",
+            description = "Текст запроса",
+            required = true,
+            example = "когда начинается сессия",
+            schema = @Schema(implementation = String.class)
+    )
+    @Parameter(
+            name = "limit",
+            description = "Максимальное количество результатов (1-" + Constants.SEARCH_MAX_LIMIT + ")",
+            example = "10",
+            schema = @Schema(implementation = Integer.class, defaultValue = "" + Constants.SEARCH_DEFAULT_LIMIT)
+    )
+    @APIResponse(
+            responseCode = "200",
+            description = "Найденные FAQ, список может быть пустым",
+            content = @Content(
+                    mediaType = MediaType.APPLICATION_JSON,
+                    schema = @Schema(implementation = FAQSearchResponseWrapper.class),
+                    example = """
+                            {
+                                "data": [
+                                    {
+                                        "id": 101,
+                                        "question": "Когда начинается зимняя сессия?",
+                                        "answer": "Зимняя сессия начинается в январе.",
+                                        "theme": "Сессия",
+                                        "score": 7.412
+                                    }
+                                ],
+                                "message": "success"
+                            }
+                    """
+            )
+    )
+    @APIResponse(
+            responseCode = "400",
+            description = "Пустой или слишком длинный запрос, некорректный limit",
+            content = @Content(
+                    mediaType = MediaType.APPLICATION_JSON,
+                    schema = @Schema(implementation = FAQSearchResponseWrapper.class),
+                    example = """
+                            {
+                                "data": null,
+                                "message": "Search query cannot be null or empty"
+                            }
+                    """
+            )
+    )
+    @APIResponse(
+            responseCode = "408",
+            description = "Таймаут запроса",
+            content = @Content(
+                    mediaType = MediaType.APPLICATION_JSON,
+                    schema = @Schema(implementation = FAQSearchResponseWrapper.class),
+                    example = """
+                            {
+                                "data": null,
+                                "message": "Request timeout. Try again later."
+                            }
+                            """
+            )
+    )
+    @APIResponse(
+            responseCode = "503",
+            description = "Индекс ещё не построен и БД недоступна",
+            content = @Content(
+                    mediaType = MediaType.APPLICATION_JSON,
+                    schema = @Schema(implementation = FAQSearchResponseWrapper.class),
+                    example = """
+                            {
+                                "data": null,
+                                "message": "SqlServer Exception occurred: Unable to connect to database"
+                            }
+                    """
+            )
+    )
+    public Uni<Response> search(@QueryParam("q") String query,
+                                @QueryParam("limit") @DefaultValue("" + Constants.SEARCH_DEFAULT_LIMIT) int limit) {
+        return searchIndex.search(query, limit).onItem()
+                .transform(hits->Response.ok().entity(new FAQSearchResponseWrapper(hits)).build());
+    }
+
+    @GET
+    @Path("/autocomplete")
+    @Timeout(Constants.LIGHT_OPERATION_TIMEOUT_MILLS)
+    @Operation(summary = "Автодополнение по вопросам FAQ и названиям тем",
+                description = "Возвращает вопросы FAQ и темы, в которых одно из слов начинается с введённого текста, по убыванию популярности. " +
+                        "Предназначен для вызова на каждое нажатие клавиши, БД не используется. Если текст заканчивается пробелом, " +
+                        "последнее слово считается законченным."
+    )
+    @Parameter(
+            name = "prefix",
+            description = "Введённый пользователем текст",
+            required = true,
+            example = "стипен",
+            schema = @Schema(implementation = String.class)
+    )
+    @Parameter(
+            name = "limit",
+            description = "Максимальное количество вариантов (1-" + Constants.SEARCH_MAX_LIMIT + ")",
+            example = "8",
+            schema = @Schema(implementation = Integer.class, defaultValue = "" + Constants.AUTOCOMPLETE_DEFAULT_LIMIT)
+    )
+    @APIResponse(
+            responseCode = "200",
+            description = "Варианты дополнения, список может быть пустым",
+            content = @Content(
+                    mediaType = MediaType.APPLICATION_JSON,
+                    schema = @Schema(implementation = CompletionsResponseWrapper.class),
+                    example = """
+                            {
+                                "data": [
+                                    {
+                                        "type": "faq",
+                                        "id": 42,
+                                        "text": "Как получить стипендию?",
+                                        "weight": 1520
+                                    },
+                                    {
+                                        "type": "theme",
+                                        "id": 7,
+                                        "text": "Стипендии",
+                                        "weight": 12
+                                    }
+                                ],
+                                "message": "success"
+                            }
+                    """
+            )
+    )
+    @APIResponse(
+            responseCode = "400",
+            description = "Пустой или слишком длинный текст, некорректный limit",
+            content = @Content(
+                    mediaType = MediaType.APPLICATION_JSON,
+                    schema = @Schema(implementation = CompletionsResponseWrapper.class),
+                    example = """
+                            {
+                                "data": null,
+                                "message": "Prefix cannot be null or empty"
+                            }
+                    """
+            )
+    )
+    @APIResponse(
+            responseCode = "408",
+            description = "Таймаут запроса",
+            content = @Content(
+                    mediaType = MediaType.APPLICATION_JSON,
+                    schema = @Schema(implementation = CompletionsResponseWrapper.class),
+                    example = """
+                            {
+                                "data": null,
+                                "message": "Request timeout. Try again later."
+                            }
+                            """
+            )
+    )
+    @APIResponse(
+            responseCode = "503",
+            description = "Индекс ещё не построен и БД недоступна",
+            content = @Content(
+                    mediaType = MediaType.APPLICATION_JSON,
+                    schema = @Schema(implementation = CompletionsResponseWrapper.class),
+                    example = """
+                            {
+                                "data": null,
+                                "message": "SqlServer Exception occurred: Unable to connect to database"
+                            }
+                    """
+            )
+    )
+    public Uni<Response> autocomplete(@QueryParam("prefix") String prefix,
+                                      @QueryParam("limit") @DefaultValue("" + Constants.AUTOCOMPLETE_DEFAULT_LIMIT) int limit) {
+        return typeahead.complete(prefix, limit).onItem()
+                .transform(completions->Response.ok().entity(new CompletionsResponseWrapper(completions)).build());
+    }
+
+    @GET
+    @Path("/semantic")
+    @Timeout(Constants.LIGHT_OPERATION_TIMEOUT_MILLS)
+    @Operation(summary = "Найти вопросы FAQ, близкие по смыслу к тексту",
+                description = "Сравнивает локально посчитанные векторы текста (основы слов и символьные n-граммы) по косинусному сходству " +
+                        "с помощью графа HNSW. Находит перефразированные вопросы, которые не находит поиск по словам. БД не используется."
+    )
+    @Parameter(
+            name = "text",
+            description = "Текст вопроса пользователя",
+            required = true,
+            example = "сколько платят стипендию первокурсникам",
+            schema = @Schema(implementation = String.class)
+    )
+    @Parameter(
+            name = "limit",
+            description = "Максимальное количество результатов (1-" + Constants.SEARCH_MAX_LIMIT + ")",
+            example = "5",
+            schema = @Schema(implementation = Integer.class, defaultValue = "" + Constants.SUGGEST_DEFAULT_LIMIT)
+    )
+    @APIResponse(
+            responseCode = "200",
+            description = "Близкие вопросы FAQ по убыванию сходства, список может быть пустым",
+            content = @Content(
+                    mediaType = MediaType.APPLICATION_JSON,
+                    schema = @Schema(implementation = FAQSuggestionsResponseWrapper.class),
+                    example = """
+                            {
+                                "data": [
+                                    {
+                                        "id": 4,
+                                        "question": "Какой размер стипендии на первом курсе?",
+                                        "similarity": 0.574
+                                    }
+                                ],
+                                "message": "success"
+                            }
+                    """
+            )
+    )
+    @APIResponse(
+            responseCode = "400",
+            description = "Пустой или слишком длинный текст, некорректный limit",
+            content = @Content(
+                    mediaType = MediaType.APPLICATION_JSON,
+                    schema = @Schema(implementation = FAQSuggestionsResponseWrapper.class),
+                    example = """
+                            {
+                                "data": null,
+                                "message": "Text cannot be null or empty"
+                            }
+                    """
+            )
+    )
+    @APIResponse(
+            responseCode = "408",
+            description = "Таймаут запроса",
+            content = @Content(
+                    mediaType = MediaType.APPLICATION_JSON,
+                    schema = @Schema(implementation = FAQSuggestionsResponseWrapper.class),
+                    example = """
+                            {
+                                "data": null,
+                                "message": "Request timeout. Try again later."
+                            }
+                            """
+            )
+    )
+    @APIResponse(
+            responseCode = "503",
+            description = "Индекс ещё не построен и БД недоступна",
+            content = @Content(
+                    mediaType = MediaType.APPLICATION_JSON,
+                    schema = @Schema(implementation = FAQSuggestionsResponseWrapper.class),
+                    example = """
+                            {
+                                "data": null,
+                                "message": "SqlServer Exception occurred: Unable to connect to database"
+                            }
+                    """
+            )
+    )
+    public Uni<Response> semantic(@QueryParam("text") String text,
+                                  @QueryParam("limit") @DefaultValue("" + Constants.SUGGEST_DEFAULT_LIMIT) int limit) {
+        return vectorIndex.findSimilar(text, limit).onItem()
+                .transform(similar->Response.ok().entity(new FAQSuggestionsResponseWrapper(similar)).build());
+    }
+
+    //Отметить FAQ полезным
+    @POST
+    @Path("/helpful/{id}")
+    @Timeout(Constants.LIGHT_OPERATION_TIMEOUT_MILLS)
+    @Operation(summary = "Отметить FAQ полезным",
+                description = "Увеличивает счётчик в памяти, в БД накопленные отметки сохраняются периодически одним запросом. " +
+                        "Существование FAQ проверяется по индексу поиска, без запроса к БД."
+    )
+    @Parameter(
+            name = "id",
+            description = "Id записи FAQ",
+            required = true,
+            example = "5",
+            schema = @Schema(implementation = Long.class)
+    )
+    @APIResponse(
+            responseCode = "200",
+            description = "Отметка учтена",
+            content = @Content(
+                    mediaType = MediaType.APPLICATION_JSON,
+                    schema = @Schema(implementation = FAQResponseWrapper.class),
+                    example = """
+                            {
+                                "data": null,
+                                "message": "success"
+                            }
+                            """
+            )
+    )
+    @APIResponse(
+            responseCode = "400",
+            description = "Некорректный Id (0<=)",
+            content = @Content(
+                    mediaType = MediaType.APPLICATION_JSON,
+                    schema = @Schema(implementation = FAQResponseWrapper.class),
+                    example = """
+                            {
+                                "data": null,
+                                "message": "Id cannot be null or empty"
+                            }
+                            """
+            )
+    )
+    @APIResponse(
+            responseCode = "404",
+            description = "FAQ не найден",
+            content = @Content(
+                    mediaType = MediaType.APPLICATION_JSON,
+                    schema = @Schema(implementation = FAQResponseWrapper.class),
+                    example = """
+                            {
+                                "data": null,
+                                "message": "FAQ with Id = 5 not found"
+                            }
+                            """
+            )
+    )
+    public Uni<Response> markHelpful(@PathParam("id") Long id) {
+        if (id == null || id <= 0) {
+            return Uni.createFrom().failure(()->new IllegalArgumentException("Id cannot be null or empty"));
+        }
+        return searchIndex.contains(id).chain(exists->{
+            if (!exists) {
+                return Uni.createFrom().failure(()->new NotFoundException("FAQ with Id = " + id + " not found"));
+            }
+            faqStats.markHelpful(id);
+            return Uni.createFrom().item(Response.ok().entity(FAQResponseWrapper.successWithNoData()).build());
+        });
+    }
+
+    //Самые популярные FAQ
+    @GET
+    @Path("/popular")
+    @Timeout(Constants.LIGHT_OPERATION_TIMEOUT_MILLS)
+    @Operation(summary = "Получить FAQ по убыванию популярности",
+                description = "Популярность - количество показов в списке темы плюс " + Constants.FAQ_HELPFUL_WEIGHT +
+                        " за каждую отметку \"полезно\". Счётчики сохраняются в БД периодически, поэтому последние показы " +
+                        "могут ещё не учитываться. FAQ без показов и отметок в список не попадают."
+    )
+    @Parameter(
+            name = "themeId",
+            description = "Id темы; без него - по всем темам",
+            example = "1",
+            schema = @Schema(implementation = Integer.class)
+    )
+    @Parameter(
+            name = "limit",
+            description = "Максимальное количество результатов (1-" + Constants.SEARCH_MAX_LIMIT + ")",
+            example = "10",
+            schema = @Schema(implementation = Integer.class, defaultValue = "" + Constants.SEARCH_DEFAULT_LIMIT)
+    )
+    @APIResponse(
+            responseCode = "200",
+            description = "FAQ по убыванию популярности, список может быть пустым",
+            content = @Content(
+                    mediaType = MediaType.APPLICATION_JSON,
+                    schema = @Schema(implementation = FAQPopularityResponseWrapper.class),
+                    example = """
+                            {
+                                "data": [
+                                    {
+                                        "id": 101,
+                                        "question": "Когда начинается зимняя сессия?",
+                                        "themeId": 3,
+                                        "theme": "Сессия",
+                                        "views": 5120,
+                                        "helpful": 214
+                                    }
+                                ],
+                                "message": "success"
+                            }
+                    """
+            )
+    )
+    @APIResponse(
+            responseCode = "400",
+            description = "Некорректный themeId или limit",
+            content = @Content(
+                    mediaType = MediaType.APPLICATION_JSON,
+                    schema = @Schema(implementation = FAQPopularityResponseWrapper.class),
+                    example = """
+                            {
+                                "data": null,
+                                "message": "Limit must be between 1 and 50"
+                            }
+                    """
+            )
+    )
+    @APIResponse(
+            responseCode = "408",
+            description = "Таймаут запроса",
+            content = @Content(
+                    mediaType = MediaType.APPLICATION_JSON,
+                    schema = @Schema(implementation = FAQPopularityResponseWrapper.class),
+                    example = """
+                            {
+                                "data": null,
+                                "message": "Request timeout. Try again later."
+                            }
+                            """
+            )
+    )
+    @APIResponse(
+            responseCode = "503",
+            description = "Ошибка подключения к БД",
+            content = @Content(
+                    mediaType = MediaType.APPLICATION_JSON,
+                    schema = @Schema(implementation = FAQPopularityResponseWrapper.class),
+                    example = """
+                            {
+                                "data": null,
+                                "message": "SqlServer Exception occurred: Unable to connect to database"
+                            }
+                    """
+            )
+    )
+    public Uni<Response> popular(@QueryParam("themeId") Integer themeId,
+                                 @QueryParam("limit") @DefaultValue("" + Constants.SEARCH_DEFAULT_LIMIT) int limit) {
+        return statsRepo.findPopular(themeId, limit).onItem()
+                .transform(popular->Response.ok().entity(new FAQPopularityResponseWrapper(popular)).build());
+    }
+
+    //Выгрузка всего каталога FAQ
+    @GET
+    @Path("/export")
+    @Produces(RestMediaType.APPLICATION_NDJSON)
+    @RestStreamElementType(MediaType.APPLICATION_JSON)
+    @Operation(summary = "Выгрузить все FAQ по всем темам в NDJSON",
+                description = "Отдаёт по одному json объекту на строку, по возрастанию Id. Записи читаются из БД страницами по " +
+                        Constants.EXPORT_PAGE_SIZE + " по мере отправки клиенту (chunked), поэтому первые строки приходят сразу, " +
+                        "а память не зависит от размера каталога. Ошибка БД во время выгрузки обрывает поток."
+    )
+    @APIResponse(
+            responseCode = "200",
+            description = "Поток записей FAQ",
+            content = @Content(
+                    mediaType = RestMediaType.APPLICATION_NDJSON,
+                    schema = @Schema(implementation = FAQExportDTO.class),
+                    example = """
+                            {"id":1,"question":"Как поступить?","answer":"Подать документы в приёмную комиссию.","themeId":1,"theme":"Поступление"}
+                            {"id":2,"question":"Когда сессия?","answer":"В январе.","themeId":3,"theme":"Сессия"}
+                    """
+            )
+    )
+    public Multi<FAQExportDTO> export() {
+        return repo.exportAll();
     }
 
     @DELETE
@@ -383,6 +936,120 @@ public class FAQResource {
                 .transform(res->Response.ok().entity(new FAQResponseWrapper(res)).build());
     }
 
+    //Пакетная загрузка FAQ
+    @POST
+    @Path("/addFAQs")
+    @Consumes({MediaType.APPLICATION_JSON, RestMediaType.APPLICATION_NDJSON})
+    @Blocking
+    @Timeout(Constants.BULK_OPERATION_TIMEOUT_MILLS)
+    @Bulkhead(value = 1, waitingTaskQueue = 2)
+    @Operation(
+            summary = "Добавить FAQ пакетом",
+            description = "Принимает json массив или NDJSON поток объектов FAQDTO и читает его потоково. " +
+                    "Темы куска проверяются одним запросом, записи вставляются одним запросом на кусок, " +
+                    "одновременно обрабатывается не более " + Constants.BULK_CONCURRENCY + " кусков. " +
+                    "Для каждого элемента возвращается итог обработки, ошибка в одном элементе не отменяет остальные."
+    )
+    @Parameter(
+            name = "batchSize",
+            description = "Количество записей в одном запросе к БД (1-" + Constants.MAX_FAQ_BULK_CHUNK_SIZE + ")",
+            example = "500",
+            schema = @Schema(implementation = Integer.class, defaultValue = "" + Constants.BULK_CHUNK_SIZE)
+    )
+    @RequestBody(
+            description = "Json массив или NDJSON (по объекту на строку) с записями FAQ",
+            required = true,
+            content = @Content(
+                    mediaType = MediaType.APPLICATION_JSON,
+                    schema = @Schema(implementation = FAQDTO.class),
+                    example = """
+                            [
+                               {"question":"Когда начинается сессия?", "answer":"В январе.", "themeId":3},
+                               {"question":"Где общежитие?", "answer":"На ул. Ленина, 1.", "themeId":999}
+                            ]
+                """
+            )
+    )
+    @APIResponse(
+            responseCode = "200",
+            description = "Пакет обработан, возвращается итог по каждому элементу в порядке входных данных",
+            content = @Content(
+                    mediaType = MediaType.APPLICATION_JSON,
+                    schema = @Schema(implementation = BulkResultResponseWrapper.class),
+                    example = """
+                            {
+                                "data": [
+                                    {"index": 0, "id": 512, "status": "created"},
+                                    {"index": 1, "status": "invalid", "message": "Theme with Id = 999 not found"}
+                                ],
+                                "message": "success"
+                            }
+                """
+            )
+    )
+    @APIResponse(
+            responseCode = "400",
+            description = "Тело запроса не является корректным json/NDJSON или некорректный batchSize",
+            content = @Content(
+                    mediaType = MediaType.APPLICATION_JSON,
+                    schema = @Schema(implementation = BulkResultResponseWrapper.class),
+                    example = """
+                {
+                  "data": null,
+                  "message": "Malformed JSON body: ErrorText"
+                }
+                """
+            )
+    )
+    @APIResponse(
+            responseCode = "408",
+            description = "Таймаут запроса",
+            content = @Content(
+                    mediaType = MediaType.APPLICATION_JSON,
+                    schema = @Schema(implementation = BulkResultResponseWrapper.class),
+                    example = """
+                            {
+                                "data": null,
+                                "message": "Request timeout. Try again later."
+                            }
+                            """
+            )
+    )
+    @APIResponse(
+            responseCode = "429",
+            description = "Уже выполняется другая пакетная загрузка",
+            content = @Content(
+                    mediaType = MediaType.APPLICATION_JSON,
+                    schema = @Schema( implementation = BulkResultResponseWrapper.class),
+                    example = """
+                        {
+                           "data": null,
+                           "message": "Service experience high loads. Try again later."
+                        }
+                    """
+            )
+    )
+    @APIResponse(
+            responseCode = "500",
+            description = "Внутренняя ошибка сервера",
+            content = @Content(
+                    mediaType = MediaType.APPLICATION_JSON,
+                    schema = @Schema(implementation = BulkResultResponseWrapper.class),
+                    example = """
+                            {
+                                "data": null,
+                                "message": "Unknown error: ErrorText"
+                            }
+                            """
+            )
+    )
+    public Uni<Response> addFAQs(InputStream body, @QueryParam("batchSize") @DefaultValue("" + Constants.BULK_CHUNK_SIZE) int batchSize) {
+        return repo.addFAQs(JsonStreams.read(mapper, body, FAQDTO.class), batchSize)
+                .onItem().transform(results->
+                        Response.ok().entity(new BulkResultResponseWrapper(results)).build()
+                );
+    }
+
     @PATCH
     @Path("/updateFAQ")
     @Consumes(MediaType.APPLICATION_JSON)
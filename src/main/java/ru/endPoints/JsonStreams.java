@@ -0,0 +1,31 @@
+package ru.endPoints;
+
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.smallrye.mutiny.Multi;
+import io.smallrye.mutiny.infrastructure.Infrastructure;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+
+//Потоковое чтение тела запроса: json массив или NDJSON (по объекту на строку) без буферизации всего тела
+final class JsonStreams {
+
+    private JsonStreams() {}
+
+    //Элементы читаются по мере запроса подписчиком, чтение потока выполняется на worker пуле
+    static <T> Multi<T> read(ObjectMapper mapper, InputStream body, Class<T> type) {
+        return Multi.createFrom().<T>iterable(()->{
+                    try {
+                        //MappingIterator сам разворачивает корневой массив и читает последовательность объектов для NDJSON
+                        MappingIterator<T> iterator = mapper.readerFor(type).readValues(body);
+                        return iterator;
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                })
+                .onFailure().transform(failure->new IllegalArgumentException("Malformed JSON body: " + failure.getMessage()))
+                .runSubscriptionOn(Infrastructure.getDefaultWorkerPool());
+    }
+}
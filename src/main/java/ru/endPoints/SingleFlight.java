@@ -0,0 +1,59 @@
+package ru.endPoints;
+
+import io.smallrye.mutiny.Uni;
+import io.vertx.core.Context;
+import io.vertx.core.Vertx;
+import jakarta.enterprise.context.ApplicationScoped;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+//Одновременные одинаковые запросы на чтение разделяют один запрос к репозиторию
+@ApplicationScoped
+public class SingleFlight {
+
+    private final ConcurrentHashMap<String, Uni<?>> inFlight = new ConcurrentHashMap<>();
+    private final LongAdder executed = new LongAdder();
+    private final LongAdder collapsed = new LongAdder();
+
+    //Если запрос с таким ключом уже выполняется - подписаться на его результат, иначе выполнить loader
+    @SuppressWarnings("unchecked")
+    public <T> Uni<T> execute(String key, Supplier<Uni<T>> loader) {
+        return Uni.createFrom().deferred(()->{
+            Uni<T> shared = (Uni<T>) inFlight.get(key);
+            if (shared != null) {
+                collapsed.increment();
+            } else {
+                AtomicReference<Uni<T>> created = new AtomicReference<>();
+                created.set(loader.get()
+                        .onTermination().invoke(()->inFlight.remove(key, created.get()))
+                        .memoize().indefinitely());
+                shared = (Uni<T>) inFlight.putIfAbsent(key, created.get());
+                if (shared == null) {
+                    executed.increment();
+                    shared = created.get();
+                } else {
+                    collapsed.increment();
+                }
+            }
+            //Результат возвращается в контекст своего запроса, а не того, который выполнил loader
+            Context context = Vertx.currentContext();
+            if (context == null) {
+                return shared;
+            }
+            return shared.emitOn(task->context.runOnContext(v->task.run()));
+        });
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("inFlight", inFlight.size());
+        stats.put("executed", executed.sum());
+        stats.put("collapsed", collapsed.sum());
+        return stats;
+    }
+}
@@ -0,0 +1,227 @@
+package ru.endPoints;
+
+import jakarta.inject.Inject;
+import jakarta.ws.rs.GET;
+import jakarta.ws.rs.Path;
+import jakarta.ws.rs.Produces;
+import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.Response;
+import org.eclipse.microprofile.openapi.annotations.Operation;
+import org.eclipse.microprofile.openapi.annotations.media.Content;
+import org.eclipse.microprofile.openapi.annotations.media.Schema;
+import org.eclipse.microprofile.openapi.annotations.responses.APIResponse;
+import org.eclipse.microprofile.openapi.annotations.tags.Tag;
+import ru.cache.FAQCache;
+import ru.cache.JsonBodyCache;
+import ru.cache.RoleCache;
+import ru.events.ChangeBroadcaster;
+import ru.ingest.QuestionIngestor;
+import ru.journal.JournalReplayer;
+import ru.repositories.UserRepository;
+import ru.search.FAQSearchIndex;
+import ru.search.FAQTrigramIndex;
+import ru.search.FAQVectorIndex;
+import ru.search.TypeaheadIndex;
+import ru.stats.FAQStats;
+import ru.wrappers.StatsResponseWrapper;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+@Path("/DB/stats")
+@Produces(MediaType.APPLICATION_JSON)
+@Tag(name = "Stats Resource", description = "Внутренние счётчики кэшей и очередей сервиса")
+public class StatsResource {
+
+    @Inject
+    RoleCache roleCache;
+
+    @Inject
+    UserRepository userRepository;
+
+    @Inject
+    SingleFlight singleFlight;
+
+    @Inject
+    FAQCache faqCache;
+
+    @Inject
+    JsonBodyCache bodyCache;
+
+    @Inject
+    FAQSearchIndex searchIndex;
+
+    @Inject
+    FAQTrigramIndex trigramIndex;
+
+    @Inject
+    TypeaheadIndex typeahead;
+
+    @Inject
+    FAQVectorIndex vectorIndex;
+
+    @Inject
+    ChangeBroadcaster broadcaster;
+
+    @Inject
+    FAQStats faqStats;
+
+    @Inject
+    QuestionIngestor questionIngestor;
+
+    @Inject
+    JournalReplayer journalReplayer;
+
+    @GET
+    @Path("/getAll")
+    @Operation(
+            summary = "Получить счётчики сервиса",
+            description = "Возвращает счётчики попаданий/промахов/вытеснений кэшей и других внутренних компонентов. БД не используется."
+    )
+    @APIResponse(
+            responseCode = "200",
+            description = "Текущие значения счётчиков",
+            content = @Content(
+                    mediaType = MediaType.APPLICATION_JSON,
+                    schema = @Schema(implementation = StatsResponseWrapper.class),
+                    example = """
+                            {
+                                "data": {
+                                    "roleCache": {
+                                        "size": 1520,
+                                        "hits": 98231,
+                                        "misses": 1711,
+                                        "evictions": 191
+                                    },
+                                    "roleLoader": {
+                                        "windowMillis": 2,
+                                        "maxBatchSize": 200,
+                                        "batches": 640,
+                                        "keys": 1711,
+                                        "avgBatchSize": 2.67,
+                                        "avgQueueDelayMicros": 1830,
+                                        "maxQueueDelayMicros": 4120,
+                                        "batchSizeHistogram": {
+                                            "1": 301,
+                                            "2-3": 190,
+                                            "4-7": 149
+                                        }
+                                    },
+                                    "singleFlight": {
+                                        "inFlight": 3,
+                                        "executed": 51210,
+                                        "collapsed": 8342
+                                    },
+                                    "faqCache": {
+                                        "themes": 12,
+                                        "hits": 40210,
+                                        "misses": 57,
+                                        "invalidations": 9
+                                    },
+                                    "jsonBodyCache": {
+                                        "bodies": 13,
+                                        "bytes": 48213,
+                                        "hits": 45310,
+                                        "misses": 61,
+                                        "invalidations": 11
+                                    },
+                                    "faqSearch": {
+                                        "documents": 412,
+                                        "terms": 3170,
+                                        "loaded": true,
+                                        "rebuilds": 1,
+                                        "queries": 2210
+                                    },
+                                    "faqTrigrams": {
+                                        "documents": 412,
+                                        "deletedSlots": 3,
+                                        "trigrams": 5821,
+                                        "loaded": true,
+                                        "rebuilds": 1,
+                                        "queries": 930,
+                                        "compactions": 0
+                                    },
+                                    "typeahead": {
+                                        "entries": 424,
+                                        "keys": 3011,
+                                        "weights": 0,
+                                        "loaded": true,
+                                        "rebuilds": 1,
+                                        "snapshotBuilds": 4,
+                                        "queries": 18400
+                                    },
+                                    "faqVectors": {
+                                        "documents": 412,
+                                        "deletedNodes": 5,
+                                        "loaded": true,
+                                        "rebuilds": 1,
+                                        "queries": 760,
+                                        "embedded": 9,
+                                        "reused": 403,
+                                        "compactions": 0,
+                                        "unsaved": false
+                                    },
+                                    "changeStream": {
+                                        "subscribers": 6,
+                                        "published": 311,
+                                        "dropped": 0,
+                                        "resyncs": 0
+                                    },
+                                    "faqStats": {
+                                        "themes": 12,
+                                        "faqs": 87,
+                                        "flushes": 140,
+                                        "failedFlushes": 0,
+                                        "lastFlushMillis": 18
+                                    },
+                                    "questionIngest": {
+                                        "queueDepth": 3,
+                                        "queueCapacity": 10000,
+                                        "accepted": 5120,
+                                        "rejected": 0,
+                                        "saved": 5114,
+                                        "failed": 3,
+                                        "batches": 61,
+                                        "avgBatchSize": 83.84,
+                                        "maxBatchSize": 200,
+                                        "avgFlushMillis": 12.4,
+                                        "maxFlushMillis": 57,
+                                        "maxQueueWaitMillis": 64,
+                                        "tickets": 5120
+                                    },
+                                    "writeJournal": {
+                                        "segments": 1,
+                                        "pending": 0,
+                                        "lastSeq": 842,
+                                        "checkpoint": 842,
+                                        "appended": 842,
+                                        "deletedSegments": 0,
+                                        "applied": 839,
+                                        "duplicates": 1,
+                                        "discarded": 2,
+                                        "failedRuns": 17
+                                    }
+                                },
+                                "message": "success"
+                            }
+                """
+            )
+    )
+    public Response getAll() {
+        Map<String, Map<String, Object>> stats = new LinkedHashMap<>();
+        stats.put("roleCache", roleCache.stats());
+        stats.put("roleLoader", userRepository.roleLoaderStats());
+        stats.put("singleFlight", singleFlight.stats());
+        stats.put("faqCache", faqCache.stats());
+        stats.put("jsonBodyCache", bodyCache.stats());
+        stats.put("faqSearch", searchIndex.stats());
+        stats.put("faqTrigrams", trigramIndex.stats());
+        stats.put("typeahead", typeahead.stats());
+        stats.put("faqVectors", vectorIndex.stats());
+        stats.put("changeStream", broadcaster.stats());
+        stats.put("faqStats", faqStats.stats());
+        stats.put("questionIngest", questionIngestor.stats());
+        stats.put("writeJournal", journalReplayer.stats());
+        return Response.ok().entity(new StatsResponseWrapper(stats)).build();
+    }
+}
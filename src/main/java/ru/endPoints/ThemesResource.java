@@ -3,6 +3,7 @@ package ru.endPoints;
 import io.smallrye.mutiny.Uni;
 import jakarta.inject.Inject;
 import jakarta.ws.rs.*;
+import jakarta.ws.rs.core.HttpHeaders;
 import jakarta.ws.rs.core.MediaType;
 import jakarta.ws.rs.core.Response;
 import org.eclipse.microprofile.faulttolerance.Bulkhead;
@@ -16,6 +17,8 @@ import org.eclipse.microprofile.openapi.annotations.parameters.Parameter;
 import org.eclipse.microprofile.openapi.annotations.responses.APIResponse;
 import org.eclipse.microprofile.openapi.annotations.tags.Tag;
 import ru.Constants;
+import ru.cache.CatalogVersions;
+import ru.cache.JsonBodyCache;
 import ru.wrappers.FAQListResponseWrapper;
 import ru.wrappers.GenericResponseWrapper;
 import ru.repositories.ThemeRepository;
@@ -30,11 +33,35 @@ public class ThemesResource {
     @Inject
     ThemeRepository repo;
 
+    @Inject
+    SingleFlight singleFlight;
+
+    @Inject
+    JsonBodyCache bodyCache;
+
+    @Inject
+    CatalogVersions versions;
+
     //Возврат всех тем
     @GET
     @Path("/getAll")
     @Timeout(Constants.LIGHT_OPERATION_TIMEOUT_MILLS)
-    @Operation(summary = "Получить список всех тем, отсортированных по алфавиту")
+    @Operation(summary = "Получить список всех тем, отсортированных по алфавиту",
+                description = "Возвращает ETag версии списка. При повторном запросе с If-None-Match отвечает 304, если темы не менялись. " +
+                        "С параметрами limit/cursor возвращает страницу тем по возрастанию Id (не по алфавиту) и nextCursor, " +
+                        "если есть следующая страница; такие запросы идут в БД мимо кэша."
+    )
+    @Parameter(
+            name = "limit",
+            description = "Размер страницы (1-" + Constants.PAGE_MAX_LIMIT + "). Без limit и cursor возвращается весь список",
+            example = "50",
+            schema = @Schema(implementation = Integer.class, defaultValue = "" + Constants.PAGE_DEFAULT_LIMIT)
+    )
+    @Parameter(
+            name = "cursor",
+            description = "nextCursor из ответа с предыдущей страницей. Без него возвращается первая страница",
+            schema = @Schema(implementation = String.class)
+    )
     @APIResponse(
             responseCode = "200",
             description = "Список всех тем",
@@ -58,6 +85,24 @@ public class ThemesResource {
                     """
             )
     )
+    @APIResponse(
+            responseCode = "304",
+            description = "Данные не изменились с версии, переданной в If-None-Match. Тело ответа пустое, БД не запрашивается."
+    )
+    @APIResponse(
+            responseCode = "400",
+            description = "Некорректные limit или cursor",
+            content = @Content(
+                    mediaType = MediaType.APPLICATION_JSON,
+                    schema = @Schema(implementation = ThemeListResponseWrapper.class),
+                    example = """
+                            {
+                                "data": null,
+                                "message": "Invalid cursor"
+                            }
+                            """
+            )
+    )
     @APIResponse(
             responseCode = "408",
             description = "Таймаут запроса",
@@ -100,9 +145,22 @@ public class ThemesResource {
                     """
             )
     )
-    public Uni<Response> getAll() {
-        return repo.getAllSorted().onItem().transform(themes ->
-            Response.ok().entity(new ThemeListResponseWrapper(themes)).build());
+    public Uni<Response> getAll(@QueryParam("limit") Integer limit,
+                                @QueryParam("cursor") String cursor,
+                                @HeaderParam(HttpHeaders.ACCEPT_ENCODING) String acceptEncoding,
+                                @HeaderParam(HttpHeaders.IF_NONE_MATCH) String ifNoneMatch) {
+        String tag = versions.themesTag();
+        if (CatalogVersions.matches(ifNoneMatch, tag)) {
+            return Uni.createFrom().item(Response.notModified().tag(tag).build());
+        }
+        //Страницы не кэшируются: их много и повторяются они редко
+        if (limit != null || cursor != null) {
+            return repo.getPage(cursor, limit != null ? limit : Constants.PAGE_DEFAULT_LIMIT)
+                    .onItem().transform(page->Response.ok().entity(new ThemeListResponseWrapper(page.items(), page.nextCursor())).tag(tag).build());
+        }
+        return singleFlight.execute("themes:all", ()->bodyCache.get(JsonBodyCache.THEMES_KEY, versions::themesTag,
+                        ()->repo.getAllSorted().map(ThemeListResponseWrapper::new)))
+                .onItem().transform(body->CachedResponses.ok(body, acceptEncoding).tag(body.tag()).build());
     }
 
     //Удалить тему по id
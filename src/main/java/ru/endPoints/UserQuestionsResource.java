@@ -9,7 +9,9 @@ import jakarta.ws.rs.core.MediaType;
 import jakarta.ws.rs.core.Response;
 import org.eclipse.microprofile.faulttolerance.Bulkhead;
 import org.eclipse.microprofile.faulttolerance.CircuitBreaker;
+import org.eclipse.microprofile.faulttolerance.Fallback;
 import org.eclipse.microprofile.faulttolerance.Timeout;
+import org.eclipse.microprofile.faulttolerance.exceptions.CircuitBreakerOpenException;
 import org.eclipse.microprofile.openapi.annotations.Operation;
 import org.eclipse.microprofile.openapi.annotations.media.Content;
 import org.eclipse.microprofile.openapi.annotations.media.Schema;
@@ -19,11 +21,20 @@ import org.eclipse.microprofile.openapi.annotations.responses.APIResponse;
 import org.eclipse.microprofile.openapi.annotations.tags.Tag;
 import ru.Constants;
 import ru.dto.UserQuestionDTO;
+import ru.ingest.QuestionIngestor;
+import ru.journal.JournalReplayer;
+import ru.journal.WriteJournal;
 import ru.repositories.UserQuestionsRepository;
+import ru.search.FAQTrigramIndex;
+import ru.wrappers.FAQSuggestionsResponseWrapper;
 import ru.wrappers.FAQListResponseWrapper;
+import ru.wrappers.GenericResponseWrapper;
+import ru.wrappers.IngestTicketResponseWrapper;
 import ru.wrappers.UserQuestionListResponseWrapper;
 import ru.wrappers.UserQuestionResponseWrapper;
 
+import java.net.ConnectException;
+
 @Path("/DB/userQuestions")
 @Produces(MediaType.APPLICATION_JSON)
 @Tag(name = "User Questions", description = "Управление вопросами, отправленными пользователями")
@@ -32,6 +43,18 @@ public class UserQuestionsResource {
     @Inject
     UserQuestionsRepository repo;
 
+    @Inject
+    FAQTrigramIndex trigramIndex;
+
+    @Inject
+    QuestionIngestor ingestor;
+
+    @Inject
+    WriteJournal journal;
+
+    @Inject
+    JournalReplayer replayer;
+
     @POST
     @Path("/post")
     @Consumes(MediaType.APPLICATION_JSON)
@@ -43,7 +66,11 @@ public class UserQuestionsResource {
             delay = 5000,
             successThreshold = 2
     )
-    @Operation(summary = "Отправить новый вопрос от пользователя")
+    @Fallback(fallbackMethod = "journalQuestion", applyOn = {ConnectException.class, CircuitBreakerOpenException.class})
+    @Operation(summary = "Отправить новый вопрос от пользователя",
+                description = "Если БД недоступна или endpoint закрыт из-за ошибок, вопрос сохраняется в локальный журнал (202). " +
+                        "Пользователь проверяется при применении журнала: принятый так вопрос ещё может быть отклонён."
+    )
     @RequestBody(
             description = "Тело запроса принимает json файл по шаблону определенном в примере.",
             content = @Content(
@@ -77,6 +104,21 @@ public class UserQuestionsResource {
                     """
             )
     )
+    @APIResponse(
+            responseCode = "202",
+            description = "БД недоступна или в журнале ещё есть неприменённые записи: запрос сохранён в локальный журнал и будет применён к БД по порядку, " +
+                    "когда она станет доступна",
+            content = @Content(
+                    mediaType = MediaType.APPLICATION_JSON,
+                    schema = @Schema(implementation = UserQuestionResponseWrapper.class),
+                    example = """
+                            {
+                                "data": null,
+                                "message": "Database unavailable. Request saved and will be applied later; it can still be rejected then (user not found or already exists)."
+                            }
+                    """
+            )
+    )
     @APIResponse(
             responseCode = "400",
             description = "Ошибка валидации (пустой вопрос, некорректный Id)",
@@ -151,7 +193,7 @@ public class UserQuestionsResource {
     )
     @APIResponse(
             responseCode = "503",
-            description = "Ошибка подключения к БД",
+            description = "Ошибка подключения к БД и локальный журнал записей заполнен",
             content = @Content(
                     mediaType = MediaType.APPLICATION_JSON,
                     schema = @Schema(implementation = UserQuestionResponseWrapper.class),
@@ -164,14 +206,270 @@ public class UserQuestionsResource {
             )
     )
     public Uni<Response> postQuestion(@Valid @NotNull(message = "Target json not found") UserQuestionDTO question) {
-        return repo.addNewQuestion(question.id, question.question).onItem()
-                .transform(res->Response.ok().entity(new UserQuestionResponseWrapper(res)).build());
+        //Запись прошла - БД доступна, журнал применяется сразу, а не по расписанию
+        return repo.addNewQuestion(question.id, question.question)
+                .onItem().invoke(replayer::wake)
+                .onItem().transform(res->Response.ok().entity(new UserQuestionResponseWrapper(res)).build());
+    }
+
+    //БД недоступна - вопрос сохраняется в журнал и будет добавлен позже
+    Uni<Response> journalQuestion(UserQuestionDTO question) {
+        return journal.addQuestion(question.id, question.question).onItem()
+                .transform(seq->Response.accepted().entity(GenericResponseWrapper.journaled()).build());
+    }
+
+    @POST
+    @Path("/postAsync")
+    @Consumes(MediaType.APPLICATION_JSON)
+    @Timeout(Constants.LIGHT_OPERATION_TIMEOUT_MILLS)
+    @Operation(summary = "Отправить новый вопрос от пользователя без ожидания записи в БД",
+                description = "Вопрос кладётся в очередь и сразу возвращается квитанция; в БД вопросы записываются пакетами " +
+                        "в фоне. Результат сохранения (Id вопроса или причина ошибки) доступен по /DB/userQuestions/ticket/{ticket}. " +
+                        "Существование пользователя проверяется при записи, а не при приёме."
+    )
+    @RequestBody(
+            description = "Тело запроса принимает json файл по шаблону определенном в примере.",
+            content = @Content(
+                    mediaType = MediaType.APPLICATION_JSON,
+                    schema = @Schema(implementation = UserQuestionDTO.class),
+                    example = """
+                            {
+                                "id":17,
+                                "question":"Как к вам поступить?"
+                            }
+                    """
+            )
+
+    )
+    @APIResponse(
+            responseCode = "202",
+            description = "Вопрос принят в очередь",
+            content = @Content(
+                    mediaType = MediaType.APPLICATION_JSON,
+                    schema = @Schema(implementation = IngestTicketResponseWrapper.class),
+                    example = """
+                            {
+                                "data": {
+                                    "ticket": "3f1c2a9e-6b7d-4e8a-9c55-0d2f1e6a7b41",
+                                    "status": "queued"
+                                },
+                                "message": "success"
+                            }
+                    """
+            )
+    )
+    @APIResponse(
+            responseCode = "400",
+            description = "Ошибка валидации (пустой вопрос, некорректный Id)",
+            content = @Content(
+                    mediaType = MediaType.APPLICATION_JSON,
+                    schema = @Schema(implementation = IngestTicketResponseWrapper.class),
+                    example = """
+                            {
+                                "data": null,
+                                "message": "Question can not be blank"
+                            }
+                    """
+            )
+    )
+    @APIResponse(
+            responseCode = "408",
+            description = "Таймаут запроса",
+            content = @Content(
+                    mediaType = MediaType.APPLICATION_JSON,
+                    schema = @Schema(implementation = IngestTicketResponseWrapper.class),
+                    example = """
+                            {
+                                "data": null,
+                                "message": "Request timeout. Try again later."
+                            }
+                            """
+            )
+    )
+    @APIResponse(
+            responseCode = "429",
+            description = "Очередь вопросов заполнена или сервис останавливается",
+            content = @Content(
+                    mediaType = MediaType.APPLICATION_JSON,
+                    schema = @Schema( implementation = IngestTicketResponseWrapper.class),
+                    example = """
+                        {
+                           "data": null,
+                           "message": "Service experience high loads. Try again later."
+                        }
+                    """
+            )
+    )
+    public Uni<Response> postQuestionAsync(@Valid @NotNull(message = "Target json not found") UserQuestionDTO question) {
+        return ingestor.submit(question.id, question.question).onItem()
+                .transform(res->Response.accepted().entity(new IngestTicketResponseWrapper(res)).build());
+    }
+
+    @GET
+    @Path("/ticket/{ticket}")
+    @Timeout(Constants.LIGHT_OPERATION_TIMEOUT_MILLS)
+    @Operation(summary = "Получить состояние асинхронно отправленного вопроса",
+                description = "Завершённые квитанции хранятся " + Constants.INGEST_TICKET_TTL_MILLS / 60000 + " минут. БД не используется."
+    )
+    @Parameter(
+            name = "ticket",
+            description = "Номер квитанции из ответа /DB/userQuestions/postAsync",
+            required = true,
+            example = "3f1c2a9e-6b7d-4e8a-9c55-0d2f1e6a7b41",
+            schema = @Schema(implementation = String.class)
+    )
+    @APIResponse(
+            responseCode = "200",
+            description = "Состояние квитанции",
+            content = @Content(
+                    mediaType = MediaType.APPLICATION_JSON,
+                    schema = @Schema(implementation = IngestTicketResponseWrapper.class),
+                    example = """
+                            {
+                                "data": {
+                                    "ticket": "3f1c2a9e-6b7d-4e8a-9c55-0d2f1e6a7b41",
+                                    "status": "saved",
+                                    "questionId": 5
+                                },
+                                "message": "success"
+                            }
+                    """
+            )
+    )
+    @APIResponse(
+            responseCode = "404",
+            description = "Квитанция не найдена или устарела",
+            content = @Content(
+                    mediaType = MediaType.APPLICATION_JSON,
+                    schema = @Schema(implementation = IngestTicketResponseWrapper.class),
+                    example = """
+                           {
+                                "data": null,
+                                "message": "Ticket not found"
+                           }
+                    """
+            )
+    )
+    @APIResponse(
+            responseCode = "408",
+            description = "Таймаут запроса",
+            content = @Content(
+                    mediaType = MediaType.APPLICATION_JSON,
+                    schema = @Schema(implementation = IngestTicketResponseWrapper.class),
+                    example = """
+                            {
+                                "data": null,
+                                "message": "Request timeout. Try again later."
+                            }
+                            """
+            )
+    )
+    public Uni<Response> getTicket(@PathParam("ticket") String ticket) {
+        return ingestor.ticket(ticket).onItem()
+                .transform(res->Response.ok().entity(new IngestTicketResponseWrapper(res)).build());
+    }
+
+    @GET
+    @Path("/suggest")
+    @Timeout(Constants.LIGHT_OPERATION_TIMEOUT_MILLS)
+    @Operation(summary = "Найти вопросы FAQ, похожие на вопрос пользователя",
+                description = "Сравнивает текст с вопросами FAQ по символьным триграммам, поэтому находит совпадения с опечатками и другим порядком слов. " +
+                        "Позволяет предложить пользователю готовый ответ до сохранения нового вопроса. БД не используется."
+    )
+    @Parameter(
+            name = "text",
+            description = "Текст вопроса пользователя",
+            required = true,
+            example = "как поступть в универ",
+            schema = @Schema(implementation = String.class)
+    )
+    @Parameter(
+            name = "limit",
+            description = "Максимальное количество результатов (1-" + Constants.SEARCH_MAX_LIMIT + ")",
+            example = "5",
+            schema = @Schema(implementation = Integer.class, defaultValue = "" + Constants.SUGGEST_DEFAULT_LIMIT)
+    )
+    @Parameter(
+            name = "minSimilarity",
+            description = "Минимальное сходство от 0 до 1",
+            example = "0.3",
+            schema = @Schema(implementation = Double.class, defaultValue = "" + Constants.SUGGEST_DEFAULT_MIN_SIMILARITY)
+    )
+    @APIResponse(
+            responseCode = "200",
+            description = "Похожие вопросы FAQ по убыванию сходства, список может быть пустым",
+            content = @Content(
+                    mediaType = MediaType.APPLICATION_JSON,
+                    schema = @Schema(implementation = FAQSuggestionsResponseWrapper.class),
+                    example = """
+                            {
+                                "data": [
+                                    {
+                                        "id": 12,
+                                        "question": "Как поступить в университет?",
+                                        "similarity": 0.615
+                                    }
+                                ],
+                                "message": "success"
+                            }
+                    """
+            )
+    )
+    @APIResponse(
+            responseCode = "400",
+            description = "Пустой или слишком длинный текст, некорректные limit или minSimilarity",
+            content = @Content(
+                    mediaType = MediaType.APPLICATION_JSON,
+                    schema = @Schema(implementation = FAQSuggestionsResponseWrapper.class),
+                    example = """
+                            {
+                                "data": null,
+                                "message": "Text cannot be null or empty"
+                            }
+                    """
+            )
+    )
+    @APIResponse(
+            responseCode = "408",
+            description = "Таймаут запроса",
+            content = @Content(
+                    mediaType = MediaType.APPLICATION_JSON,
+                    schema = @Schema(implementation = FAQSuggestionsResponseWrapper.class),
+                    example = """
+                            {
+                                "data": null,
+                                "message": "Request timeout. Try again later."
+                            }
+                            """
+            )
+    )
+    @APIResponse(
+            responseCode = "503",
+            description = "Индекс ещё не построен и БД недоступна",
+            content = @Content(
+                    mediaType = MediaType.APPLICATION_JSON,
+                    schema = @Schema(implementation = FAQSuggestionsResponseWrapper.class),
+                    example = """
+                            {
+                                "data": null,
+                                "message": "SqlServer Exception occurred: Unable to connect to database"
+                            }
+                    """
+            )
+    )
+    public Uni<Response> suggest(@QueryParam("text") String text,
+                                 @QueryParam("limit") @DefaultValue("" + Constants.SUGGEST_DEFAULT_LIMIT) int limit,
+                                 @QueryParam("minSimilarity") @DefaultValue("" + Constants.SUGGEST_DEFAULT_MIN_SIMILARITY) double minSimilarity) {
+        return trigramIndex.suggest(text, limit, minSimilarity).onItem()
+                .transform(suggestions->Response.ok().entity(new FAQSuggestionsResponseWrapper(suggestions)).build());
     }
 
     @GET
     @Path("/getAllByUser/{id}")
     @Timeout(Constants.LIGHT_OPERATION_TIMEOUT_MILLS)
-    @Operation(summary = "Получить все вопросы, заданные пользователем")
+    @Operation(summary = "Получить все вопросы, заданные пользователем",
+                description = "С параметрами limit/cursor возвращает страницу вопросов по возрастанию Id и nextCursor, если есть следующая страница."
+    )
     @Parameter(
             name = "id",
             description = "Id пользователя",
@@ -179,6 +477,17 @@ public class UserQuestionsResource {
             example = "777123456",
             schema = @Schema(implementation = Long.class)
     )
+    @Parameter(
+            name = "limit",
+            description = "Размер страницы (1-" + Constants.PAGE_MAX_LIMIT + "). Без limit и cursor возвращается весь список",
+            example = "50",
+            schema = @Schema(implementation = Integer.class, defaultValue = "" + Constants.PAGE_DEFAULT_LIMIT)
+    )
+    @Parameter(
+            name = "cursor",
+            description = "nextCursor из ответа с предыдущей страницей. Без него возвращается первая страница",
+            schema = @Schema(implementation = String.class)
+    )
     @APIResponse(
             responseCode = "200",
             description = "Список вопросов пользователя",
@@ -202,7 +511,7 @@ public class UserQuestionsResource {
     )
     @APIResponse(
             responseCode = "400",
-            description = "Некорректный Id пользователя(не число, <=0). Пример содержит ответ от запроса отправленного без Id.",
+            description = "Некорректный Id пользователя(не число, <=0), limit или cursor. Пример содержит ответ от запроса отправленного без Id.",
             content = @Content(
                     mediaType = MediaType.APPLICATION_JSON,
                     schema = @Schema(implementation = UserQuestionListResponseWrapper.class),
@@ -270,7 +579,13 @@ public class UserQuestionsResource {
                     """
             )
     )
-    public Uni<Response> getAllForUser(@PathParam("id") Long id) {
+    public Uni<Response> getAllForUser(@PathParam("id") Long id,
+                                       @QueryParam("limit") Integer limit,
+                                       @QueryParam("cursor") String cursor) {
+        if (limit != null || cursor != null) {
+            return repo.getQuestionsPage(id, cursor, limit != null ? limit : Constants.PAGE_DEFAULT_LIMIT).onItem()
+                    .transform(page->Response.ok().entity(new UserQuestionListResponseWrapper(page.items(), page.nextCursor())).build());
+        }
         return repo.getAllQuestions(id).onItem()
                 .transform(res->Response.ok().entity(new UserQuestionListResponseWrapper(res)).build());
     }
@@ -1,5 +1,7 @@
 package ru.endPoints;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.smallrye.common.annotation.Blocking;
 import io.smallrye.mutiny.Uni;
 import jakarta.inject.Inject;
 import jakarta.validation.Valid;
@@ -9,6 +11,7 @@ import jakarta.ws.rs.core.MediaType;
 import jakarta.ws.rs.core.Response;
 import org.eclipse.microprofile.faulttolerance.Bulkhead;
 import org.eclipse.microprofile.faulttolerance.CircuitBreaker;
+import org.eclipse.microprofile.faulttolerance.Fallback;
 import org.eclipse.microprofile.faulttolerance.Timeout;
 import org.eclipse.microprofile.openapi.annotations.Operation;
 import org.eclipse.microprofile.openapi.annotations.media.Content;
@@ -16,12 +19,27 @@ import org.eclipse.microprofile.openapi.annotations.media.Schema;
 import org.eclipse.microprofile.openapi.annotations.parameters.Parameter;
 import org.eclipse.microprofile.openapi.annotations.parameters.RequestBody;
 import org.eclipse.microprofile.openapi.annotations.responses.APIResponse;
+import org.jboss.resteasy.reactive.common.util.RestMediaType;
 import ru.Constants;
+import ru.cache.RoleRegistry;
 import ru.dto.UserDTO;
+import ru.dto.UserIdsDTO;
+import ru.dto.UserRolesDTO;
+import ru.journal.JournalReplayer;
+import ru.journal.WriteJournal;
 import ru.repositories.UserRepository;
+import ru.wrappers.BulkResultResponseWrapper;
 import ru.wrappers.FAQListResponseWrapper;
+import ru.wrappers.GenericResponseWrapper;
 import ru.wrappers.RoleResponseWrapper;
 import ru.wrappers.UserResponseWrapper;
+import ru.wrappers.UserRolesResponseWrapper;
+
+import java.io.InputStream;
+import java.net.ConnectException;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
 
 
 @Path("/DB/users")
@@ -31,14 +49,32 @@ public class UsersResource {
     @Inject
     UserRepository repo;
 
+    @Inject
+    RoleRegistry roleRegistry;
+
+    @Inject
+    ObjectMapper mapper;
+
+    @Inject
+    SingleFlight singleFlight;
+
+    @Inject
+    WriteJournal journal;
+
+    @Inject
+    JournalReplayer replayer;
+
     //Добавление нового юзера
     @POST
     @Path("/addUser")
     @Consumes(MediaType.APPLICATION_JSON)
     @Timeout(Constants.HEAVY_OPERATION_TIMEOUT_MILLS)
+    @Fallback(fallbackMethod = "journalUser", applyOn = ConnectException.class)
     @Operation(
             summary = "Добавить нового пользователя",
-            description = "Регистрирует нового пользователя в системе. Если пользователь уже существует — возвращает ошибку 409."
+            description = "Регистрирует нового пользователя в системе. Если пользователь уже существует — возвращает ошибку 409. " +
+                    "Если БД недоступна, регистрация сохраняется в локальный журнал (202) и проверка на существование выполняется при его применении: " +
+                    "принятая так регистрация ещё может быть отклонена."
     )
     @RequestBody(
             description = "Данные нового пользователя. Имя пользователя - опционально. Поле должно присутствовать но его можно оставить пустыи, например '' ",
@@ -70,6 +106,21 @@ public class UsersResource {
                 """
             )
     )
+    @APIResponse(
+            responseCode = "202",
+            description = "БД недоступна или в журнале ещё есть неприменённые записи: запрос сохранён в локальный журнал и будет применён к БД по порядку, " +
+                    "когда она станет доступна",
+            content = @Content(
+                    mediaType = MediaType.APPLICATION_JSON,
+                    schema = @Schema(implementation = RoleResponseWrapper.class),
+                    example = """
+                            {
+                                "data": null,
+                                "message": "Database unavailable. Request saved and will be applied later; it can still be rejected then (user not found or already exists)."
+                            }
+                    """
+            )
+    )
     @APIResponse(
             responseCode = "400",
             description = "Ошибка валидации: отсутствует тело запроса, некорректный ID",
@@ -142,7 +193,7 @@ public class UsersResource {
     )
     @APIResponse(
             responseCode = "503",
-            description = "Ошибка подключения к БД",
+            description = "Ошибка подключения к БД и локальный журнал записей заполнен",
             content = @Content(
                     mediaType = MediaType.APPLICATION_JSON,
                     schema = @Schema(implementation = RoleResponseWrapper.class),
@@ -155,12 +206,135 @@ public class UsersResource {
             )
     )
     public Uni<Response> addUser(@Valid @NotNull(message = "Target json not found") UserDTO user) {
+        //Запись прошла - БД доступна, журнал применяется сразу, а не по расписанию
         return repo.addUser(user.id, user.maxName)
+                .onItem().invoke(replayer::wake)
                 .onItem().transform(resp->
                     Response.ok().entity(new RoleResponseWrapper(resp.getRole())).build()
                 );
     }
 
+    //БД недоступна - регистрация сохраняется в журнал и будет выполнена позже
+    Uni<Response> journalUser(UserDTO user) {
+        return journal.addUser(user.id, user.maxName).onItem()
+                .transform(seq->Response.accepted().entity(GenericResponseWrapper.journaled()).build());
+    }
+
+    //Пакетная регистрация пользователей
+    @POST
+    @Path("/addUsers")
+    @Consumes({MediaType.APPLICATION_JSON, RestMediaType.APPLICATION_NDJSON})
+    @Blocking
+    @Timeout(Constants.BULK_OPERATION_TIMEOUT_MILLS)
+    @Bulkhead(value = 1, waitingTaskQueue = 2)
+    @Operation(
+            summary = "Зарегистрировать пользователей пакетом",
+            description = "Принимает json массив или NDJSON поток объектов UserDTO и читает его потоково. " +
+                    "Пользователи записываются через MERGE кусками по " + Constants.BULK_CHUNK_SIZE + " записей, " +
+                    "одновременно обрабатывается не более " + Constants.BULK_CONCURRENCY + " кусков. " +
+                    "Существующие пользователи не считаются ошибкой. Для каждого элемента возвращается итог обработки."
+    )
+    @Parameter(
+            name = "refreshNames",
+            description = "Обновлять MAX_Name у уже существующих пользователей",
+            example = "false",
+            schema = @Schema(implementation = Boolean.class)
+    )
+    @RequestBody(
+            description = "Json массив или NDJSON (по объекту на строку) с данными пользователей",
+            required = true,
+            content = @Content(
+                    mediaType = MediaType.APPLICATION_JSON,
+                    schema = @Schema(implementation = UserDTO.class),
+                    example = """
+                            [
+                               {"id":17, "maxName":"Иван"},
+                               {"id":18, "maxName":""}
+                            ]
+                """
+            )
+    )
+    @APIResponse(
+            responseCode = "200",
+            description = "Пакет обработан, возвращается итог по каждому элементу в порядке входных данных",
+            content = @Content(
+                    mediaType = MediaType.APPLICATION_JSON,
+                    schema = @Schema(implementation = BulkResultResponseWrapper.class),
+                    example = """
+                            {
+                                "data": [
+                                    {"index": 0, "id": 17, "status": "created"},
+                                    {"index": 1, "id": 18, "status": "exists"},
+                                    {"index": 2, "status": "invalid", "message": "Id must be positive number"}
+                                ],
+                                "message": "success"
+                            }
+                """
+            )
+    )
+    @APIResponse(
+            responseCode = "400",
+            description = "Тело запроса не является корректным json/NDJSON",
+            content = @Content(
+                    mediaType = MediaType.APPLICATION_JSON,
+                    schema = @Schema(implementation = BulkResultResponseWrapper.class),
+                    example = """
+                {
+                  "data": null,
+                  "message": "Malformed JSON body: ErrorText"
+                }
+                """
+            )
+    )
+    @APIResponse(
+            responseCode = "408",
+            description = "Таймаут запроса",
+            content = @Content(
+                    mediaType = MediaType.APPLICATION_JSON,
+                    schema = @Schema(implementation = BulkResultResponseWrapper.class),
+                    example = """
+                            {
+                                "data": null,
+                                "message": "Request timeout. Try again later."
+                            }
+                            """
+            )
+    )
+    @APIResponse(
+            responseCode = "429",
+            description = "Уже выполняется другая пакетная регистрация",
+            content = @Content(
+                    mediaType = MediaType.APPLICATION_JSON,
+                    schema = @Schema( implementation = BulkResultResponseWrapper.class),
+                    example = """
+                        {
+                           "data": null,
+                           "message": "Service experience high loads. Try again later."
+                        }
+                    """
+            )
+    )
+    @APIResponse(
+            responseCode = "500",
+            description = "Внутренняя ошибка сервера",
+            content = @Content(
+                    mediaType = MediaType.APPLICATION_JSON,
+                    schema = @Schema(implementation = BulkResultResponseWrapper.class),
+                    example = """
+                            {
+                                "data": null,
+                                "message": "Unknown error: ErrorText"
+                            }
+                            """
+            )
+    )
+    public Uni<Response> addUsers(InputStream body, @QueryParam("refreshNames") @DefaultValue("false") boolean refreshNames) {
+        return repo.addUsers(JsonStreams.read(mapper, body, UserDTO.class), refreshNames)
+                .onItem().transform(results->
+                        Response.ok().entity(new BulkResultResponseWrapper(results)).build()
+                );
+    }
+
     //Получение роли юзера по id
     @GET
     @Path("/getRole/{id}")
@@ -290,12 +464,145 @@ public class UsersResource {
             )
     )
     public Uni<Response> getRole(@PathParam("id") Long id) {
-        return repo.getUserRole(id).onItem()
+        return singleFlight.execute("users:role:" + id, ()->repo.getUserRole(id)).onItem()
                 .transform(resp->
                     Response.ok().entity(new RoleResponseWrapper(resp)).build()
                 );
     }
 
+    //Получение ролей пачки пользователей
+    @POST
+    @Path("/getRoles")
+    @Consumes(MediaType.APPLICATION_JSON)
+    @Timeout(Constants.LIGHT_OPERATION_TIMEOUT_MILLS)
+    @Bulkhead(value = 2, waitingTaskQueue = 10)
+    @CircuitBreaker(
+            requestVolumeThreshold = 5,
+            failureRatio = 0.7,
+            delay = 5000,
+            successThreshold = 2
+    )
+    @Operation(
+            summary = "Получить роли нескольких пользователей",
+            description = "Возвращает роли для списка Id одним запросом (не более " + Constants.MAX_ROLES_BATCH_SIZE + " Id). " +
+                    "Id, которых нет в системе, перечисляются в поле missing."
+    )
+    @RequestBody(
+            description = "Список Id пользователей",
+            required = true,
+            content = @Content(
+                    mediaType = MediaType.APPLICATION_JSON,
+                    schema = @Schema(implementation = UserIdsDTO.class),
+                    example = """
+                            {
+                               "ids": [17, 777123456, 32712]
+                            }
+                """
+            )
+    )
+    @APIResponse(
+            responseCode = "200",
+            description = "Роли пользователей успешно получены",
+            content = @Content(
+                    mediaType = MediaType.APPLICATION_JSON,
+                    schema = @Schema(implementation = UserRolesResponseWrapper.class),
+                    example = """
+                            {
+                              "data": {
+                                "roles": {
+                                  "17": "user",
+                                  "32712": "admin"
+                                },
+                                "missing": [777123456]
+                              },
+                              "message": "success"
+                            }
+                """
+            )
+    )
+    @APIResponse(
+            responseCode = "400",
+            description = "Ошибка валидации: отсутствует тело запроса, пустой список, некорректный Id",
+            content = @Content(
+                    mediaType = MediaType.APPLICATION_JSON,
+                    schema = @Schema(implementation = UserRolesResponseWrapper.class),
+                    example = """
+                {
+                  "data": null,
+                  "message": "Ids can not be empty"
+                }
+                """
+            )
+    )
+    @APIResponse(
+            responseCode = "408",
+            description = "Таймаут запроса",
+            content = @Content(
+                    mediaType = MediaType.APPLICATION_JSON,
+                    schema = @Schema(implementation = UserRolesResponseWrapper.class),
+                    example = """
+                            {
+                                "data": null,
+                                "message": "Request timeout. Try again later."
+                            }
+                            """
+            )
+    )
+    @APIResponse(
+            responseCode = "429",
+            description = "Слишком много запросов. Для пакетных запросов выделена отдельная, меньшая очередь.",
+            content = @Content(
+                    mediaType = MediaType.APPLICATION_JSON,
+                    schema = @Schema( implementation = UserRolesResponseWrapper.class),
+                    example = """
+                        {
+                           "data": null,
+                           "message": "Service experience high loads. Try again later."
+                        }
+                    """
+            )
+    )
+    @APIResponse(
+            responseCode = "500",
+            description = "Внутренняя ошибка сервера или ошибка выполнения sql операции",
+            content = @Content(
+                    mediaType = MediaType.APPLICATION_JSON,
+                    schema = @Schema(implementation = UserRolesResponseWrapper.class),
+                    example = """
+                            {
+                                "data": null,
+                                "message": "Unknown error: ErrorText"
+                            }
+                            """
+            )
+    )
+    @APIResponse(
+            responseCode = "503",
+            description = "Ошибка подключения к БД",
+            content = @Content(
+                    mediaType = MediaType.APPLICATION_JSON,
+                    schema = @Schema(implementation = UserRolesResponseWrapper.class),
+                    example = """
+                            {
+                                "data": null,
+                                "message": "SqlServer Exception occurred: Unable to connect to database"
+                            }
+                    """
+            )
+    )
+    public Uni<Response> getRoles(@Valid @NotNull(message = "Target json not found") UserIdsDTO request) {
+        return repo.getUserRoles(request.ids).onItem()
+                .transform(found->{
+                    Map<Long, String> roles = new TreeMap<>();
+                    found.forEach((id, role)->roles.put(id, role.getName()));
+                    List<Long> missing = request.ids.stream()
+                            .distinct()
+                            .filter(id->!found.containsKey(id))
+                            .toList();
+                    return Response.ok().entity(new UserRolesResponseWrapper(new UserRolesDTO(roles, missing))).build();
+                });
+    }
+
     @PATCH
     @Path("/promote/{id}")
     @Timeout(Constants.LIGHT_OPERATION_TIMEOUT_MILLS)
@@ -720,4 +1027,65 @@ public class UsersResource {
                         Response.ok().entity(UserResponseWrapper.successWithNoData()).build()
                 );
     }
+
+    //перечитать справочник ролей
+    @POST
+    @Path("/refreshRoles")
+    @Timeout(Constants.LIGHT_OPERATION_TIMEOUT_MILLS)
+    @Operation(
+            summary = "Перечитать справочник ролей",
+            description = "Заново загружает таблицу User_Roles в память. Нужен после ручного изменения ролей в БД, " +
+                    "в остальное время роли читаются из памяти."
+    )
+    @RequestBody(
+            required = false
+    )
+    @APIResponse(
+            responseCode = "200",
+            description = "Справочник ролей перечитан",
+            content = @Content(
+                    mediaType = MediaType.APPLICATION_JSON,
+                    schema = @Schema(implementation = UserResponseWrapper.class),
+                    example = """
+                            {
+                              "data": null,
+                              "message": "success"
+                            }
+                """
+            )
+    )
+    @APIResponse(
+            responseCode = "500",
+            description = "Внутренняя ошибка сервера или ошибка выполнения sql операции",
+            content = @Content(
+                    mediaType = MediaType.APPLICATION_JSON,
+                    schema = @Schema(implementation = UserResponseWrapper.class),
+                    example = """
+                            {
+                                "data": null,
+                                "message": "Unknown error: ErrorText"
+                            }
+                            """
+            )
+    )
+    @APIResponse(
+            responseCode = "503",
+            description = "Ошибка подключения к БД",
+            content = @Content(
+                    mediaType = MediaType.APPLICATION_JSON,
+                    schema = @Schema(implementation = UserResponseWrapper.class),
+                    example = """
+                            {
+                                "data": null,
+                                "message": "SqlServer Exception occurred: Unable to connect to database"
+                            }
+                    """
+            )
+    )
+    public Uni<Response> refreshRoles() {
+        return roleRegistry.refresh().onItem()
+                .transform(resp->
+                        Response.ok().entity(UserResponseWrapper.successWithNoData()).build()
+                );
+    }
 }
@@ -0,0 +1,60 @@
+package ru.entities;
+
+import io.quarkus.hibernate.reactive.panache.PanacheEntityBase;
+import jakarta.persistence.*;
+import ru.events.ChangeAction;
+
+import java.time.LocalDateTime;
+
+//Запись журнала изменений тем и FAQ. Version растёт монотонно, по ней реплики догружают изменения
+@Entity
+@Table(name="Catalog_Changes")
+public class CatalogChange extends PanacheEntityBase {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(name="Version", nullable=false)
+    private Long version;
+
+    @Column(name="Entity_Type", nullable=false, columnDefinition = "nvarchar(10)")
+    private String entityType;
+
+    @Column(name="Entity_ID", nullable=false)
+    private Long entityId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name="Action", nullable=false, columnDefinition = "nvarchar(10)")
+    private ChangeAction action;
+
+    @Column(name="Changed_At", nullable=false)
+    private LocalDateTime changedAt;
+
+    public CatalogChange() {}
+
+    public CatalogChange(String entityType, Long entityId, ChangeAction action) {
+        this.entityType = entityType;
+        this.entityId = entityId;
+        this.action = action;
+        this.changedAt = LocalDateTime.now();
+    }
+
+    public Long getVersion() {
+        return version;
+    }
+
+    public String getEntityType() {
+        return entityType;
+    }
+
+    public Long getEntityId() {
+        return entityId;
+    }
+
+    public ChangeAction getAction() {
+        return action;
+    }
+
+    public LocalDateTime getChangedAt() {
+        return changedAt;
+    }
+}
@@ -0,0 +1,7 @@
+package ru.events;
+
+public enum ChangeAction {
+    CREATED,
+    UPDATED,
+    DELETED
+}
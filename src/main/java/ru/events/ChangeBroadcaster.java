@@ -0,0 +1,128 @@
+package ru.events;
+
+import io.smallrye.mutiny.Multi;
+import io.smallrye.mutiny.subscription.BackPressureStrategy;
+import io.smallrye.mutiny.subscription.MultiEmitter;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import ru.dto.ChangeNotificationDTO;
+import ru.repositories.CatalogRepository;
+
+import java.util.ArrayDeque;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+//Рассылка уведомлений об изменениях всем подписчикам SSE.
+//У каждого подписчика своя очередь ограниченного размера: при переполнении выбрасывается самое старое уведомление,
+//а перед оставшимися подписчик получает resync. Публикующий поток только кладёт в очереди и никогда не ждёт медленных клиентов
+@ApplicationScoped
+public class ChangeBroadcaster {
+
+    public static final String ROLE_ENTITY = "role";
+
+    @ConfigProperty(name = "maxbot.change-stream.buffer-size", defaultValue = "256")
+    int bufferSize;
+
+    private final Set<Subscriber> subscribers = ConcurrentHashMap.newKeySet();
+
+    private final LongAdder published = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder resyncs = new LongAdder();
+
+    void onFAQChanged(@Observes FAQChangedEvent event) {
+        publish(new ChangeNotificationDTO(CatalogRepository.FAQ_ENTITY, event.faqId(), event.action().name(), event.version(), null));
+    }
+
+    void onThemeChanged(@Observes ThemeChangedEvent event) {
+        publish(new ChangeNotificationDTO(CatalogRepository.THEME_ENTITY, event.themeId().longValue(), event.action().name(), event.version(), null));
+    }
+
+    void onRoleChanged(@Observes RoleChangedEvent event) {
+        publish(new ChangeNotificationDTO(ROLE_ENTITY, event.userId(), ChangeAction.UPDATED.name(), null, event.role()));
+    }
+
+    //Поток уведомлений для одного клиента, живёт до отключения клиента
+    public Multi<ChangeNotificationDTO> subscribe() {
+        //ERROR вместо буфера эмиттера: уведомления отдаются только под запрошенное количество, копятся они в своей очереди
+        return Multi.createFrom().<ChangeNotificationDTO>emitter(emitter->{
+            Subscriber subscriber = new Subscriber(emitter, bufferSize);
+            subscribers.add(subscriber);
+            emitter.onTermination(()->subscribers.remove(subscriber));
+            emitter.onRequest(requested->subscriber.drain());
+        }, BackPressureStrategy.ERROR);
+    }
+
+    private void publish(ChangeNotificationDTO notification) {
+        published.increment();
+        for (Subscriber subscriber : subscribers) {
+            subscriber.offer(notification);
+        }
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("subscribers", subscribers.size());
+        stats.put("published", published.sum());
+        stats.put("dropped", dropped.sum());
+        stats.put("resyncs", resyncs.sum());
+        return stats;
+    }
+
+    private final class Subscriber {
+
+        private final MultiEmitter<? super ChangeNotificationDTO> emitter;
+        private final int capacity;
+        private final ArrayDeque<ChangeNotificationDTO> buffer;
+        //Были выброшены уведомления, перед следующим нужно отправить resync
+        private boolean gap;
+        //Счётчик входов в drain: отправляет только один поток, остальные лишь просят его пройти ещё раз
+        private final AtomicInteger wip = new AtomicInteger();
+
+        Subscriber(MultiEmitter<? super ChangeNotificationDTO> emitter, int capacity) {
+            this.emitter = emitter;
+            this.capacity = capacity;
+            this.buffer = new ArrayDeque<>(Math.min(capacity, 16));
+        }
+
+        void offer(ChangeNotificationDTO notification) {
+            synchronized (this) {
+                if (buffer.size() >= capacity) {
+                    buffer.pollFirst();
+                    dropped.increment();
+                    gap = true;
+                }
+                buffer.addLast(notification);
+            }
+            drain();
+        }
+
+        void drain() {
+            if (wip.getAndIncrement() != 0) {
+                return;
+            }
+            do {
+                while (emitter.requested() > 0 && !emitter.isCancelled()) {
+                    ChangeNotificationDTO next;
+                    synchronized (this) {
+                        if (gap) {
+                            gap = false;
+                            resyncs.increment();
+                            next = new ChangeNotificationDTO(ChangeNotificationDTO.RESYNC, null, null, null, null);
+                        } else {
+                            next = buffer.pollFirst();
+                        }
+                    }
+                    if (next == null) {
+                        break;
+                    }
+                    emitter.emit(next);
+                }
+            } while (wip.decrementAndGet() != 0);
+        }
+    }
+}
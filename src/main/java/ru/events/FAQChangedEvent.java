@@ -0,0 +1,9 @@
+package ru.events;
+
+import ru.entities.FAQ;
+
+//Изменение FAQ после успешного коммита.
+//previousThemeId - тема до изменения (для UPDATED), faq - новое состояние записи (null для DELETED),
+//version - версия записи в журнале изменений каталога
+public record FAQChangedEvent(ChangeAction action, Long faqId, Integer themeId, Integer previousThemeId, FAQ faq, Long version) {
+}
@@ -0,0 +1,5 @@
+package ru.events;
+
+//Смена роли пользователя после успешного UPDATE. role - имя новой роли
+public record RoleChangedEvent(Long userId, String role) {
+}
@@ -0,0 +1,8 @@
+package ru.events;
+
+import ru.entities.Theme;
+
+//Изменение темы после успешного коммита. theme - новое состояние записи (null для DELETED),
+//version - версия записи в журнале изменений каталога
+public record ThemeChangedEvent(ChangeAction action, Integer themeId, Theme theme, Long version) {
+}
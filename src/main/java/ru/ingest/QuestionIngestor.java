@@ -0,0 +1,216 @@
+package ru.ingest;
+
+import io.quarkus.runtime.ShutdownEvent;
+import io.quarkus.runtime.StartupEvent;
+import io.smallrye.mutiny.Uni;
+import io.smallrye.mutiny.infrastructure.Infrastructure;
+import jakarta.annotation.PostConstruct;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import jakarta.inject.Inject;
+import jakarta.ws.rs.NotFoundException;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.eclipse.microprofile.faulttolerance.exceptions.BulkheadException;
+import org.jboss.logging.Logger;
+import ru.Constants;
+import ru.dto.IngestTicketDTO;
+import ru.repositories.UserQuestionsRepository;
+import ru.repositories.UserQuestionsRepository.NewQuestion;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+//Асинхронный приём вопросов пользователей: запрос только кладёт вопрос в ограниченную очередь и получает квитанцию,
+//в БД вопросы пишутся пакетами - как только набралось batchSize или раз в flushIntervalMillis.
+//Если пакет не записался, его вопросы пишутся по одному, чтобы ошибка одного не потеряла остальные
+@ApplicationScoped
+public class QuestionIngestor {
+
+    private final Logger logger = Logger.getLogger(QuestionIngestor.class);
+
+    @Inject
+    UserQuestionsRepository repo;
+
+    @ConfigProperty(name = "maxbot.ingest.queue-capacity", defaultValue = "10000")
+    int queueCapacity;
+
+    @ConfigProperty(name = "maxbot.ingest.batch-size", defaultValue = "200")
+    int batchSize;
+
+    @ConfigProperty(name = "maxbot.ingest.flush-interval-millis", defaultValue = "50")
+    long flushIntervalMillis;
+
+    private record Pending(String ticket, NewQuestion question, long enqueuedNanos) {}
+
+    private static final class Ticket {
+        volatile String status = IngestTicketDTO.QUEUED;
+        volatile Long questionId;
+        volatile String message;
+        volatile long completedAt;
+    }
+
+    private BlockingQueue<Pending> queue;
+    private final ConcurrentHashMap<String, Ticket> tickets = new ConcurrentHashMap<>();
+    private volatile boolean accepting = true;
+    private final AtomicBoolean flushRequested = new AtomicBoolean();
+    private ScheduledFuture<?> flushTask;
+
+    private final LongAdder accepted = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder saved = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder batches = new LongAdder();
+    private final LongAdder batchedItems = new LongAdder();
+    private final AtomicLong maxBatchSize = new AtomicLong();
+    private final LongAdder flushMillis = new LongAdder();
+    private final AtomicLong maxFlushMillis = new AtomicLong();
+    private final AtomicLong maxQueueWaitMillis = new AtomicLong();
+
+    @PostConstruct
+    void init() {
+        batchSize = Math.max(1, Math.min(batchSize, Constants.MAX_QUESTION_BATCH_SIZE));
+        queue = new ArrayBlockingQueue<>(queueCapacity);
+    }
+
+    void onStart(@Observes StartupEvent event) {
+        flushTask = Infrastructure.getDefaultWorkerPool().scheduleWithFixedDelay(()->{
+            flush();
+            expireTickets();
+        }, flushIntervalMillis, flushIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    //Новые вопросы больше не принимаются, уже принятые записываются до остановки
+    void onShutdown(@Observes ShutdownEvent event) {
+        accepting = false;
+        if (flushTask != null) {
+            flushTask.cancel(false);
+        }
+        flush();
+        logger.infof("Очередь вопросов записана при остановке, сохранено всего: %d", saved.sum());
+    }
+
+    //Принять вопрос в очередь. Очередь заполнена - BulkheadException (429)
+    public Uni<IngestTicketDTO> submit(Long userId, String question) {
+        if (!accepting) {
+            return Uni.createFrom().failure(()->new BulkheadException("Service is shutting down"));
+        }
+        String id = UUID.randomUUID().toString();
+        tickets.put(id, new Ticket());
+        if (!queue.offer(new Pending(id, new NewQuestion(userId, question, LocalDateTime.now()), System.nanoTime()))) {
+            tickets.remove(id);
+            rejected.increment();
+            return Uni.createFrom().failure(()->new BulkheadException("Question queue is full"));
+        }
+        accepted.increment();
+        if (queue.size() >= batchSize && flushRequested.compareAndSet(false, true)) {
+            Infrastructure.getDefaultWorkerPool().execute(this::flush);
+        }
+        return Uni.createFrom().item(new IngestTicketDTO(id, IngestTicketDTO.QUEUED, null, null));
+    }
+
+    //Состояние квитанции. Завершённые хранятся INGEST_TICKET_TTL_MILLS
+    public Uni<IngestTicketDTO> ticket(String id) {
+        Ticket ticket = id == null ? null : tickets.get(id);
+        if (ticket == null) {
+            return Uni.createFrom().failure(()->new NotFoundException("Ticket not found"));
+        }
+        return Uni.createFrom().item(new IngestTicketDTO(id, ticket.status, ticket.questionId, ticket.message));
+    }
+
+    //Записать всё, что есть в очереди. Выполняется в пуле рабочих потоков и ждёт БД, поэтому не на event loop
+    synchronized void flush() {
+        flushRequested.set(false);
+        List<Pending> batch = new ArrayList<>(batchSize);
+        while (queue.drainTo(batch, batchSize) > 0) {
+            write(batch);
+            batch.clear();
+        }
+    }
+
+    private void write(List<Pending> batch) {
+        long start = System.nanoTime();
+        maxQueueWaitMillis.accumulateAndGet(TimeUnit.NANOSECONDS.toMillis(start - batch.get(0).enqueuedNanos()), Math::max);
+        try {
+            Map<Integer, Long> ids = repo.addQuestions(batch.stream().map(Pending::question).toList())
+                    .await().atMost(Duration.ofMillis(Constants.HEAVY_OPERATION_TIMEOUT_MILLS));
+            for (int i = 0; i < batch.size(); i++) {
+                complete(batch.get(i), ids.get(i), null);
+            }
+        } catch (RuntimeException e) {
+            logger.warn("Пакетная вставка вопросов не удалась, вставка по одному", e);
+            for (Pending pending : batch) {
+                try {
+                    Map<Integer, Long> ids = repo.addQuestions(List.of(pending.question()))
+                            .await().atMost(Duration.ofMillis(Constants.HEAVY_OPERATION_TIMEOUT_MILLS));
+                    complete(pending, ids.get(0), null);
+                } catch (RuntimeException rowFailure) {
+                    complete(pending, null, rowFailure.getMessage() != null ? rowFailure.getMessage() : rowFailure.toString());
+                }
+            }
+        }
+        long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        batches.increment();
+        batchedItems.add(batch.size());
+        maxBatchSize.accumulateAndGet(batch.size(), Math::max);
+        flushMillis.add(millis);
+        maxFlushMillis.accumulateAndGet(millis, Math::max);
+    }
+
+    //Id нет и ошибки нет - пользователь не найден (строка отсеяна при вставке)
+    private void complete(Pending pending, Long questionId, String error) {
+        Ticket ticket = tickets.get(pending.ticket());
+        if (questionId != null) {
+            saved.increment();
+        } else {
+            failed.increment();
+        }
+        if (ticket == null) {
+            return;
+        }
+        if (questionId != null) {
+            ticket.questionId = questionId;
+            ticket.status = IngestTicketDTO.SAVED;
+        } else {
+            ticket.message = error != null ? error : "Target user not found";
+            ticket.status = IngestTicketDTO.FAILED;
+        }
+        ticket.completedAt = System.currentTimeMillis();
+    }
+
+    private void expireTickets() {
+        long expired = System.currentTimeMillis() - Constants.INGEST_TICKET_TTL_MILLS;
+        tickets.values().removeIf(ticket->ticket.completedAt != 0 && ticket.completedAt < expired);
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        long batchCount = batches.sum();
+        stats.put("queueDepth", queue.size());
+        stats.put("queueCapacity", queueCapacity);
+        stats.put("accepted", accepted.sum());
+        stats.put("rejected", rejected.sum());
+        stats.put("saved", saved.sum());
+        stats.put("failed", failed.sum());
+        stats.put("batches", batchCount);
+        stats.put("avgBatchSize", batchCount == 0 ? 0 : Math.round(batchedItems.sum() * 100.0 / batchCount) / 100.0);
+        stats.put("maxBatchSize", maxBatchSize.get());
+        stats.put("avgFlushMillis", batchCount == 0 ? 0 : Math.round(flushMillis.sum() * 100.0 / batchCount) / 100.0);
+        stats.put("maxFlushMillis", maxFlushMillis.get());
+        stats.put("maxQueueWaitMillis", maxQueueWaitMillis.get());
+        stats.put("tickets", tickets.size());
+        return stats;
+    }
+}
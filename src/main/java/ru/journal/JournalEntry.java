@@ -0,0 +1,12 @@
+package ru.journal;
+
+import java.time.LocalDateTime;
+
+//Запись журнала: вопрос пользователя (userId, text = вопрос, date) или регистрация (userId, text = имя, date = null)
+public record JournalEntry(long seq, Kind kind, long userId, String text, LocalDateTime date) {
+
+    public enum Kind {
+        QUESTION,
+        USER
+    }
+}
@@ -0,0 +1,137 @@
+package ru.journal;
+
+import io.quarkus.runtime.ShutdownEvent;
+import io.quarkus.runtime.StartupEvent;
+import io.quarkus.vertx.VertxContextSupport;
+import io.smallrye.mutiny.Uni;
+import io.smallrye.mutiny.infrastructure.Infrastructure;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import jakarta.inject.Inject;
+import jakarta.ws.rs.NotFoundException;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.jboss.logging.Logger;
+import ru.Constants;
+import ru.exceptions.AlreadyExistException;
+import ru.repositories.UserQuestionsRepository;
+import ru.repositories.UserRepository;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+//Применяет записи журнала к БД строго по порядку. После каждой записи сохраняется контрольная точка;
+//запись, применённую перед сбоем до сохранения точки, повторная вставка распознаёт по номеру в Journal_Applied и не дублирует.
+//Пока БД недоступна, применение останавливается на текущей записи и повторяется через replayIntervalMillis
+@ApplicationScoped
+public class JournalReplayer {
+
+    private final Logger logger = Logger.getLogger(JournalReplayer.class);
+
+    @Inject
+    WriteJournal journal;
+
+    @Inject
+    UserRepository userRepository;
+
+    @Inject
+    UserQuestionsRepository questionsRepository;
+
+    @ConfigProperty(name = "maxbot.journal.replay-interval-millis", defaultValue = "5000")
+    long replayIntervalMillis;
+
+    private ScheduledFuture<?> replayTask;
+    private final AtomicBoolean wakeRequested = new AtomicBoolean();
+
+    private final LongAdder applied = new LongAdder();
+    private final LongAdder duplicates = new LongAdder();
+    private final LongAdder discarded = new LongAdder();
+    private final LongAdder failedRuns = new LongAdder();
+
+    void onStart(@Observes StartupEvent event) {
+        replayTask = Infrastructure.getDefaultWorkerPool().scheduleWithFixedDelay(this::replay,
+                replayIntervalMillis, replayIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    void onShutdown(@Observes ShutdownEvent event) {
+        if (replayTask != null) {
+            replayTask.cancel(false);
+        }
+    }
+
+    //Запись в БД только что прошла - БД доступна, журнал применяется сразу, не дожидаясь очередного запуска
+    public void wake() {
+        if (journal.hasPending() && wakeRequested.compareAndSet(false, true)) {
+            Infrastructure.getDefaultWorkerPool().execute(()->{
+                wakeRequested.set(false);
+                replay();
+            });
+        }
+    }
+
+    synchronized void replay() {
+        while (true) {
+            JournalEntry entry = journal.peek();
+            if (entry == null) {
+                return;
+            }
+            try {
+                //Репозитории работают через Hibernate Reactive, которому нужен контекст Vert.x
+                boolean inserted = VertxContextSupport.subscribeAndAwait(()->apply(entry)
+                        .ifNoItem().after(Duration.ofMillis(Constants.HEAVY_OPERATION_TIMEOUT_MILLS)).fail());
+                if (inserted) {
+                    applied.increment();
+                } else {
+                    duplicates.increment();
+                }
+            } catch (Throwable e) {
+                if (!isRejected(e)) {
+                    //БД всё ещё недоступна - запись остаётся первой в очереди
+                    failedRuns.increment();
+                    logger.warnf("Журнал записей: не удалось применить запись %d, повтор позже: %s", entry.seq(), e.getMessage());
+                    return;
+                }
+                //БД отвергла запись (нет пользователя, ошибка данных) - повтор даст то же самое
+                discarded.increment();
+                logger.errorf(e, "Журнал записей: запись %d отброшена", entry.seq());
+            }
+            journal.commit(entry.seq());
+        }
+    }
+
+    //true - запись вставлена, false - она уже была в БД
+    private Uni<Boolean> apply(JournalEntry entry) {
+        if (entry.kind() == JournalEntry.Kind.USER) {
+            return userRepository.addUser(entry.userId(), entry.text())
+                    .replaceWith(true)
+                    .onFailure(AlreadyExistException.class).recoverWithItem(false);
+        }
+        return questionsRepository.addJournaledQuestion(journal.id(), entry.seq(),
+                new UserQuestionsRepository.NewQuestion(entry.userId(), entry.text(), entry.date()));
+    }
+
+    //Отбрасываются только записи, которые БД отвергла по существу: нет пользователя (547) или данные не подходят
+    //столбцам - репозитории переводят их в NotFoundException и IllegalArgumentException. Остальные ошибки СУБД
+    //(нет доступа к базе, вход, взаимоблокировка, таймаут блокировки) временные, запись повторяется
+    private static boolean isRejected(Throwable failure) {
+        for (Throwable current = failure; current != null; current = current.getCause()) {
+            if (current instanceof NotFoundException || current instanceof IllegalArgumentException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>(journal.stats());
+        stats.put("applied", applied.sum());
+        stats.put("duplicates", duplicates.sum());
+        stats.put("discarded", discarded.sum());
+        stats.put("failedRuns", failedRuns.sum());
+        return stats;
+    }
+}
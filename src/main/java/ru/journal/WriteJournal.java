@@ -0,0 +1,409 @@
+package ru.journal;
+
+import io.smallrye.mutiny.Uni;
+import io.smallrye.mutiny.infrastructure.Infrastructure;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.enterprise.context.ApplicationScoped;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.jboss.logging.Logger;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.ConnectException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+//Локальный журнал записей, принятых без БД. Файлы-сегменты отображены в память, запись дописывается в конец сегмента
+//и сразу сбрасывается на диск. Формат записи: длина тела, CRC32 тела, тело (номер, тип, данные); за последней записью
+//всегда лежит нулевая длина. Недописанная при сбое запись не проходит проверку CRC и считается концом сегмента.
+//Номер последней применённой записи хранится в файле контрольной точки, применённые сегменты удаляются
+@ApplicationScoped
+public class WriteJournal {
+
+    private final Logger logger = Logger.getLogger(WriteJournal.class);
+
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".log";
+    private static final String CHECKPOINT_FILE = "checkpoint";
+    private static final String ID_FILE = "journal-id";
+    //Длина и CRC перед телом записи
+    private static final int HEADER_SIZE = 8;
+    //Нулевая длина после последней записи
+    private static final int TERMINATOR_SIZE = 4;
+    //Номер записи и тип
+    private static final int BODY_PREFIX_SIZE = 9;
+    //Контрольная точка пишется по очереди в один из двух слотов (номер и его CRC), чтобы недописанный слот не терял предыдущий
+    private static final int CHECKPOINT_SLOT_SIZE = 16;
+
+    @ConfigProperty(name = "maxbot.journal.dir", defaultValue = "data/journal")
+    String dir;
+
+    @ConfigProperty(name = "maxbot.journal.segment-size-bytes", defaultValue = "8388608")
+    int segmentSize;
+
+    @ConfigProperty(name = "maxbot.journal.max-segments", defaultValue = "32")
+    int maxSegments;
+
+    private static final class Segment {
+        final Path file;
+        final FileChannel channel;
+        final MappedByteBuffer buffer;
+        //Смещение нулевой длины после последней записи
+        int writePosition;
+        long lastSeq;
+
+        Segment(Path file, FileChannel channel, MappedByteBuffer buffer) {
+            this.file = file;
+            this.channel = channel;
+            this.buffer = buffer;
+        }
+    }
+
+    //Первый сегмент - читаемый, последний - в который дописывается
+    private final List<Segment> segments = new ArrayList<>();
+    //Смещение следующей непрочитанной записи в первом сегменте
+    private int readPosition;
+
+    private FileChannel checkpointChannel;
+    private MappedByteBuffer checkpointBuffer;
+    private int checkpointSlot;
+
+    //Идентификатор журнала: номера записей уникальны только внутри него, в БД применённые номера хранятся по нему
+    private String id;
+    private volatile long lastSeq;
+    private volatile long checkpoint;
+
+    private final LongAdder appended = new LongAdder();
+    private final LongAdder deletedSegments = new LongAdder();
+
+    @PostConstruct
+    void open() {
+        Path directory = Path.of(dir);
+        try {
+            Files.createDirectories(directory);
+            id = readOrCreateId(directory.resolve(ID_FILE));
+            openCheckpoint(directory.resolve(CHECKPOINT_FILE));
+            List<Path> files;
+            try (Stream<Path> list = Files.list(directory)) {
+                files = list.filter(file->{
+                            String name = file.getFileName().toString();
+                            return name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX);
+                        })
+                        .sorted()
+                        .toList();
+            }
+            long last = checkpoint;
+            for (int i = 0; i < files.size(); i++) {
+                Segment segment = openSegment(files.get(i), 0);
+                scan(segment);
+                last = Math.max(last, segment.lastSeq);
+                //Полностью применённые сегменты не нужны, кроме последнего непустого - в него продолжится запись
+                if (segment.buffer.capacity() == 0 || segment.lastSeq <= checkpoint && i != files.size() - 1) {
+                    delete(segment);
+                } else {
+                    segments.add(segment);
+                }
+            }
+            lastSeq = last;
+            if (segments.isEmpty()) {
+                segments.add(newSegment());
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to open write journal in " + directory.toAbsolutePath(), e);
+        }
+        if (lastSeq > checkpoint) {
+            logger.infof("Журнал записей открыт: %d записей ждут применения", lastSeq - checkpoint);
+        }
+    }
+
+    @PreDestroy
+    synchronized void close() {
+        for (Segment segment : segments) {
+            closeQuietly(segment.channel);
+        }
+        segments.clear();
+        closeQuietly(checkpointChannel);
+    }
+
+    public String id() {
+        return id;
+    }
+
+    //Есть записи, которые ещё не применены к БД
+    public boolean hasPending() {
+        return lastSeq > checkpoint;
+    }
+
+    //Сохранить вопрос пользователя для применения позже. Запись на диск идёт в пуле рабочих потоков.
+    //Журнал заполнен - ConnectException, как и без журнала (503)
+    public Uni<Long> addQuestion(Long userId, String question) {
+        return offload(()->appendQuestion(userId, question, LocalDateTime.now()));
+    }
+
+    //Сохранить регистрацию пользователя для применения позже
+    public Uni<Long> addUser(Long userId, String name) {
+        return offload(()->appendUser(userId, name));
+    }
+
+    private Uni<Long> offload(Supplier<Long> append) {
+        return Uni.createFrom().item(append)
+                .runSubscriptionOn(Infrastructure.getDefaultWorkerPool())
+                .onFailure(IllegalStateException.class).transform(failure->new ConnectException("Unable to connect to database"));
+    }
+
+    long appendQuestion(Long userId, String question, LocalDateTime date) {
+        return append(JournalEntry.Kind.QUESTION, out->{
+            out.writeLong(userId);
+            out.writeLong(date.toEpochSecond(ZoneOffset.UTC));
+            out.writeInt(date.getNano());
+            out.writeUTF(question);
+        });
+    }
+
+    long appendUser(Long userId, String name) {
+        return append(JournalEntry.Kind.USER, out->{
+            out.writeLong(userId);
+            out.writeBoolean(name != null);
+            if (name != null) {
+                out.writeUTF(name);
+            }
+        });
+    }
+
+    private interface PayloadWriter {
+        void write(DataOutputStream out) throws IOException;
+    }
+
+    //Дописать запись и сбросить её на диск, возвращает её номер
+    private synchronized long append(JournalEntry.Kind kind, PayloadWriter payload) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeLong(lastSeq + 1);
+            out.writeByte(kind.ordinal());
+            payload.write(out);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        byte[] body = bytes.toByteArray();
+        int size = HEADER_SIZE + body.length + TERMINATOR_SIZE;
+
+        Segment active = segments.get(segments.size() - 1);
+        if (active.writePosition + size > active.buffer.capacity()) {
+            if (segments.size() >= maxSegments) {
+                throw new IllegalStateException("Write journal is full");
+            }
+            try {
+                active = newSegment();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            segments.add(active);
+            if (size > active.buffer.capacity()) {
+                throw new IllegalArgumentException("Journal record is too large");
+            }
+        }
+
+        CRC32 crc = new CRC32();
+        crc.update(body);
+        int position = active.writePosition;
+        MappedByteBuffer buffer = active.buffer;
+        //Сначала тело и новый конец, длина - последней: пока её нет, запись не видна при чтении
+        buffer.putInt(position + HEADER_SIZE + body.length, 0);
+        buffer.put(position + HEADER_SIZE, body);
+        buffer.putInt(position + 4, (int) crc.getValue());
+        buffer.putInt(position, body.length);
+        buffer.force(position, size);
+
+        long seq = lastSeq + 1;
+        active.writePosition = position + HEADER_SIZE + body.length;
+        active.lastSeq = seq;
+        lastSeq = seq;
+        appended.increment();
+        return seq;
+    }
+
+    //Первая неприменённая запись или null. Чтение не сдвигает контрольную точку: запись вернётся снова, пока не вызван commit
+    public synchronized JournalEntry peek() {
+        while (!segments.isEmpty()) {
+            Segment segment = segments.get(0);
+            if (readPosition < segment.writePosition) {
+                int length = segment.buffer.getInt(readPosition);
+                JournalEntry entry = decode(segment.buffer, readPosition + HEADER_SIZE, length);
+                if (entry.seq() > checkpoint) {
+                    return entry;
+                }
+                readPosition += HEADER_SIZE + length;
+                continue;
+            }
+            if (segments.size() == 1) {
+                return null;
+            }
+            //Сегмент прочитан и применён целиком
+            segments.remove(0);
+            readPosition = 0;
+            delete(segment);
+        }
+        return null;
+    }
+
+    //Запись с этим номером (и все до неё) применена к БД
+    public synchronized void commit(long seq) {
+        if (seq <= checkpoint) {
+            return;
+        }
+        checkpointSlot = 1 - checkpointSlot;
+        int offset = checkpointSlot * CHECKPOINT_SLOT_SIZE;
+        checkpointBuffer.putLong(offset, seq);
+        checkpointBuffer.putLong(offset + 8, checksum(seq));
+        checkpointBuffer.force(offset, CHECKPOINT_SLOT_SIZE);
+        checkpoint = seq;
+    }
+
+    //Новый каталог журнала - новый идентификатор, номера записей в нём начинаются заново
+    private static String readOrCreateId(Path file) throws IOException {
+        if (Files.exists(file)) {
+            String saved = Files.readString(file).trim();
+            if (!saved.isEmpty()) {
+                return saved;
+            }
+        }
+        String created = UUID.randomUUID().toString();
+        Path temp = file.resolveSibling(ID_FILE + ".tmp");
+        Files.writeString(temp, created);
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return created;
+    }
+
+    private void openCheckpoint(Path file) throws IOException {
+        checkpointChannel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        checkpointBuffer = checkpointChannel.map(FileChannel.MapMode.READ_WRITE, 0, 2 * CHECKPOINT_SLOT_SIZE);
+        long saved = 0;
+        for (int slot = 0; slot < 2; slot++) {
+            long seq = checkpointBuffer.getLong(slot * CHECKPOINT_SLOT_SIZE);
+            if (seq > 0 && checkpointBuffer.getLong(slot * CHECKPOINT_SLOT_SIZE + 8) == checksum(seq) && seq > saved) {
+                saved = seq;
+                checkpointSlot = slot;
+            }
+        }
+        checkpoint = saved;
+    }
+
+    //Пройти записи сегмента, найти конец и номер последней записи. Порченая запись считается концом
+    private void scan(Segment segment) {
+        MappedByteBuffer buffer = segment.buffer;
+        int position = 0;
+        while (position + HEADER_SIZE + TERMINATOR_SIZE <= buffer.capacity()) {
+            int length = buffer.getInt(position);
+            if (length == 0) {
+                break;
+            }
+            if (length < BODY_PREFIX_SIZE || position + HEADER_SIZE + length + TERMINATOR_SIZE > buffer.capacity()
+                    || !crcMatches(buffer, position, length)) {
+                logger.warnf("Журнал %s: повреждённая запись на смещении %d, дальше сегмент не читается", segment.file, position);
+                break;
+            }
+            segment.lastSeq = buffer.getLong(position + HEADER_SIZE);
+            position += HEADER_SIZE + length;
+        }
+        segment.writePosition = position;
+        //Следующая запись пойдёт поверх порченой, за ней должен быть конец
+        if (position + TERMINATOR_SIZE <= buffer.capacity()) {
+            buffer.putInt(position, 0);
+        }
+    }
+
+    private static boolean crcMatches(MappedByteBuffer buffer, int position, int length) {
+        CRC32 crc = new CRC32();
+        crc.update(buffer.slice(position + HEADER_SIZE, length));
+        return (int) crc.getValue() == buffer.getInt(position + 4);
+    }
+
+    //Тело читается тем же DataInputStream, которым писалось: строки в формате writeUTF (modified UTF-8,
+    //символы вне BMP - суррогатными парами), обычный UTF-8 декодер превратил бы их в U+FFFD
+    private static JournalEntry decode(MappedByteBuffer buffer, int offset, int length) {
+        byte[] body = new byte[length];
+        buffer.get(offset, body);
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(body))) {
+            long seq = in.readLong();
+            JournalEntry.Kind kind = JournalEntry.Kind.values()[in.readByte()];
+            long userId = in.readLong();
+            if (kind == JournalEntry.Kind.QUESTION) {
+                LocalDateTime date = LocalDateTime.ofEpochSecond(in.readLong(), in.readInt(), ZoneOffset.UTC);
+                return new JournalEntry(seq, kind, userId, in.readUTF(), date);
+            }
+            return new JournalEntry(seq, kind, userId, in.readBoolean() ? in.readUTF() : null, null);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static long checksum(long seq) {
+        CRC32 crc = new CRC32();
+        crc.update(ByteBuffer.allocate(8).putLong(0, seq));
+        return crc.getValue();
+    }
+
+    private Segment newSegment() throws IOException {
+        Path file = Path.of(dir).resolve(String.format("%s%020d%s", SEGMENT_PREFIX, lastSeq + 1, SEGMENT_SUFFIX));
+        return openSegment(file, segmentSize);
+    }
+
+    private Segment openSegment(Path file, int size) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        long mapped = Math.max(channel.size(), size);
+        return new Segment(file, channel, channel.map(FileChannel.MapMode.READ_WRITE, 0, mapped));
+    }
+
+    //Удалить применённый сегмент. Если система не даёт удалить отображённый файл, он удалится при следующем запуске
+    private void delete(Segment segment) {
+        closeQuietly(segment.channel);
+        try {
+            Files.deleteIfExists(segment.file);
+            deletedSegments.increment();
+        } catch (IOException e) {
+            logger.warnf(e, "Не удалось удалить сегмент журнала %s", segment.file);
+        }
+    }
+
+    private void closeQuietly(FileChannel channel) {
+        try {
+            if (channel != null) {
+                channel.close();
+            }
+        } catch (IOException e) {
+            logger.warn("Не удалось закрыть файл журнала", e);
+        }
+    }
+
+    public synchronized Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("segments", segments.size());
+        stats.put("pending", lastSeq - checkpoint);
+        stats.put("lastSeq", lastSeq);
+        stats.put("checkpoint", checkpoint);
+        stats.put("appended", appended.sum());
+        stats.put("deletedSegments", deletedSegments.sum());
+        return stats;
+    }
+}
@@ -0,0 +1,141 @@
+package ru.repositories;
+
+import io.smallrye.mutiny.Uni;
+import io.smallrye.mutiny.subscription.UniEmitter;
+import io.vertx.core.Context;
+import io.vertx.core.Vertx;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+//Собирает одиночные запросы, пришедшие в течение окна, и выполняет их одним пакетным запросом
+public class BatchLoader<K, V> {
+
+    private static final int HISTOGRAM_BUCKETS = 10;
+
+    private record Pending<K, V>(K key, UniEmitter<? super V> emitter, long enqueuedAt) {}
+
+    private final Function<List<K>, Uni<Map<K, V>>> batchFunction;
+    private final Function<K, Throwable> missingFailure;
+    private final long windowMillis;
+    private final int maxBatchSize;
+
+    private final Object lock = new Object();
+    private List<Pending<K, V>> pending = new ArrayList<>();
+
+    private final LongAdder batches = new LongAdder();
+    private final LongAdder keys = new LongAdder();
+    private final LongAdder queueDelayNanos = new LongAdder();
+    private final AtomicLong maxQueueDelayNanos = new AtomicLong();
+    //Корзины 1, 2-3, 4-7, ..., 512+
+    private final LongAdder[] batchSizeHistogram = new LongAdder[HISTOGRAM_BUCKETS];
+
+    public BatchLoader(Function<List<K>, Uni<Map<K, V>>> batchFunction,
+                       Function<K, Throwable> missingFailure,
+                       long windowMillis,
+                       int maxBatchSize) {
+        this.batchFunction = batchFunction;
+        this.missingFailure = missingFailure;
+        this.windowMillis = windowMillis;
+        this.maxBatchSize = maxBatchSize;
+        for (int i = 0; i < HISTOGRAM_BUCKETS; i++) {
+            batchSizeHistogram[i] = new LongAdder();
+        }
+    }
+
+    public Uni<V> load(K key) {
+        return Uni.createFrom().emitter(emitter->{
+            Context context = Vertx.currentContext();
+            if (context == null || windowMillis <= 0) {
+                dispatch(List.of(new Pending<>(key, emitter, System.nanoTime())));
+                return;
+            }
+            List<Pending<K, V>> full = null;
+            boolean opensWindow;
+            synchronized (lock) {
+                pending.add(new Pending<>(key, emitter, System.nanoTime()));
+                opensWindow = pending.size() == 1;
+                if (pending.size() >= maxBatchSize) {
+                    full = pending;
+                    pending = new ArrayList<>();
+                }
+            }
+            if (full != null) {
+                dispatch(full);
+            } else if (opensWindow) {
+                //Пакет выполняется в контексте запроса, открывшего окно
+                context.owner().setTimer(windowMillis, timerId->context.runOnContext(v->flush()));
+            }
+        });
+    }
+
+    public Map<String, Object> stats() {
+        long batchCount = batches.sum();
+        long keyCount = keys.sum();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("windowMillis", windowMillis);
+        stats.put("maxBatchSize", maxBatchSize);
+        stats.put("batches", batchCount);
+        stats.put("keys", keyCount);
+        stats.put("avgBatchSize", batchCount == 0 ? 0 : (double) keyCount / batchCount);
+        stats.put("avgQueueDelayMicros", keyCount == 0 ? 0 : queueDelayNanos.sum() / keyCount / 1000);
+        stats.put("maxQueueDelayMicros", maxQueueDelayNanos.get() / 1000);
+        Map<String, Long> histogram = new LinkedHashMap<>();
+        for (int i = 0; i < HISTOGRAM_BUCKETS; i++) {
+            int from = 1 << i;
+            String bucket;
+            if (i == 0) {
+                bucket = "1";
+            } else if (i == HISTOGRAM_BUCKETS - 1) {
+                bucket = from + "+";
+            } else {
+                bucket = from + "-" + (2 * from - 1);
+            }
+            histogram.put(bucket, batchSizeHistogram[i].sum());
+        }
+        stats.put("batchSizeHistogram", histogram);
+        return stats;
+    }
+
+    private void flush() {
+        List<Pending<K, V>> batch;
+        synchronized (lock) {
+            if (pending.isEmpty()) {
+                return;
+            }
+            batch = pending;
+            pending = new ArrayList<>();
+        }
+        dispatch(batch);
+    }
+
+    private void dispatch(List<Pending<K, V>> batch) {
+        long now = System.nanoTime();
+        for (Pending<K, V> item : batch) {
+            long delay = now - item.enqueuedAt();
+            queueDelayNanos.add(delay);
+            maxQueueDelayNanos.accumulateAndGet(delay, Math::max);
+        }
+        batches.increment();
+        keys.add(batch.size());
+        batchSizeHistogram[Math.min(31 - Integer.numberOfLeadingZeros(batch.size()), HISTOGRAM_BUCKETS - 1)].increment();
+
+        List<K> batchKeys = batch.stream().map(Pending::key).distinct().toList();
+        batchFunction.apply(batchKeys).subscribe().with(
+                values->batch.forEach(item->{
+                    V value = values.get(item.key());
+                    if (value != null) {
+                        item.emitter().complete(value);
+                    } else {
+                        item.emitter().fail(missingFailure.apply(item.key()));
+                    }
+                }),
+                failure->batch.forEach(item->item.emitter().fail(failure))
+        );
+    }
+}
@@ -0,0 +1,153 @@
+package ru.repositories;
+
+import io.quarkus.hibernate.reactive.panache.Panache;
+import io.smallrye.mutiny.Uni;
+import io.vertx.mutiny.sqlclient.Pool;
+import io.vertx.mutiny.sqlclient.Row;
+import io.vertx.mutiny.sqlclient.SqlConnection;
+import io.vertx.mutiny.sqlclient.Tuple;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import ru.Constants;
+import ru.dto.CatalogChangeDTO;
+import ru.dto.CatalogChangesDTO;
+import ru.dto.CatalogSnapshotDTO;
+import ru.dto.FAQExportDTO;
+import ru.entities.CatalogChange;
+import ru.entities.Theme;
+import ru.events.ChangeAction;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.StringJoiner;
+
+//Журнал изменений тем и FAQ (таблица Catalog_Changes) и чтение каталога для реплик.
+//Записи журнала пишутся в той же транзакции, что и само изменение
+@ApplicationScoped
+public class CatalogRepository {
+
+    public static final String FAQ_ENTITY = "faq";
+    public static final String THEME_ENTITY = "theme";
+
+    //Блокировка до конца транзакции выстраивает пишущих в журнал в очередь: версии из IDENTITY коммитятся по возрастанию,
+    //и реплика, получившая версию N, не пропустит запись с меньшей версией, закоммиченную позже
+    private static final String LOCK_SQL = "EXEC sp_getapplock @Resource = 'Catalog_Changes', @LockMode = 'Exclusive', @LockOwner = 'Transaction'";
+
+    @Inject
+    Pool client;
+
+    //Записать изменение в текущей транзакции Panache, возвращает версию
+    public Uni<Long> record(String entityType, long entityId, ChangeAction action) {
+        return Panache.getSession()
+                .chain(session->session.createNativeQuery(LOCK_SQL).executeUpdate())
+                .chain(()->new CatalogChange(entityType, entityId, action).<CatalogChange>persistAndFlush())
+                .map(CatalogChange::getVersion);
+    }
+
+    //Записать удаление всех FAQ темы в текущей транзакции Panache (перед удалением самой темы)
+    public Uni<Integer> recordFAQsOfThemeDeleted(Integer themeId) {
+        return Panache.getSession()
+                .chain(session->session.createNativeQuery(LOCK_SQL).executeUpdate()
+                        .chain(()->session.createNativeQuery("INSERT INTO Catalog_Changes (Entity_Type, Entity_ID, Action, Changed_At) " +
+                                        "SELECT ?1, ID, ?2, SYSDATETIME() FROM FAQ WHERE Theme_ID = ?3")
+                                .setParameter(1, FAQ_ENTITY)
+                                .setParameter(2, ChangeAction.DELETED.name())
+                                .setParameter(3, themeId)
+                                .executeUpdate()));
+    }
+
+    //Записать изменения записей одного типа внутри транзакции pool (client.withTransaction), возвращает версии по Id записей
+    Uni<Map<Long, Long>> record(SqlConnection connection, String entityType, List<Long> entityIds, ChangeAction action) {
+        Tuple params = Tuple.of(entityType, action.name());
+        StringJoiner values = new StringJoiner(",");
+        for (Long entityId : entityIds) {
+            params.addLong(entityId);
+            values.add("(@p1, @p" + params.size() + ", @p2, SYSDATETIME())");
+        }
+        return connection.query(LOCK_SQL).execute()
+                .chain(()->connection.preparedQuery("INSERT INTO Catalog_Changes (Entity_Type, Entity_ID, Action, Changed_At) " +
+                                "OUTPUT INSERTED.Entity_ID AS Entity_ID, INSERTED.Version AS Version VALUES " + values)
+                        .execute(params))
+                .map(rows->{
+                    Map<Long, Long> versions = new HashMap<>();
+                    rows.forEach(row->versions.put(row.getLong("Entity_ID"), row.getLong("Version")));
+                    return versions;
+                });
+    }
+
+    //Последняя закоммиченная версия журнала, 0 если журнал пуст
+    public Uni<Long> currentVersion() {
+        return client.query("SELECT ISNULL(MAX(Version), 0) AS Version FROM Catalog_Changes").execute()
+                .map(rows->rows.iterator().next().getLong("Version"));
+    }
+
+    //Полный снимок. Версия читается до данных: изменения, успевшие попасть в снимок после неё,
+    //придут ещё раз в changes и применятся повторно без вреда
+    public Uni<CatalogSnapshotDTO> snapshot() {
+        return currentVersion().chain(version->client.query("SELECT ID, Name FROM Themes ORDER BY ID").execute()
+                .chain(themeRows->{
+                    List<Theme> themes = new ArrayList<>(themeRows.size());
+                    themeRows.forEach(row->themes.add(theme(row.getInteger("ID"), row.getString("Name"))));
+                    return client.query("SELECT f.ID, f.Question, f.Answer, f.Theme_ID, t.Name AS Theme_Name " +
+                                    "FROM FAQ f LEFT JOIN Themes t ON t.ID = f.Theme_ID ORDER BY f.ID").execute()
+                            .map(faqRows->{
+                                List<FAQExportDTO> faqs = new ArrayList<>(faqRows.size());
+                                faqRows.forEach(row->faqs.add(faq(row)));
+                                return new CatalogSnapshotDTO(version, themes, faqs);
+                            });
+                }));
+    }
+
+    //До limit изменений после версии since с текущим состоянием изменённых записей
+    public Uni<CatalogChangesDTO> changesSince(long since, int limit) {
+        if (since < 0) {
+            return Uni.createFrom().failure(()->new IllegalArgumentException("Version cannot be negative"));
+        }
+        if (limit <= 0 || limit > Constants.CATALOG_CHANGES_MAX_LIMIT) {
+            return Uni.createFrom().failure(()->new IllegalArgumentException("Limit must be between 1 and " + Constants.CATALOG_CHANGES_MAX_LIMIT));
+        }
+        //Читаем на одну запись больше, чтобы узнать, есть ли продолжение
+        return client.preparedQuery("SELECT TOP (@p1) c.Version, c.Entity_Type, c.Entity_ID, c.Action, " +
+                        "f.ID AS FAQ_ID, f.Question, f.Answer, f.Theme_ID, ft.Name AS FAQ_Theme_Name, t.ID AS Theme_ID_Current, t.Name AS Theme_Name " +
+                        "FROM Catalog_Changes c " +
+                        "LEFT JOIN FAQ f ON c.Entity_Type = @p3 AND c.Action <> @p5 AND f.ID = c.Entity_ID " +
+                        "LEFT JOIN Themes ft ON ft.ID = f.Theme_ID " +
+                        "LEFT JOIN Themes t ON c.Entity_Type = @p4 AND c.Action <> @p5 AND t.ID = c.Entity_ID " +
+                        "WHERE c.Version > @p2 ORDER BY c.Version")
+                .execute(Tuple.of(limit + 1, since, FAQ_ENTITY, THEME_ENTITY, ChangeAction.DELETED.name()))
+                .map(rows->{
+                    List<CatalogChangeDTO> changes = new ArrayList<>(rows.size());
+                    rows.forEach(row->{
+                        FAQExportDTO faq = row.getLong("FAQ_ID") != null
+                                ? new FAQExportDTO(row.getLong("FAQ_ID"), row.getString("Question"), row.getString("Answer"),
+                                        row.getInteger("Theme_ID"), row.getString("FAQ_Theme_Name"))
+                                : null;
+                        Theme theme = row.getInteger("Theme_ID_Current") != null
+                                ? theme(row.getInteger("Theme_ID_Current"), row.getString("Theme_Name"))
+                                : null;
+                        changes.add(new CatalogChangeDTO(row.getLong("Version"), row.getString("Entity_Type"),
+                                row.getLong("Entity_ID"), row.getString("Action"), faq, theme));
+                    });
+                    boolean hasMore = changes.size() > limit;
+                    if (hasMore) {
+                        changes.remove(changes.size() - 1);
+                    }
+                    long version = changes.isEmpty() ? since : changes.get(changes.size() - 1).version;
+                    return new CatalogChangesDTO(version, hasMore, changes);
+                });
+    }
+
+    private static Theme theme(Integer id, String name) {
+        Theme theme = new Theme();
+        theme.setId(id);
+        theme.setName(name);
+        return theme;
+    }
+
+    private static FAQExportDTO faq(Row row) {
+        return new FAQExportDTO(row.getLong("ID"), row.getString("Question"), row.getString("Answer"),
+                row.getInteger("Theme_ID"), row.getString("Theme_Name"));
+    }
+}
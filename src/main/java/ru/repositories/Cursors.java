@@ -0,0 +1,44 @@
+package ru.repositories;
+
+import ru.dto.Page;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.List;
+import java.util.function.ToLongFunction;
+
+//Курсоры постраничного вывода: последний отданный ID в base64, для клиента - непрозрачная строка.
+//Следующая страница читается как WHERE ID > курсор ORDER BY ID, поэтому дальние страницы не дороже первой
+final class Cursors {
+
+    private Cursors() {}
+
+    static String encode(long lastId) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(Long.toString(lastId).getBytes(StandardCharsets.US_ASCII));
+    }
+
+    //ID, после которого начинается страница; без курсора - с начала
+    static long decode(String cursor) throws IllegalArgumentException {
+        if (cursor == null || cursor.isEmpty()) {
+            return 0;
+        }
+        try {
+            long lastId = Long.parseLong(new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.US_ASCII));
+            if (lastId < 0) {
+                throw new IllegalArgumentException("Invalid cursor");
+            }
+            return lastId;
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid cursor");
+        }
+    }
+
+    //Запрос читает limit + 1 строк: лишняя строка значит, что есть следующая страница
+    static <T> Page<T> page(List<T> rows, int limit, ToLongFunction<T> id) {
+        if (rows.size() <= limit) {
+            return new Page<>(rows, null);
+        }
+        List<T> items = rows.subList(0, limit);
+        return new Page<>(items, encode(id.applyAsLong(items.get(limit - 1))));
+    }
+}
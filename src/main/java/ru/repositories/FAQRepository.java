@@ -1,54 +1,131 @@
 package ru.repositories;
 
 import io.quarkus.hibernate.reactive.panache.Panache;
-import io.quarkus.panache.common.Sort;
+import io.smallrye.mutiny.Multi;
 import io.smallrye.mutiny.Uni;
+import io.vertx.mutiny.sqlclient.Pool;
+import io.vertx.mutiny.sqlclient.Row;
+import io.vertx.mutiny.sqlclient.Tuple;
 import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Event;
+import jakarta.inject.Inject;
 import jakarta.ws.rs.NotFoundException;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.jboss.logging.Logger;
+import ru.Constants;
+import ru.cache.FAQCache;
+import ru.dto.BulkItemResultDTO;
+import ru.dto.FAQDTO;
+import ru.dto.FAQExportDTO;
+import ru.dto.FAQView;
+import ru.dto.Page;
 import ru.entities.FAQ;
 import ru.entities.Theme;
+import ru.events.ChangeAction;
+import ru.events.FAQChangedEvent;
 
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.StringJoiner;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 
 @ApplicationScoped
 public class FAQRepository {
 
     private static final Log log = LogFactory.getLog(FAQRepository.class);
     private final Logger logger = Logger.getLogger(FAQRepository.class);
+
+    @Inject
+    Pool client;
+
+    @Inject
+    FAQCache faqCache;
+
+    @Inject
+    Event<FAQChangedEvent> faqChanged;
+
+    @Inject
+    CatalogRepository catalog;
+
     //Добавить вопрос/ответ
     public Uni<FAQ> addNewFAQ(String question, String answer, Integer themeId) {
         if (question.isBlank() || answer.isBlank() || Objects.toString(themeId,"").isBlank()) {
             return Uni.createFrom().failure(()->new IllegalArgumentException("Invalid input data."));
         }
 
-        return Panache.withTransaction(()-> Theme.<Theme>findById(themeId).onItem()
-                .ifNull().failWith(()->new NotFoundException("Theme with Id = " + themeId + " not found"))
-                .chain(theme -> {
+        //Тема проверяется и вставка выполняется одним MERGE: нет строки в OUTPUT - нет темы.
+        //MERGE, а не INSERT ... SELECT, потому что только он возвращает в OUTPUT название темы из источника
+        AtomicLong version = new AtomicLong();
+        return client.withTransaction(connection->connection.preparedQuery("MERGE FAQ AS target " +
+                        "USING (SELECT @p1 AS Question, @p2 AS Answer, t.ID AS Theme_ID, t.Name AS Theme_Name FROM Themes t WHERE t.ID = @p3) AS source " +
+                        "ON 1 = 0 " +
+                        "WHEN NOT MATCHED THEN INSERT (Question, Answer, Theme_ID) VALUES (source.Question, source.Answer, source.Theme_ID) " +
+                        "OUTPUT INSERTED.ID AS ID, source.Theme_Name AS Theme_Name;")
+                .execute(Tuple.of(question, answer, themeId))
+                .chain(rows->{
+                    if (rows.size() == 0) {
+                        return Uni.createFrom().failure(()->new NotFoundException("Theme with Id = " + themeId + " not found"));
+                    }
+                    Row row = rows.iterator().next();
+                    Theme theme = new Theme();
+                    theme.setId(themeId);
+                    theme.setName(row.getString("Theme_Name"));
                     FAQ faq = new FAQ();
+                    faq.setId(row.getLong("ID"));
                     faq.setQuestion(question);
                     faq.setAnswer(answer);
                     faq.setTheme(theme);
-                    return faq.persistAndFlush();
+                    return catalog.record(connection, CatalogRepository.FAQ_ENTITY, List.of(faq.getId()), ChangeAction.CREATED)
+                            .map(versions->{
+                                version.set(versions.get(faq.getId()));
+                                return faq;
+                            });
                 })
-        );
+        ).onItem().invoke(faq->faqChanged.fire(
+                new FAQChangedEvent(ChangeAction.CREATED, faq.getId(), themeId, null, faq, version.get())));
+    }
+
+    //Пакетное добавление: вставка кусками по chunkSize, одновременно не более BULK_CONCURRENCY кусков
+    public Uni<List<BulkItemResultDTO>> addFAQs(Multi<FAQDTO> faqs, int chunkSize) {
+        if (chunkSize <= 0 || chunkSize > Constants.MAX_FAQ_BULK_CHUNK_SIZE) {
+            return Uni.createFrom().failure(()->new IllegalArgumentException("Batch size must be between 1 and " + Constants.MAX_FAQ_BULK_CHUNK_SIZE));
+        }
+        AtomicLong counter = new AtomicLong();
+        return faqs.map(faq->new IndexedFAQ(counter.getAndIncrement(), faq))
+                .group().intoLists().of(chunkSize)
+                .onItem().transformToUni(this::insertFAQs).merge(Constants.BULK_CONCURRENCY)
+                .collect().in(ArrayList<BulkItemResultDTO>::new, List::addAll)
+                .map(results->{
+                    results.sort(Comparator.comparingLong(result->result.index));
+                    return results;
+                });
     }
 
     public Uni<FAQ> updateFAQ(Long id, String question, String answer, Integer themeId) {
+        AtomicReference<Integer> previousThemeId = new AtomicReference<>();
+        AtomicLong version = new AtomicLong();
         return Panache.<FAQ>withTransaction(()-> FAQ.<FAQ>findById(id).onItem()
                 .ifNull().failWith(()->new NotFoundException("FAQ with Id = " + id + " not found"))
                 .chain(faq->Theme.<Theme>findById(themeId).chain(theme -> {
                     if(theme==null) {
                         return Uni.createFrom().failure(()->new NotFoundException("Theme with Id =  " + themeId + " not found"));
                     }
+                    previousThemeId.set(faq.getTheme()!=null?faq.getTheme().getId():null);
                     faq.setQuestion(question);
                     faq.setAnswer(answer);
                     faq.setTheme(theme);
-                    return faq.persistAndFlush();
-                })))
+                    return faq.<FAQ>persistAndFlush();
+                }))
+                .call(faq->catalog.record(CatalogRepository.FAQ_ENTITY, id, ChangeAction.UPDATED).invoke(version::set)))
+                .onItem().invoke(faq->faqChanged.fire(
+                        new FAQChangedEvent(ChangeAction.UPDATED, id, themeId, previousThemeId.get(), faq, version.get())))
                 .onFailure().recoverWithUni(failure->{
                    logger.warn("updateFAQ ошибка транзакции", failure);
                    return Uni.createFrom().failure(failure);
@@ -61,25 +138,212 @@ public class FAQRepository {
         if (id == null || id <= 0) {
             return Uni.createFrom().failure(()->new IllegalArgumentException("Id cannot be null or empty"));
         }
-        return Panache.withTransaction(()->FAQ.deleteById(id).onItem()
-                .transformToUni(wasDeleted->{
-                    if(!wasDeleted){
+        //OUTPUT возвращает тему удалённой записи, чтобы сбросить кэш только этой темы
+        AtomicReference<Integer> themeId = new AtomicReference<>();
+        return client.withTransaction(connection->connection.preparedQuery("DELETE FROM FAQ OUTPUT DELETED.Theme_ID WHERE ID = @p1")
+                .execute(Tuple.of(id))
+                .chain(rows->{
+                    if(rows.size()==0){
                         return Uni.createFrom().failure(()->new NotFoundException("FAQ with Id = " + id + " not found"));
                     }
-                    return Uni.createFrom().voidItem();
-                })
-        );
+                    Row row = rows.iterator().next();
+                    themeId.set(row.getInteger("Theme_ID"));
+                    return catalog.record(connection, CatalogRepository.FAQ_ENTITY, List.of(id), ChangeAction.DELETED);
+                }))
+                .invoke(versions->faqChanged.fire(new FAQChangedEvent(ChangeAction.DELETED, id, themeId.get(), null, null, versions.get(id))))
+                .replaceWithVoid();
     }
 
     //Получить все FAQ по теме
-    public Uni<List<FAQ>> findByThemeId(Integer themeId) {
+    public Uni<List<FAQView>> findByThemeId(Integer themeId) {
         if (themeId == null || themeId<=0) {
             return Uni.createFrom().failure(()->new IllegalArgumentException("Theme Id cannot be null or negative"));
         }
-        return Panache.withTransaction(()->Theme.<Theme>findById(themeId).onItem()
-                .ifNull().failWith(()->new NotFoundException("Theme with Id = " + themeId + " not found"))
-                .chain(theme-> FAQ.<FAQ>find("theme.id=?1",Sort.by("id"),themeId).list())
-        );
+        //Один запрос от темы: нет строк - нет темы, одна строка без FAQ - тема пустая
+        return faqCache.get(themeId, ()->client.preparedQuery("SELECT t.Name AS Theme_Name, f.ID, f.Question, f.Answer " +
+                        "FROM Themes t LEFT JOIN FAQ f ON f.Theme_ID = t.ID WHERE t.ID = @p1 ORDER BY f.ID")
+                .execute(Tuple.of(themeId))
+                .chain(rows->{
+                    if (rows.size() == 0) {
+                        return Uni.createFrom().failure(()->new NotFoundException("Theme with Id = " + themeId + " not found"));
+                    }
+                    List<FAQView> faqs = new ArrayList<>(rows.size());
+                    rows.forEach(row->{
+                        if (row.getLong("ID") != null) {
+                            faqs.add(new FAQView(row.getLong("ID"), row.getString("Question"),
+                                    row.getString("Answer"), row.getString("Theme_Name")));
+                        }
+                    });
+                    return Uni.createFrom().item(faqs);
+                }));
+    }
+
+    //Страница FAQ темы по возрастанию ID: до limit записей после курсора. Кэш не используется
+    public Uni<Page<FAQView>> findPageByThemeId(Integer themeId, String cursor, int limit) {
+        if (themeId == null || themeId<=0) {
+            return Uni.createFrom().failure(()->new IllegalArgumentException("Theme Id cannot be null or negative"));
+        }
+        if (limit <= 0 || limit > Constants.PAGE_MAX_LIMIT) {
+            return Uni.createFrom().failure(()->new IllegalArgumentException("Limit must be between 1 and " + Constants.PAGE_MAX_LIMIT));
+        }
+        //OUTER APPLY оставляет строку темы, даже если FAQ после курсора нет: нет строк - нет темы
+        return Uni.createFrom().item(()->Cursors.decode(cursor))
+                .chain(afterId->client.preparedQuery("SELECT t.Name AS Theme_Name, f.ID, f.Question, f.Answer FROM Themes t " +
+                                "OUTER APPLY (SELECT TOP (@p2) ID, Question, Answer FROM FAQ WHERE Theme_ID = t.ID AND ID > @p3 ORDER BY ID) f " +
+                                "WHERE t.ID = @p1 ORDER BY f.ID")
+                        .execute(Tuple.of(themeId, limit + 1, afterId)))
+                .chain(rows->{
+                    if (rows.size() == 0) {
+                        return Uni.createFrom().failure(()->new NotFoundException("Theme with Id = " + themeId + " not found"));
+                    }
+                    List<FAQView> faqs = new ArrayList<>(rows.size());
+                    rows.forEach(row->{
+                        if (row.getLong("ID") != null) {
+                            faqs.add(new FAQView(row.getLong("ID"), row.getString("Question"),
+                                    row.getString("Answer"), row.getString("Theme_Name")));
+                        }
+                    });
+                    return Uni.createFrom().item(Cursors.page(faqs, limit, FAQView::id));
+                });
+    }
+
+    //Получить все FAQ вместе с темами (для построения индексов)
+    public Uni<List<FAQ>> findAllWithThemes() {
+        return ReadOnlySession.read(()->FAQ.<FAQ>find("from FAQ f left join fetch f.theme order by f.id").list());
     }
 
+    //Все FAQ с темами по возрастанию ID. Страницы по EXPORT_PAGE_SIZE читаются по мере запроса подписчиком,
+    //следующая страница начинается после последнего прочитанного ID, поэтому в памяти не больше одной страницы
+    public Multi<FAQExportDTO> exportAll() {
+        return Multi.createBy().repeating()
+                .uni(AtomicLong::new, lastId->client
+                        .preparedQuery("SELECT TOP (@p1) f.ID, f.Question, f.Answer, f.Theme_ID, t.Name AS Theme_Name " +
+                                "FROM FAQ f LEFT JOIN Themes t ON t.ID = f.Theme_ID WHERE f.ID > @p2 ORDER BY f.ID")
+                        .execute(Tuple.of(Constants.EXPORT_PAGE_SIZE, lastId.get()))
+                        .map(rows->{
+                            List<FAQExportDTO> page = new ArrayList<>(rows.size());
+                            rows.forEach(row->page.add(new FAQExportDTO(row.getLong("ID"), row.getString("Question"),
+                                    row.getString("Answer"), row.getInteger("Theme_ID"), row.getString("Theme_Name"))));
+                            if (!page.isEmpty()) {
+                                lastId.set(page.get(page.size() - 1).id);
+                            }
+                            return page;
+                        }))
+                .whilst(page->page.size() == Constants.EXPORT_PAGE_SIZE)
+                .onItem().disjoint();
+    }
+
+    private record IndexedFAQ(long index, FAQDTO faq) {}
+
+    //Темы куска читаются одним запросом, строки вставляются одним MERGE.
+    //MERGE вместо INSERT, потому что только он может вернуть в OUTPUT номер исходной строки рядом с новым ID
+    private Uni<List<BulkItemResultDTO>> insertFAQs(List<IndexedFAQ> chunk) {
+        List<BulkItemResultDTO> results = new ArrayList<>();
+        List<IndexedFAQ> valid = new ArrayList<>();
+        for (IndexedFAQ item : chunk) {
+            String error = validate(item.faq());
+            if (error != null) {
+                results.add(new BulkItemResultDTO(item.index(), null, BulkItemResultDTO.INVALID, error));
+            } else {
+                valid.add(item);
+            }
+        }
+        if (valid.isEmpty()) {
+            return Uni.createFrom().item(results);
+        }
+
+        List<Integer> themeIds = new ArrayList<>(new LinkedHashSet<>(valid.stream().map(item->item.faq().themeId).toList()));
+        return client.preparedQuery("SELECT ID, Name FROM Themes WHERE ID IN (" + SqlHelper.placeholders(1, themeIds.size()) + ")")
+                .execute(Tuple.from(new ArrayList<Object>(themeIds)))
+                .chain(themeRows->{
+                    Map<Integer, Theme> themes = new HashMap<>();
+                    themeRows.forEach(row->{
+                        Theme theme = new Theme();
+                        theme.setId(row.getInteger("ID"));
+                        theme.setName(row.getString("Name"));
+                        themes.put(theme.getId(), theme);
+                    });
+                    List<IndexedFAQ> insertable = new ArrayList<>();
+                    for (IndexedFAQ item : valid) {
+                        if (themes.containsKey(item.faq().themeId)) {
+                            insertable.add(item);
+                        } else {
+                            results.add(new BulkItemResultDTO(item.index(), null, BulkItemResultDTO.INVALID,
+                                    "Theme with Id = " + item.faq().themeId + " not found"));
+                        }
+                    }
+                    if (insertable.isEmpty()) {
+                        return Uni.createFrom().item(results);
+                    }
+
+                    Tuple params = Tuple.tuple();
+                    StringJoiner values = new StringJoiner(",");
+                    for (int row = 0; row < insertable.size(); row++) {
+                        FAQDTO faq = insertable.get(row).faq();
+                        values.add("(" + SqlHelper.placeholders(params.size() + 1, 3) + "," + row + ")");
+                        params.addString(faq.question);
+                        params.addString(faq.answer);
+                        params.addInteger(faq.themeId);
+                    }
+                    String sql = "MERGE FAQ AS target " +
+                            "USING (VALUES " + values + ") AS source (Question, Answer, Theme_ID, Row_Index) ON 1 = 0 " +
+                            "WHEN NOT MATCHED THEN INSERT (Question, Answer, Theme_ID) VALUES (source.Question, source.Answer, source.Theme_ID) " +
+                            "OUTPUT source.Row_Index AS Row_Index, INSERTED.ID AS ID;";
+                    //Вставка и записи журнала в одной транзакции, события - после коммита
+                    Map<Long, IndexedFAQ> created = new HashMap<>();
+                    return client.withTransaction(connection->connection.preparedQuery(sql).execute(params)
+                                    .chain(rows->{
+                                        rows.forEach(row->created.put(row.getLong("ID"), insertable.get(row.getInteger("Row_Index"))));
+                                        return catalog.record(connection, CatalogRepository.FAQ_ENTITY,
+                                                new ArrayList<>(created.keySet()), ChangeAction.CREATED);
+                                    }))
+                            .map(versions->{
+                                created.forEach((id, item)->{
+                                    FAQ faq = new FAQ();
+                                    faq.setId(id);
+                                    faq.setQuestion(item.faq().question);
+                                    faq.setAnswer(item.faq().answer);
+                                    faq.setTheme(themes.get(item.faq().themeId));
+                                    results.add(new BulkItemResultDTO(item.index(), id, BulkItemResultDTO.CREATED, null));
+                                    faqChanged.fire(new FAQChangedEvent(ChangeAction.CREATED, id, faq.getTheme().getId(), null, faq, versions.get(id)));
+                                });
+                                return results;
+                            })
+                            .onFailure().recoverWithItem(failure->{
+                                logger.warn("addFAQs ошибка пакетной вставки", failure);
+                                insertable.forEach(item->results.add(new BulkItemResultDTO(item.index(), null,
+                                        BulkItemResultDTO.FAILED, failure.getMessage())));
+                                return results;
+                            });
+                })
+                .onFailure().recoverWithItem(failure->{
+                    logger.warn("addFAQs ошибка чтения тем", failure);
+                    valid.forEach(item->results.add(new BulkItemResultDTO(item.index(), null,
+                            BulkItemResultDTO.FAILED, failure.getMessage())));
+                    return results;
+                });
+    }
+
+    //Те же проверки, что у FAQDTO для одиночного добавления. null - запись корректна
+    private static String validate(FAQDTO faq) {
+        if (faq == null) {
+            return "Element can not be null";
+        }
+        if (faq.question == null || faq.question.isBlank()) {
+            return "Question can not be blank";
+        }
+        if (faq.question.length() > Constants.MAX_QUESTION_LENGTH) {
+            return "Question cannot exceed " + Constants.MAX_QUESTION_LENGTH + " characters";
+        }
+        if (faq.answer == null || faq.answer.isBlank()) {
+            return "Answer can not be blank";
+        }
+        if (faq.answer.length() > Constants.MAX_ANSWER_LENGTH) {
+            return "Answer cannot exceed " + Constants.MAX_ANSWER_LENGTH + " characters";
+        }
+        if (faq.themeId == null || faq.themeId <= 0) {
+            return "Theme ID must be positive";
+        }
+        return null;
+    }
 }
@@ -0,0 +1,95 @@
+package ru.repositories;
+
+import io.smallrye.mutiny.Multi;
+import io.smallrye.mutiny.Uni;
+import io.vertx.mutiny.sqlclient.Pool;
+import io.vertx.mutiny.sqlclient.SqlConnection;
+import io.vertx.mutiny.sqlclient.Tuple;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import ru.Constants;
+import ru.dto.FAQPopularityDTO;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.StringJoiner;
+
+//Счётчики показов и отметок "полезно" по FAQ (таблица FAQ_Stats)
+@ApplicationScoped
+public class FAQStatsRepository {
+
+    private static final String SCORE = "s.Views + " + Constants.FAQ_HELPFUL_WEIGHT + " * s.Helpful";
+
+    @Inject
+    Pool client;
+
+    //Прибавить накопленные счётчики: показы по темам раздаются всем FAQ темы, отметки - по id FAQ.
+    //Всё в одной транзакции, чтобы при ошибке вызывающий мог вернуть счётчики целиком без двойного учёта.
+    //Счётчики удалённых FAQ и тем отбрасываются соединением с FAQ
+    public Uni<Void> addCounts(Map<Integer, Long> themeViews, Map<Long, Long> helpful) {
+        if (themeViews.isEmpty() && helpful.isEmpty()) {
+            return Uni.createFrom().voidItem();
+        }
+        return client.withTransaction(connection->
+                merge(connection, new ArrayList<>(themeViews.entrySet()), "Theme_ID", "f.Theme_ID", "Views")
+                        .chain(()->merge(connection, new ArrayList<>(helpful.entrySet()), "FAQ_ID", "f.ID", "Helpful")));
+    }
+
+    private <K> Uni<Void> merge(SqlConnection connection, List<Map.Entry<K, Long>> counts,
+                                String keyColumn, String joinColumn, String counterColumn) {
+        return Multi.createFrom().iterable(SqlHelper.partition(counts, Constants.FAQ_STATS_FLUSH_CHUNK_SIZE))
+                .onItem().transformToUniAndConcatenate(chunk->{
+                    Tuple params = Tuple.tuple();
+                    StringJoiner values = new StringJoiner(",");
+                    for (Map.Entry<K, Long> count : chunk) {
+                        values.add("(" + SqlHelper.placeholders(params.size() + 1, 2) + ")");
+                        params.addValue(count.getKey());
+                        params.addLong(count.getValue());
+                    }
+                    String sql = "MERGE FAQ_Stats WITH (HOLDLOCK) AS target " +
+                            "USING (SELECT f.ID AS FAQ_ID, SUM(v.Amount) AS Amount FROM (VALUES " + values + ") AS v (" + keyColumn + ", Amount) " +
+                            "JOIN FAQ f ON " + joinColumn + " = v." + keyColumn + " GROUP BY f.ID) AS source " +
+                            "ON target.FAQ_ID = source.FAQ_ID " +
+                            "WHEN MATCHED THEN UPDATE SET " + counterColumn + " = target." + counterColumn + " + source.Amount " +
+                            "WHEN NOT MATCHED THEN INSERT (FAQ_ID, Views, Helpful) VALUES (source.FAQ_ID, " +
+                            ("Views".equals(counterColumn) ? "source.Amount, 0" : "0, source.Amount") + ");";
+                    return connection.preparedQuery(sql).execute(params);
+                })
+                .collect().last()
+                .replaceWithVoid();
+    }
+
+    //До limit FAQ по убыванию популярности, по всем темам или по одной
+    public Uni<List<FAQPopularityDTO>> findPopular(Integer themeId, int limit) {
+        if (themeId != null && themeId <= 0) {
+            return Uni.createFrom().failure(()->new IllegalArgumentException("Theme Id must be positive"));
+        }
+        if (limit <= 0 || limit > Constants.SEARCH_MAX_LIMIT) {
+            return Uni.createFrom().failure(()->new IllegalArgumentException("Limit must be between 1 and " + Constants.SEARCH_MAX_LIMIT));
+        }
+        return client.preparedQuery("SELECT TOP (@p1) f.ID, f.Question, f.Theme_ID, t.Name AS Theme_Name, s.Views, s.Helpful " +
+                        "FROM FAQ_Stats s JOIN FAQ f ON f.ID = s.FAQ_ID LEFT JOIN Themes t ON t.ID = f.Theme_ID " +
+                        "WHERE @p2 IS NULL OR f.Theme_ID = @p2 " +
+                        "ORDER BY " + SCORE + " DESC, f.ID")
+                .execute(Tuple.of(limit, themeId))
+                .map(rows->{
+                    List<FAQPopularityDTO> popular = new ArrayList<>(rows.size());
+                    rows.forEach(row->popular.add(new FAQPopularityDTO(row.getLong("ID"), row.getString("Question"),
+                            row.getInteger("Theme_ID"), row.getString("Theme_Name"),
+                            row.getLong("Views"), row.getLong("Helpful"))));
+                    return popular;
+                });
+    }
+
+    //Оценка популярности всех FAQ со статистикой
+    public Uni<Map<Long, Long>> scores() {
+        return client.query("SELECT s.FAQ_ID, " + SCORE + " AS Score FROM FAQ_Stats s").execute()
+                .map(rows->{
+                    Map<Long, Long> scores = new HashMap<>();
+                    rows.forEach(row->scores.put(row.getLong("FAQ_ID"), row.getLong("Score")));
+                    return scores;
+                });
+    }
+}
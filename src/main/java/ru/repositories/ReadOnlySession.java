@@ -0,0 +1,28 @@
+package ru.repositories;
+
+import io.quarkus.hibernate.reactive.panache.Panache;
+import io.smallrye.mutiny.Uni;
+import org.hibernate.FlushMode;
+
+import java.util.function.Supplier;
+
+//Чтение через Panache без транзакции: нет лишних BEGIN/COMMIT и соединение не держится открытой транзакцией.
+//Загруженные сущности только для чтения (без снимков для проверки изменений), flush не выполняется
+final class ReadOnlySession {
+
+    private ReadOnlySession() {}
+
+    static <T> Uni<T> read(Supplier<Uni<T>> work) {
+        return Panache.withSession(()->Panache.getSession().chain(session->{
+            //Сессия может оказаться уже открытой вызывающим кодом - возвращаем её прежний режим
+            boolean readOnly = session.isDefaultReadOnly();
+            FlushMode flushMode = session.getFlushMode();
+            session.setDefaultReadOnly(true);
+            session.setFlushMode(FlushMode.MANUAL);
+            return work.get().eventually(()->{
+                session.setDefaultReadOnly(readOnly);
+                session.setFlushMode(flushMode);
+            });
+        }));
+    }
+}
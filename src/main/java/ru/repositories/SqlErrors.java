@@ -0,0 +1,46 @@
+package ru.repositories;
+
+import io.vertx.sqlclient.DatabaseException;
+
+import java.util.Set;
+
+//Распознавание нарушений ограничений по номеру ошибки MSSQL, чтобы не проверять их отдельным запросом перед записью
+final class SqlErrors {
+
+    private static final int FOREIGN_KEY_VIOLATION = 547;
+    private static final int UNIQUE_INDEX_VIOLATION = 2601;
+    private static final int PRIMARY_KEY_VIOLATION = 2627;
+    //Значение не подходит столбцу: не помещается, не преобразуется, NULL в NOT NULL
+    private static final Set<Integer> DATA_ERRORS = Set.of(
+            8152, 2628,             //строка будет усечена
+            245, 241, 242, 8114,    //ошибка преобразования типа, даты, выход даты за диапазон
+            220, 8115,              //арифметическое переполнение
+            515);                   //NULL в столбец NOT NULL
+
+    private SqlErrors() {}
+
+    //Повтор значения уникального индекса или первичного ключа
+    static boolean isUniqueViolation(Throwable failure) {
+        int number = number(failure);
+        return number == UNIQUE_INDEX_VIOLATION || number == PRIMARY_KEY_VIOLATION;
+    }
+
+    //Ссылка на несуществующую запись
+    static boolean isForeignKeyViolation(Throwable failure) {
+        return number(failure) == FOREIGN_KEY_VIOLATION;
+    }
+
+    //БД отвергла сами данные: повтор той же записи даст ту же ошибку
+    static boolean isDataError(Throwable failure) {
+        return DATA_ERRORS.contains(number(failure));
+    }
+
+    private static int number(Throwable failure) {
+        for (Throwable current = failure; current != null; current = current.getCause()) {
+            if (current instanceof DatabaseException exception) {
+                return exception.getErrorCode();
+            }
+        }
+        return 0;
+    }
+}
@@ -0,0 +1,29 @@
+package ru.repositories;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.StringJoiner;
+
+//Вспомогательные методы для запросов через reactive pool (параметры MSSQL вида @p1, @p2 ...)
+final class SqlHelper {
+
+    private SqlHelper() {}
+
+    //Список параметров "@pFrom, ..., @p(From+count-1)"
+    static String placeholders(int from, int count) {
+        StringJoiner joiner = new StringJoiner(",");
+        for (int i = 0; i < count; i++) {
+            joiner.add("@p" + (from + i));
+        }
+        return joiner.toString();
+    }
+
+    //Разбить список на куски не длиннее size
+    static <T> List<List<T>> partition(List<T> list, int size) {
+        List<List<T>> chunks = new ArrayList<>();
+        for (int i = 0; i < list.size(); i += size) {
+            chunks.add(list.subList(i, Math.min(i + size, list.size())));
+        }
+        return chunks;
+    }
+}
@@ -3,37 +3,78 @@ package ru.repositories;
 import io.quarkus.hibernate.reactive.panache.Panache;
 import io.quarkus.panache.common.Sort;
 import io.smallrye.mutiny.Uni;
+import io.vertx.mutiny.sqlclient.Pool;
+import io.vertx.mutiny.sqlclient.Tuple;
 import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Event;
+import jakarta.inject.Inject;
 import jakarta.ws.rs.NotFoundException;
 import ru.exceptions.AlreadyExistException;
 import ru.Constants;
+import ru.dto.Page;
 import ru.entities.Theme;
+import ru.events.ChangeAction;
+import ru.events.ThemeChangedEvent;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
 
 @ApplicationScoped
 public class ThemeRepository {
 
+    @Inject
+    Event<ThemeChangedEvent> themeChanged;
+
+    @Inject
+    CatalogRepository catalog;
+
+    @Inject
+    Pool client;
+
     // Получить все темы по алфавиту
     public Uni<List<Theme>> getAllSorted() {
-        return Panache.withTransaction(()->
+        return ReadOnlySession.read(()->
                 Theme.listAll(Sort.by("name"))
         );
     }
 
+    //Страница тем по возрастанию ID (не по алфавиту: курсор идёт по ID)
+    public Uni<Page<Theme>> getPage(String cursor, int limit) throws IllegalArgumentException {
+        if (limit <= 0 || limit > Constants.PAGE_MAX_LIMIT) {
+            return Uni.createFrom().failure(()->new IllegalArgumentException("Limit must be between 1 and " + Constants.PAGE_MAX_LIMIT));
+        }
+        return Uni.createFrom().item(()->Cursors.decode(cursor))
+                .chain(afterId->client.preparedQuery("SELECT TOP (@p1) ID, Name FROM Themes WHERE ID > @p2 ORDER BY ID")
+                        .execute(Tuple.of(limit + 1, afterId)))
+                .map(rows->{
+                    List<Theme> themes = new ArrayList<>(rows.size());
+                    rows.forEach(row->{
+                        Theme theme = new Theme();
+                        theme.setId(row.getInteger("ID"));
+                        theme.setName(row.getString("Name"));
+                        themes.add(theme);
+                    });
+                    return Cursors.page(themes, limit, Theme::getId);
+                });
+    }
+
     //удалить тему по id
     public Uni<Void> deleteById(Integer id) throws NotFoundException, IllegalArgumentException {
         if(id==null || id<=0) {
             return Uni.createFrom().failure(new IllegalArgumentException("Id must be a positive number"));
         }
 
-        return Panache.withTransaction(()->Theme.deleteById(id)
+        //FAQ темы попадают в журнал как удалённые до удаления самой темы, пока их ещё можно выбрать
+        return Panache.withTransaction(()->catalog.recordFAQsOfThemeDeleted(id)
+                    .chain(()->Theme.deleteById(id))
                     .onItem().transformToUni(wasdeleted->{
                         if (!wasdeleted) {
                             return Uni.createFrom().failure(()->new NotFoundException("Theme not found"));
                         }
-                        return Uni.createFrom().voidItem();
+                        return catalog.record(CatalogRepository.THEME_ENTITY, id, ChangeAction.DELETED);
                     })
-        );
+        ).onItem().invoke(version->themeChanged.fire(new ThemeChangedEvent(ChangeAction.DELETED, id, null, version)))
+                .replaceWithVoid();
     }
 
     //Добавить тему
@@ -45,13 +86,26 @@ public class ThemeRepository {
             return Uni.createFrom().failure(()->new IllegalArgumentException("Name must be shorter than " + Constants.MAX_USERNAME_LENGTH + " characters"));
         }
         String trimmedName = name.trim();
-        return Panache.withTransaction(()->
-                Theme.<Theme>find("name", trimmedName).firstResult()
-                .onItem().ifNotNull().failWith(()->new AlreadyExistException("Theme with such name already exist"))
-                .chain(theme-> {
-                   Theme newTheme = new Theme();
-                   newTheme.setName(trimmedName);
-                   return newTheme.persistAndFlush();
-                }));
+        //Проверка имени и вставка одним запросом; UPDLOCK, HOLDLOCK не дают двум запросам одновременно вставить одно имя,
+        //а если на Name есть уникальный индекс, его нарушение тоже означает, что тема уже есть
+        AtomicLong version = new AtomicLong();
+        return client.withTransaction(connection->connection.preparedQuery("INSERT INTO Themes (Name) OUTPUT INSERTED.ID AS ID " +
+                        "SELECT @p1 WHERE NOT EXISTS (SELECT 1 FROM Themes WITH (UPDLOCK, HOLDLOCK) WHERE Name = @p1)")
+                .execute(Tuple.of(trimmedName))
+                .onFailure(SqlErrors::isUniqueViolation).transform(failure->new AlreadyExistException("Theme with such name already exist"))
+                .chain(rows->{
+                    if (rows.size() == 0) {
+                        return Uni.createFrom().failure(()->new AlreadyExistException("Theme with such name already exist"));
+                    }
+                    Theme theme = new Theme();
+                    theme.setId(rows.iterator().next().getInteger("ID"));
+                    theme.setName(trimmedName);
+                    return catalog.record(connection, CatalogRepository.THEME_ENTITY, List.of(theme.getId().longValue()), ChangeAction.CREATED)
+                            .map(versions->{
+                                version.set(versions.get(theme.getId().longValue()));
+                                return theme;
+                            });
+                })
+        ).onItem().invoke(theme->themeChanged.fire(new ThemeChangedEvent(ChangeAction.CREATED, theme.getId(), theme, version.get())));
     }
 }
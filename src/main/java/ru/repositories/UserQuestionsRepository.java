@@ -1,40 +1,102 @@
 package ru.repositories;
 
 import io.quarkus.hibernate.reactive.panache.Panache;
-import io.quarkus.panache.common.Sort;
 import io.smallrye.mutiny.Uni;
+import io.vertx.mutiny.sqlclient.Pool;
+import io.vertx.mutiny.sqlclient.Tuple;
 import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
 import jakarta.persistence.PersistenceException;
 import jakarta.ws.rs.NotFoundException;
+import ru.Constants;
+import ru.dto.Page;
+import ru.dto.UserQuestionView;
 import ru.entities.User;
 import ru.entities.UserQuestion;
 
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.StringJoiner;
 
 @ApplicationScoped
 public class UserQuestionsRepository {
 
+    @Inject
+    Pool client;
+
     //Добавить новый вопрос от пользователя
     public Uni<UserQuestion> addNewQuestion(Long maxId, String question) throws PersistenceException,
             IllegalArgumentException,
             NotFoundException
     {
-        return Panache.withTransaction(()->
-                User.<User>findById(maxId).onItem()
-                .ifNull().failWith(()->new NotFoundException("Target user not found"))
-                .chain(user->{
+        //Одна вставка без поиска пользователя: его отсутствие видно по нарушению внешнего ключа
+        LocalDateTime now = LocalDateTime.now();
+        return client.preparedQuery("INSERT INTO User_Questions (Question, MAX_ID, Date) OUTPUT INSERTED.ID AS ID VALUES (@p1, @p2, @p3)")
+                .execute(Tuple.of(question, maxId, now))
+                .onFailure(SqlErrors::isForeignKeyViolation).transform(failure->new NotFoundException("Target user not found"))
+                .map(rows->{
                     UserQuestion userQuestion = new UserQuestion();
+                    userQuestion.setId(rows.iterator().next().getLong("ID"));
                     userQuestion.setQuestion(question);
-                    userQuestion.setUser(user);
-                    userQuestion.setQuestionCreationDate(LocalDateTime.now());
-                    return userQuestion.persistAndFlush();
-                })
-        );
+                    userQuestion.setQuestionCreationDate(now);
+                    return userQuestion;
+                });
+    }
+
+    public record NewQuestion(Long userId, String question, LocalDateTime date) {}
+
+    //Добавить вопросы одним MERGE, возвращает Id новых записей по номеру вопроса в списке.
+    //Вопросы несуществующих пользователей отсеиваются соединением с Users и в результат не попадают
+    public Uni<Map<Integer, Long>> addQuestions(List<NewQuestion> questions) {
+        Tuple params = Tuple.tuple();
+        StringJoiner values = new StringJoiner(",");
+        for (int row = 0; row < questions.size(); row++) {
+            NewQuestion question = questions.get(row);
+            values.add("(" + SqlHelper.placeholders(params.size() + 1, 3) + "," + row + ")");
+            params.addString(question.question());
+            params.addLong(question.userId());
+            params.addLocalDateTime(question.date());
+        }
+        String sql = "MERGE User_Questions AS target " +
+                "USING (SELECT v.Question, v.MAX_ID, v.Date, v.Row_Index FROM (VALUES " + values + ") AS v (Question, MAX_ID, Date, Row_Index) " +
+                "JOIN Users u ON u.MAX_ID = v.MAX_ID) AS source ON 1 = 0 " +
+                "WHEN NOT MATCHED THEN INSERT (Question, MAX_ID, Date) VALUES (source.Question, source.MAX_ID, source.Date) " +
+                "OUTPUT source.Row_Index AS Row_Index, INSERTED.ID AS ID;";
+        return client.preparedQuery(sql).execute(params)
+                .map(rows->{
+                    Map<Integer, Long> ids = new HashMap<>();
+                    rows.forEach(row->ids.put(row.getInteger("Row_Index"), row.getLong("ID")));
+                    return ids;
+                });
+    }
+
+    //Вставить вопрос из журнала записей, если запись с этим номером ещё не применена. После сбоя между вставкой и
+    //сохранением контрольной точки запись применяется ещё раз и не должна дать дубликат. Последний применённый номер
+    //журнала хранится в Journal_Applied и меняется в одной транзакции со вставкой; записи применяются строго по порядку,
+    //поэтому номер не больше сохранённого означает, что запись уже в БД. Проверка - по первичному ключу, без поиска по вопросам
+    public Uni<Boolean> addJournaledQuestion(String journalId, long seq, NewQuestion question) throws NotFoundException {
+        return client.withTransaction(connection->connection.preparedQuery("MERGE Journal_Applied WITH (HOLDLOCK) AS target " +
+                        "USING (SELECT @p1 AS Journal_ID, @p2 AS Last_Seq) AS source ON target.Journal_ID = source.Journal_ID " +
+                        "WHEN MATCHED AND target.Last_Seq < source.Last_Seq THEN UPDATE SET Last_Seq = source.Last_Seq " +
+                        "WHEN NOT MATCHED THEN INSERT (Journal_ID, Last_Seq) VALUES (source.Journal_ID, source.Last_Seq);")
+                        .execute(Tuple.of(journalId, seq))
+                        .chain(applied->{
+                            if (applied.rowCount() == 0) {
+                                return Uni.createFrom().item(false);
+                            }
+                            return connection.preparedQuery("INSERT INTO User_Questions (Question, MAX_ID, Date) VALUES (@p1, @p2, @p3)")
+                                    .execute(Tuple.of(question.question(), question.userId(), question.date()))
+                                    .replaceWith(true);
+                        }))
+                .onFailure(SqlErrors::isForeignKeyViolation).transform(failure->new NotFoundException("Target user not found"))
+                .onFailure(SqlErrors::isDataError).transform(failure->new IllegalArgumentException("Question rejected by database: " + failure.getMessage()));
     }
 
     //Вернуть все вопросы пользователя
-    public Uni<List<UserQuestion>> getAllQuestions(Long maxId) throws PersistenceException,
+    public Uni<List<UserQuestionView>> getAllQuestions(Long maxId) throws PersistenceException,
             IllegalArgumentException,
             NotFoundException
     {
@@ -45,11 +107,58 @@ public class UserQuestionsRepository {
            return Uni.createFrom().failure(()->new IllegalArgumentException("UserId cannot be negative"));
         }
 
-        return Panache.withTransaction(()->
-                User.<User>findById(maxId).onItem()
-                .ifNull().failWith(()->new NotFoundException("User with id = "+maxId+" not found"))
-                .chain(user-> UserQuestion.find("user.id=?1",Sort.by("id"),maxId).list())
-        );
+        //Один запрос от пользователя: нет строк - нет пользователя, одна строка без вопроса - вопросов нет
+        return client.preparedQuery("SELECT q.ID, q.Question, q.Answer, q.Date " +
+                        "FROM Users u LEFT JOIN User_Questions q ON q.MAX_ID = u.MAX_ID WHERE u.MAX_ID = @p1 ORDER BY q.ID")
+                .execute(Tuple.of(maxId))
+                .chain(rows->{
+                    if (rows.size() == 0) {
+                        return Uni.createFrom().failure(()->new NotFoundException("User with id = "+maxId+" not found"));
+                    }
+                    List<UserQuestionView> questions = new ArrayList<>(rows.size());
+                    rows.forEach(row->{
+                        if (row.getLong("ID") != null) {
+                            questions.add(new UserQuestionView(row.getLong("ID"), row.getString("Question"),
+                                    row.getString("Answer"), row.getLocalDateTime("Date")));
+                        }
+                    });
+                    return Uni.createFrom().item(questions);
+                });
+    }
+
+    //Страница вопросов пользователя по возрастанию ID: до limit записей после курсора
+    public Uni<Page<UserQuestionView>> getQuestionsPage(Long maxId, String cursor, int limit) throws IllegalArgumentException,
+            NotFoundException
+    {
+        if (maxId == null) {
+            return Uni.createFrom().failure(()->new IllegalArgumentException("UserId cannot be null"));
+        }
+        if(maxId <=0) {
+           return Uni.createFrom().failure(()->new IllegalArgumentException("UserId cannot be negative"));
+        }
+        if (limit <= 0 || limit > Constants.PAGE_MAX_LIMIT) {
+            return Uni.createFrom().failure(()->new IllegalArgumentException("Limit must be between 1 and " + Constants.PAGE_MAX_LIMIT));
+        }
+
+        //OUTER APPLY оставляет строку пользователя, даже если вопросов после курсора нет: нет строк - нет пользователя
+        return Uni.createFrom().item(()->Cursors.decode(cursor))
+                .chain(afterId->client.preparedQuery("SELECT q.ID, q.Question, q.Answer, q.Date FROM Users u " +
+                                "OUTER APPLY (SELECT TOP (@p2) ID, Question, Answer, Date FROM User_Questions WHERE MAX_ID = u.MAX_ID AND ID > @p3 ORDER BY ID) q " +
+                                "WHERE u.MAX_ID = @p1 ORDER BY q.ID")
+                        .execute(Tuple.of(maxId, limit + 1, afterId)))
+                .chain(rows->{
+                    if (rows.size() == 0) {
+                        return Uni.createFrom().failure(()->new NotFoundException("User with id = "+maxId+" not found"));
+                    }
+                    List<UserQuestionView> questions = new ArrayList<>(rows.size());
+                    rows.forEach(row->{
+                        if (row.getLong("ID") != null) {
+                            questions.add(new UserQuestionView(row.getLong("ID"), row.getString("Question"),
+                                    row.getString("Answer"), row.getLocalDateTime("Date")));
+                        }
+                    });
+                    return Uni.createFrom().item(Cursors.page(questions, limit, UserQuestionView::id));
+                });
     }
 
     //Удалить все вопросы пользователя
@@ -1,32 +1,111 @@
 package ru.repositories;
 
-import io.quarkus.hibernate.reactive.panache.Panache;
+import io.smallrye.mutiny.Multi;
 import io.smallrye.mutiny.Uni;
+import io.vertx.mutiny.sqlclient.Pool;
+import io.vertx.mutiny.sqlclient.Tuple;
+import jakarta.annotation.PostConstruct;
 import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Event;
+import jakarta.inject.Inject;
 import jakarta.persistence.PersistenceException;
 import jakarta.ws.rs.NotFoundException;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.jboss.logging.Logger;
+import ru.Constants;
+import ru.cache.RoleCache;
+import ru.cache.RoleRegistry;
+import ru.dto.BulkItemResultDTO;
+import ru.dto.UserDTO;
 import ru.exceptions.AlreadyExistException;
 import ru.entities.Role;
 import ru.entities.User;
+import ru.events.RoleChangedEvent;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.StringJoiner;
+import java.util.concurrent.atomic.AtomicLong;
 
 @ApplicationScoped
 public class UserRepository {
 
+    private final Logger logger = Logger.getLogger(UserRepository.class);
+
+    @Inject
+    RoleCache roleCache;
+
+    @Inject
+    RoleRegistry roleRegistry;
+
+    @Inject
+    Pool client;
+
+    @Inject
+    Event<RoleChangedEvent> roleChanged;
+
+    @ConfigProperty(name = "maxbot.role-loader.window-millis", defaultValue = "2")
+    long roleLoaderWindowMillis;
+
+    @ConfigProperty(name = "maxbot.role-loader.max-batch-size", defaultValue = "200")
+    int roleLoaderMaxBatchSize;
+
+    //Роль пользователя из БД: role == null - пользователь есть, но роль не назначена
+    private record UserRole(Role role) {}
+
+    private static final UserRole NO_ROLE = new UserRole(null);
+
+    //Одиночные getUserRole, пришедшие в одном окне, выполняются одним IN запросом
+    private BatchLoader<Long, UserRole> roleLoader;
+
+    @PostConstruct
+    void init() {
+        roleLoader = new BatchLoader<>(this::queryRoles, id->new NotFoundException("User not found"),
+                roleLoaderWindowMillis, roleLoaderMaxBatchSize);
+    }
+
     //Добавление юзера
     public Uni<User> addUser(Long id, String name) throws PersistenceException, AlreadyExistException {
         String trimmedName = name==null?null:name.trim();
-        return Panache.withTransaction(()->
-                User.<User>findById(id)
-                .onItem().ifNotNull()
-                .failWith(()->new AlreadyExistException("User already exists"))
-                .chain(user->getDefaultUserRole().chain(role->{
-                    User newUser = new User();
-                    newUser.setId(id);
-                    newUser.setMaxName(trimmedName);
-                    newUser.setRole(role);
-                    return newUser.persistAndFlush();
-                }))
-        );
+        //Одна вставка без предварительного поиска: повтор первичного ключа означает, что пользователь уже есть
+        return getDefaultUserRole().chain(role->
+                client.preparedQuery("INSERT INTO Users (MAX_ID, MAX_Name, Role_ID) VALUES (@p1, @p2, @p3)")
+                        .execute(Tuple.of(id, trimmedName, role.getId()))
+                        .onFailure(SqlErrors::isUniqueViolation).transform(failure->new AlreadyExistException("User already exists"))
+                        .onFailure(SqlErrors::isDataError).transform(failure->new IllegalArgumentException("User rejected by database: " + failure.getMessage()))
+                        .map(rows->{
+                            User newUser = new User();
+                            newUser.setId(id);
+                            newUser.setMaxName(trimmedName);
+                            newUser.setRole(role);
+                            return newUser;
+                        })
+        ).onItem().invoke(user->roleCache.put(id, user.getRole()));
+    }
+
+    public Map<String, Object> roleLoaderStats() {
+        return roleLoader.stats();
+    }
+
+    //Пакетная регистрация: MERGE кусками по BULK_CHUNK_SIZE, одновременно не более BULK_CONCURRENCY кусков
+    public Uni<List<BulkItemResultDTO>> addUsers(Multi<UserDTO> users, boolean refreshNames) {
+        AtomicLong counter = new AtomicLong();
+        return users.map(user->new IndexedUser(counter.getAndIncrement(), user))
+                .group().intoLists().of(Constants.BULK_CHUNK_SIZE)
+                .onItem().transformToUni(chunk->upsertUsers(chunk, refreshNames)).merge(Constants.BULK_CONCURRENCY)
+                .collect().in(ArrayList<BulkItemResultDTO>::new, List::addAll)
+                .map(results->{
+                    results.sort(Comparator.comparingLong(result->result.index));
+                    return results;
+                });
     }
 
     //Получить роль юзера по id
@@ -35,15 +114,93 @@ public class UserRepository {
             return Uni.createFrom().failure(()->new IllegalArgumentException("UserId must be positive and not null"));
         }
 
-        return Panache.withTransaction(()->User.<User>findById(id).onItem()
-                .ifNull().failWith(()->new NotFoundException("User not found"))
-                .chain(user -> {
-                    if(user.getRole()==null) {
-                        return Uni.createFrom().failure(()->new NotFoundException("User has no role assigned"));
-                    }
-                    return Uni.createFrom().item(user.getRole());
-                })
-        );
+        RoleCache.CachedRole cached = roleCache.get(id);
+        if(cached!=null) {
+            if(!cached.userExists()) {
+                return Uni.createFrom().failure(()->new NotFoundException("User not found"));
+            }
+            return Uni.createFrom().item(cached.role());
+        }
+
+        return roleLoader.load(id).chain(userRole->userRole.role()==null
+                ? Uni.createFrom().failure(()->new NotFoundException("User has no role assigned"))
+                : Uni.createFrom().item(userRole.role()));
+    }
+
+    //Получить роли пачки пользователей. Несуществующих пользователей и пользователей без роли в результате нет
+    public Uni<Map<Long, Role>> getUserRoles(Collection<Long> ids) throws IllegalArgumentException, PersistenceException {
+        if(ids == null || ids.isEmpty()) {
+            return Uni.createFrom().failure(()->new IllegalArgumentException("Ids can not be empty"));
+        }
+
+        Map<Long, Role> found = new HashMap<>();
+        List<Long> toLoad = new ArrayList<>();
+        for(Long id : new LinkedHashSet<>(ids)) {
+            if(id == null || id<=0) {
+                return Uni.createFrom().failure(()->new IllegalArgumentException("UserId must be positive and not null"));
+            }
+            RoleCache.CachedRole cached = roleCache.get(id);
+            if(cached==null) {
+                toLoad.add(id);
+            } else if(cached.userExists()) {
+                found.put(id, cached.role());
+            }
+        }
+        if(toLoad.isEmpty()) {
+            return Uni.createFrom().item(found);
+        }
+
+        return queryRoles(toLoad).map(loaded->{
+            loaded.forEach((id, userRole)->{
+                if(userRole.role()!=null) {
+                    found.put(id, userRole.role());
+                }
+            });
+            return found;
+        });
+    }
+
+    //Роли пользователей из БД кусками по ROLES_QUERY_CHUNK_SIZE. Отсутствующие пользователи запоминаются в кэше как
+    //несуществующие, пользователи без роли не кэшируются. Роль, добавленная после загрузки реестра, не означает,
+    //что пользователя нет: реестр один раз перечитывается
+    private Uni<Map<Long, UserRole>> queryRoles(List<Long> ids) {
+        Map<Long, Integer> roleIds = new HashMap<>();
+        Set<Long> withoutRole = new HashSet<>();
+        return Multi.createFrom().iterable(SqlHelper.partition(ids, Constants.ROLES_QUERY_CHUNK_SIZE))
+                .onItem().transformToUniAndConcatenate(chunk->client
+                        .preparedQuery("SELECT MAX_ID, Role_ID FROM Users WHERE MAX_ID IN ("
+                                + SqlHelper.placeholders(1, chunk.size()) + ")")
+                        .execute(Tuple.from(new ArrayList<Object>(chunk)))
+                        .invoke(rows->rows.forEach(row->{
+                            Integer roleId = row.getInteger("Role_ID");
+                            if(roleId==null) {
+                                withoutRole.add(row.getLong("MAX_ID"));
+                            } else {
+                                roleIds.put(row.getLong("MAX_ID"), roleId);
+                            }
+                        })))
+                .collect().last()
+                .chain(ignored->roleRegistry.getRolesById())
+                .chain(roles->roles.keySet().containsAll(roleIds.values())
+                        ? Uni.createFrom().item(roles)
+                        : roleRegistry.refresh().chain(()->roleRegistry.getRolesById()))
+                .map(roles->{
+                    Map<Long, UserRole> found = new HashMap<>();
+                    withoutRole.forEach(id->found.put(id, NO_ROLE));
+                    roleIds.forEach((userId, roleId)->{
+                        Role role = roles.get(roleId);
+                        if(role!=null) {
+                            found.put(userId, new UserRole(role));
+                            roleCache.put(userId, role);
+                        } else {
+                            logger.warnf("Роль %d пользователя %d не найдена в User_Roles", roleId, userId);
+                        }
+                    });
+                    ids.stream()
+                            .filter(id->!found.containsKey(id) && !roleIds.containsKey(id))
+                            .forEach(roleCache::putMissing);
+                    return found;
+                });
     }
 
     //Повысить пользователя до админа
@@ -51,30 +208,15 @@ public class UserRepository {
         if(id == null || id<=0) {
             return Uni.createFrom().failure(()->new IllegalArgumentException("UserId must be positive and not null"));
         }
-
-        return Panache.withTransaction(()->
-                User.<User>findById(id).onItem().ifNull()
-                 .failWith(()->new NotFoundException("User not found"))
-                 .chain(user->getAdminUserRole().chain(role -> {
-                     user.setRole(role);
-                     return Uni.createFrom().voidItem();
-                 }))
-        );
+        return setUserRole(id, RoleRegistry.ADMIN_ROLE, "User not found");
     }
 
     //понизить пользователя
     public Uni<Void> demoteUser(Long id) throws IllegalArgumentException, PersistenceException, NotFoundException {
         if(id == null || id<=0) {
-            return Uni.createFrom().failure(()-> new IllegalArgumentException("UserId must be positive and not null"));
+            return Uni.createFrom().failure(()->new IllegalArgumentException("UserId must be positive and not null"));
         }
-        return Panache.withTransaction(()->
-                User.<User>findById(id).onItem().ifNull()
-                 .failWith(()->new NotFoundException("Target user not found"))
-                .chain(user->getDefaultUserRole().chain(role->{
-                    user.setRole(role);
-                    return Uni.createFrom().voidItem();
-                }))
-        );
+        return setUserRole(id, RoleRegistry.USER_ROLE, "Target user not found");
     }
 
     //блокировать пользователя
@@ -82,14 +224,7 @@ public class UserRepository {
         if(id == null || id<=0) {
             return Uni.createFrom().failure(()->new IllegalArgumentException("UserId must be positive and not null"));
         }
-        return Panache.withTransaction(()->
-                User.<User>findById(id).onItem().ifNull()
-                        .failWith(()->new NotFoundException("Target user not found"))
-                        .chain(user->getBlockedUserRole().chain(role->{
-                            user.setRole(role);
-                            return Uni.createFrom().voidItem();
-                        }))
-                );
+        return setUserRole(id, RoleRegistry.BLOCKED_ROLE, "Target user not found");
     }
 
     //разблокировать пользователя
@@ -97,27 +232,100 @@ public class UserRepository {
         if(id == null || id<=0) {
             return Uni.createFrom().failure(()->new IllegalArgumentException("UserId must be positive and not null"));
         }
-        return Panache.withTransaction(()->
-                User.<User>findById(id).onItem().ifNull()
-                        .failWith(()->new NotFoundException("Target user not found"))
-                        .chain(user->getDefaultUserRole().chain(role->{
-                            user.setRole(role);
+        return setUserRole(id, RoleRegistry.USER_ROLE, "Target user not found");
+    }
+
+    //Смена роли одним UPDATE без загрузки сущности. 0 затронутых строк - пользователя нет
+    private Uni<Void> setUserRole(Long id, String roleName, String notFoundMessage) {
+        return roleRegistry.getRole(roleName).chain(role->
+                client.preparedQuery("UPDATE Users SET Role_ID = @p1 WHERE MAX_ID = @p2")
+                        .execute(Tuple.of(role.getId(), id))
+                        .chain(rows->{
+                            if(rows.rowCount()==0) {
+                                roleCache.putMissing(id);
+                                return Uni.createFrom().failure(()->new NotFoundException(notFoundMessage));
+                            }
+                            roleCache.put(id, role);
+                            roleChanged.fire(new RoleChangedEvent(id, role.getName()));
                             return Uni.createFrom().voidItem();
-                        }))
+                        })
         );
     }
-    private Uni<Role> getDefaultUserRole() {
-        return Role.<Role>find("name","user").firstResult()
-                .onItem().ifNull().failWith(()->new NotFoundException("Default user role not found"));
-    }
 
-    private Uni<Role> getAdminUserRole() {
-        return Role.<Role>find("name","admin").firstResult()
-                .onItem().ifNull().failWith(()->new NotFoundException("Admin user role not found"));
+    private record IndexedUser(long index, UserDTO user) {}
+
+    //Один MERGE на кусок: новые пользователи создаются с ролью по умолчанию, у существующих при refreshNames обновляется имя
+    private Uni<List<BulkItemResultDTO>> upsertUsers(List<IndexedUser> chunk, boolean refreshNames) {
+        List<BulkItemResultDTO> results = new ArrayList<>();
+        Map<Long, IndexedUser> valid = new LinkedHashMap<>();
+        for(IndexedUser item : chunk) {
+            UserDTO user = item.user();
+            if(user == null || user.id == null || user.id<=0) {
+                results.add(new BulkItemResultDTO(item.index(), null, BulkItemResultDTO.INVALID, "Id must be positive number"));
+            } else if(user.maxName != null && user.maxName.trim().length() > Constants.MAX_USERNAME_LENGTH) {
+                results.add(new BulkItemResultDTO(item.index(), user.id, BulkItemResultDTO.INVALID,
+                        "UserName cannot exceed " + Constants.MAX_USERNAME_LENGTH + " characters"));
+            } else if(valid.containsKey(user.id)) {
+                results.add(new BulkItemResultDTO(item.index(), user.id, BulkItemResultDTO.DUPLICATE, null));
+            } else {
+                valid.put(user.id, item);
+            }
+        }
+        if(valid.isEmpty()) {
+            return Uni.createFrom().item(results);
+        }
+
+        //Роль по умолчанию берётся из реестра ролей, как в addUser: без неё кусок падает целиком, а не молча даёт EXISTS
+        return getDefaultUserRole().chain(role->{
+                    Tuple params = Tuple.tuple();
+                    StringJoiner values = new StringJoiner(",");
+                    for(IndexedUser item : valid.values()) {
+                        values.add("(" + SqlHelper.placeholders(params.size() + 1, 2) + ")");
+                        params.addLong(item.user().id);
+                        params.addString(item.user().maxName == null ? null : item.user().maxName.trim());
+                    }
+                    int roleParam = params.size() + 1;
+                    params.addInteger(role.getId());
+                    int refreshParam = params.size() + 1;
+                    params.addBoolean(refreshNames);
+
+                    String sql = "MERGE Users WITH (HOLDLOCK) AS target " +
+                            "USING (VALUES " + values + ") AS source (MAX_ID, MAX_Name) " +
+                            "ON target.MAX_ID = source.MAX_ID " +
+                            "WHEN MATCHED AND @p" + refreshParam + " = 1 AND source.MAX_Name IS NOT NULL " +
+                            "AND (target.MAX_Name IS NULL OR target.MAX_Name <> source.MAX_Name) THEN " +
+                            "UPDATE SET MAX_Name = source.MAX_Name " +
+                            "WHEN NOT MATCHED THEN INSERT (MAX_ID, MAX_Name, Role_ID) VALUES (source.MAX_ID, source.MAX_Name, @p" + roleParam + ") " +
+                            "OUTPUT source.MAX_ID AS MAX_ID, $action AS Action;";
+                    return client.preparedQuery(sql).execute(params);
+                })
+                .map(rows->{
+                    Map<Long, String> actions = new HashMap<>();
+                    rows.forEach(row->actions.put(row.getLong("MAX_ID"), row.getString("Action")));
+                    valid.forEach((id, item)->{
+                        String action = actions.get(id);
+                        String status;
+                        if("INSERT".equals(action)) {
+                            status = BulkItemResultDTO.CREATED;
+                            roleCache.evict(id);
+                        } else if("UPDATE".equals(action)) {
+                            status = BulkItemResultDTO.UPDATED;
+                        } else {
+                            status = BulkItemResultDTO.EXISTS;
+                        }
+                        results.add(new BulkItemResultDTO(item.index(), id, status, null));
+                    });
+                    return results;
+                })
+                .onFailure().recoverWithItem(failure->{
+                    logger.warn("addUsers ошибка пакетной вставки", failure);
+                    valid.forEach((id, item)->
+                            results.add(new BulkItemResultDTO(item.index(), id, BulkItemResultDTO.FAILED, failure.getMessage())));
+                    return results;
+                });
     }
 
-    private Uni<Role> getBlockedUserRole() {
-        return Role.<Role>find("name","blocked").firstResult()
-                .onItem().ifNull().failWith(()->new NotFoundException("Blocked user role not found"));
+    private Uni<Role> getDefaultUserRole() {
+        return roleRegistry.getRole(RoleRegistry.USER_ROLE);
     }
 }
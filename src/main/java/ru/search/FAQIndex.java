@@ -0,0 +1,264 @@
+package ru.search;
+
+import io.quarkus.vertx.VertxContextSupport;
+import io.smallrye.mutiny.Uni;
+import io.smallrye.mutiny.infrastructure.Infrastructure;
+import io.vertx.core.Context;
+import io.vertx.core.Vertx;
+import jakarta.inject.Inject;
+import org.jboss.logging.Logger;
+import ru.entities.FAQ;
+import ru.entities.Theme;
+import ru.events.ChangeAction;
+import ru.events.FAQChangedEvent;
+import ru.events.ThemeChangedEvent;
+import ru.repositories.FAQRepository;
+import ru.repositories.ThemeRepository;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Supplier;
+
+//Общая часть индексов по FAQ: загрузка всех записей из БД и синхронизация по событиям изменения.
+//Наследник хранит данные и меняет их только под lock.writeLock().
+//События приходят синхронно из обработчиков запросов на event loop, поэтому применяются не там, а по одному
+//в пуле рабочих потоков в порядке поступления: изменение индекса (и его обслуживание в наследнике) не держит event loop
+public abstract class FAQIndex {
+
+    private final Logger logger = Logger.getLogger(getClass());
+
+    @Inject
+    FAQRepository repo;
+
+    @Inject
+    ThemeRepository themeRepo;
+
+    protected final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private volatile boolean loaded;
+
+    //События FAQChangedEvent и ThemeChangedEvent, пришедшие во время перестроения: применяются к новому индексу после загрузки
+    private final List<Object> pending = new ArrayList<>();
+    private int rebuildsInProgress;
+
+    //Загрузка по первому обращению, общая для всех чтений, пришедших до её окончания
+    private final AtomicReference<Uni<Void>> initialLoad = new AtomicReference<>();
+
+    //Изменения, ждущие применения, и признак того, что их уже применяет рабочий поток
+    private final Queue<Object> changes = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean applying = new AtomicBoolean();
+
+    private final LongAdder rebuilds = new LongAdder();
+
+    //Подготовиться к полной загрузке: дальше все записи передаются через add, затем вызывается afterLoad
+    protected abstract void clear();
+
+    //Добавить запись, запись с таким id в индексе отсутствует
+    protected abstract void add(FAQ faq);
+
+    //Удалить запись, если она есть в индексе
+    protected abstract void remove(Long faqId);
+
+    //Id записей темы, которые есть в индексе
+    protected abstract List<Long> idsOfTheme(Integer themeId);
+
+    //Индексирует ли наследник сами темы. Если да - темы загружаются вместе с FAQ и передаются в addTheme/removeTheme
+    protected boolean indexesThemes() {
+        return false;
+    }
+
+    //Все записи полной загрузки добавлены, события за время загрузки ещё не применены
+    protected void afterLoad() {}
+
+    //Очередь изменений применена или индекс загружен заново, блокировка не удерживается. Выполняется в рабочем потоке;
+    //обслуживание, которое дольше одного изменения, делается здесь, чтобы не держать блокировку записи
+    protected void afterChanges() {}
+
+    protected void addTheme(Theme theme) {}
+
+    protected void removeTheme(Integer themeId) {}
+
+    //Построить индекс при старте, вызывается из наблюдателя StartupEvent наследника
+    protected void start() {
+        try {
+            VertxContextSupport.subscribeAndAwait(this::rebuild);
+        } catch (Throwable e) {
+            logger.warn("Не удалось построить индекс при старте, он будет построен при первом обращении", e);
+        }
+    }
+
+    //Перечитать все FAQ (и темы, если они индексируются) из БД и заменить индекс.
+    //Результат запроса приходит на event loop, а построение индекса (у векторного - расчёт векторов всего корпуса)
+    //долгое, поэтому оно выполняется в пуле рабочих потоков; результат возвращается в контекст вызывающего
+    public Uni<Void> rebuild() {
+        return Uni.createFrom().deferred(()->{
+            Context context = Vertx.currentContext();
+            int pendingFrom = beginRebuild();
+            Uni<List<Theme>> themes = indexesThemes()
+                    ? themeRepo.getAllSorted()
+                    : Uni.createFrom().item(List.of());
+            Uni<Void> rebuilt = themes.chain(loadedThemes->repo.findAllWithThemes()
+                            .emitOn(Infrastructure.getDefaultWorkerPool())
+                            .invoke(faqs->swap(loadedThemes, faqs, pendingFrom)))
+                    .onTermination().invoke(this::endRebuild)
+                    .replaceWithVoid();
+            if (context == null) {
+                return rebuilt;
+            }
+            return rebuilt.emitOn(task->context.runOnContext(v->task.run()));
+        });
+    }
+
+    //Выполнить чтение из индекса, при необходимости сначала построив его
+    protected <T> Uni<T> read(Supplier<T> reader) {
+        if (loaded) {
+            return Uni.createFrom().item(reader);
+        }
+        return load().map(v->reader.get());
+    }
+
+    //Одно перестроение на все чтения до загрузки индекса, как в SingleFlight
+    private Uni<Void> load() {
+        return Uni.createFrom().deferred(()->{
+            Uni<Void> shared = initialLoad.get();
+            if (shared == null) {
+                AtomicReference<Uni<Void>> created = new AtomicReference<>();
+                created.set(rebuild()
+                        .onTermination().invoke(()->initialLoad.compareAndSet(created.get(), null))
+                        .memoize().indefinitely());
+                shared = initialLoad.compareAndExchange(null, created.get());
+                if (shared == null) {
+                    shared = created.get();
+                }
+            }
+            //Результат возвращается в контекст своего запроса, а не того, который выполнил перестроение
+            Context context = Vertx.currentContext();
+            if (context == null) {
+                return shared;
+            }
+            return shared.emitOn(task->context.runOnContext(v->task.run()));
+        });
+    }
+
+    protected void applyChange(FAQChangedEvent event) {
+        enqueue(event);
+    }
+
+    protected void applyChange(ThemeChangedEvent event) {
+        if (event.action() != ChangeAction.DELETED && !indexesThemes()) {
+            return;
+        }
+        enqueue(event);
+    }
+
+    protected void putStats(Map<String, Object> stats) {
+        stats.put("loaded", loaded);
+        stats.put("rebuilds", rebuilds.sum());
+        stats.put("pendingChanges", changes.size());
+    }
+
+    private void enqueue(Object event) {
+        changes.add(event);
+        if (applying.compareAndSet(false, true)) {
+            Infrastructure.getDefaultWorkerPool().execute(this::applyQueued);
+        }
+    }
+
+    //Применять изменения, пока очередь не опустеет. Изменение, добавленное после опустошения, но до сброса признака,
+    //подхватывается повторной проверкой
+    private void applyQueued() {
+        do {
+            Object event;
+            while ((event = changes.poll()) != null) {
+                lock.writeLock().lock();
+                try {
+                    applyAndRecord(event);
+                } catch (RuntimeException e) {
+                    logger.error("Не удалось применить изменение к индексу", e);
+                } finally {
+                    lock.writeLock().unlock();
+                }
+            }
+            maintain();
+            applying.set(false);
+        } while (!changes.isEmpty() && applying.compareAndSet(false, true));
+    }
+
+    private void applyAndRecord(Object event) {
+        apply(event);
+        if (rebuildsInProgress > 0) {
+            pending.add(event);
+        }
+    }
+
+    private void apply(Object event) {
+        if (event instanceof FAQChangedEvent faqEvent) {
+            remove(faqEvent.faqId());
+            if (faqEvent.action() != ChangeAction.DELETED && faqEvent.faq() != null) {
+                add(faqEvent.faq());
+            }
+        } else if (event instanceof ThemeChangedEvent themeEvent) {
+            if (themeEvent.action() == ChangeAction.DELETED) {
+                idsOfTheme(themeEvent.themeId()).forEach(this::remove);
+                removeTheme(themeEvent.themeId());
+            } else if (themeEvent.theme() != null) {
+                removeTheme(themeEvent.themeId());
+                addTheme(themeEvent.theme());
+            }
+        }
+    }
+
+    private int beginRebuild() {
+        lock.writeLock().lock();
+        try {
+            rebuildsInProgress++;
+            return pending.size();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void swap(List<Theme> themes, List<FAQ> faqs, int pendingFrom) {
+        lock.writeLock().lock();
+        try {
+            clear();
+            themes.forEach(this::addTheme);
+            faqs.forEach(this::add);
+            afterLoad();
+            for (int i = pendingFrom; i < pending.size(); i++) {
+                apply(pending.get(i));
+            }
+            loaded = true;
+            rebuilds.increment();
+        } finally {
+            lock.writeLock().unlock();
+        }
+        logger.infof("Индекс построен: %d записей FAQ", faqs.size());
+        maintain();
+    }
+
+    private void maintain() {
+        try {
+            afterChanges();
+        } catch (RuntimeException e) {
+            logger.error("Не удалось выполнить обслуживание индекса", e);
+        }
+    }
+
+    private void endRebuild() {
+        lock.writeLock().lock();
+        try {
+            if (--rebuildsInProgress == 0) {
+                pending.clear();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+}
@@ -0,0 +1,188 @@
+package ru.search;
+
+import io.quarkus.runtime.StartupEvent;
+import io.smallrye.mutiny.Uni;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import ru.Constants;
+import ru.dto.FAQSearchHitDTO;
+import ru.entities.FAQ;
+import ru.events.FAQChangedEvent;
+import ru.events.ThemeChangedEvent;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.atomic.LongAdder;
+
+//Полнотекстовый поиск по вопросам и ответам FAQ с ранжированием BM25
+@ApplicationScoped
+public class FAQSearchIndex extends FAQIndex {
+
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+    //Совпадение в вопросе весит больше, чем в ответе
+    private static final int QUESTION_WEIGHT = 2;
+
+    private record Document(Long id, String question, String answer, Integer themeId, String themeName,
+                            Map<String, Integer> termFrequencies, int length) {}
+
+    private final HashMap<Long, Document> documents = new HashMap<>();
+    private final HashMap<String, HashMap<Long, Integer>> postings = new HashMap<>();
+    private long totalLength;
+
+    private final LongAdder queries = new LongAdder();
+
+    void onStart(@Observes StartupEvent event) {
+        start();
+    }
+
+    //Найти до limit записей по убыванию релевантности
+    public Uni<List<FAQSearchHitDTO>> search(String query, int limit) {
+        if (query == null || query.isBlank()) {
+            return Uni.createFrom().failure(()->new IllegalArgumentException("Search query cannot be null or empty"));
+        }
+        if (query.length() > Constants.MAX_SEARCH_QUERY_LENGTH) {
+            return Uni.createFrom().failure(()->new IllegalArgumentException("Search query cannot exceed " + Constants.MAX_SEARCH_QUERY_LENGTH + " characters"));
+        }
+        if (limit <= 0 || limit > Constants.SEARCH_MAX_LIMIT) {
+            return Uni.createFrom().failure(()->new IllegalArgumentException("Limit must be between 1 and " + Constants.SEARCH_MAX_LIMIT));
+        }
+        return read(()->searchLoaded(query, limit));
+    }
+
+    //Есть ли FAQ с таким id
+    public Uni<Boolean> contains(Long faqId) {
+        return read(()->{
+            lock.readLock().lock();
+            try {
+                return documents.containsKey(faqId);
+            } finally {
+                lock.readLock().unlock();
+            }
+        });
+    }
+
+    private List<FAQSearchHitDTO> searchLoaded(String query, int limit) {
+        queries.increment();
+        LinkedHashSet<String> terms = new LinkedHashSet<>(RussianAnalyzer.terms(query));
+        lock.readLock().lock();
+        try {
+            int count = documents.size();
+            if (count == 0 || terms.isEmpty()) {
+                return List.of();
+            }
+            double averageLength = (double) totalLength / count;
+            HashMap<Long, Double> scores = new HashMap<>();
+            for (String term : terms) {
+                HashMap<Long, Integer> posting = postings.get(term);
+                if (posting == null) {
+                    continue;
+                }
+                double idf = Math.log(1 + (count - posting.size() + 0.5) / (posting.size() + 0.5));
+                for (Map.Entry<Long, Integer> entry : posting.entrySet()) {
+                    int frequency = entry.getValue();
+                    int length = documents.get(entry.getKey()).length();
+                    double score = idf * frequency * (K1 + 1)
+                            / (frequency + K1 * (1 - B + B * length / averageLength));
+                    scores.merge(entry.getKey(), score, Double::sum);
+                }
+            }
+            PriorityQueue<Map.Entry<Long, Double>> top = new PriorityQueue<>(Map.Entry.comparingByValue());
+            for (Map.Entry<Long, Double> entry : scores.entrySet()) {
+                top.offer(entry);
+                if (top.size() > limit) {
+                    top.poll();
+                }
+            }
+            List<FAQSearchHitDTO> hits = new ArrayList<>(top.size());
+            while (!top.isEmpty()) {
+                Map.Entry<Long, Double> entry = top.poll();
+                Document document = documents.get(entry.getKey());
+                hits.add(new FAQSearchHitDTO(document.id(), document.question(), document.answer(),
+                        document.themeName(), Math.round(entry.getValue() * 1000) / 1000.0));
+            }
+            Collections.reverse(hits);
+            return hits;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    void onFAQChanged(@Observes FAQChangedEvent event) {
+        applyChange(event);
+    }
+
+    void onThemeChanged(@Observes ThemeChangedEvent event) {
+        applyChange(event);
+    }
+
+    @Override
+    protected void clear() {
+        documents.clear();
+        postings.clear();
+        totalLength = 0;
+    }
+
+    @Override
+    protected List<Long> idsOfTheme(Integer themeId) {
+        return documents.values().stream()
+                .filter(document->themeId.equals(document.themeId()))
+                .map(Document::id)
+                .toList();
+    }
+
+    @Override
+    protected void add(FAQ faq) {
+        Map<String, Integer> frequencies = new HashMap<>();
+        for (String term : RussianAnalyzer.terms(faq.getQuestion())) {
+            frequencies.merge(term, QUESTION_WEIGHT, Integer::sum);
+        }
+        for (String term : RussianAnalyzer.terms(faq.getAnswer())) {
+            frequencies.merge(term, 1, Integer::sum);
+        }
+        int length = frequencies.values().stream().mapToInt(Integer::intValue).sum();
+        Document document = new Document(faq.getId(), faq.getQuestion(), faq.getAnswer(),
+                faq.getTheme() != null ? faq.getTheme().getId() : null, faq.getThemeName(), frequencies, length);
+        documents.put(document.id(), document);
+        totalLength += length;
+        frequencies.forEach((term, frequency)->postings.computeIfAbsent(term, t->new HashMap<>()).put(document.id(), frequency));
+    }
+
+    @Override
+    protected void remove(Long id) {
+        Document document = documents.remove(id);
+        if (document == null) {
+            return;
+        }
+        totalLength -= document.length();
+        for (String term : document.termFrequencies().keySet()) {
+            HashMap<Long, Integer> posting = postings.get(term);
+            if (posting != null) {
+                posting.remove(id);
+                if (posting.isEmpty()) {
+                    postings.remove(term);
+                }
+            }
+        }
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        lock.readLock().lock();
+        try {
+            stats.put("documents", documents.size());
+            stats.put("terms", postings.size());
+        } finally {
+            lock.readLock().unlock();
+        }
+        putStats(stats);
+        stats.put("queries", queries.sum());
+        return stats;
+    }
+}
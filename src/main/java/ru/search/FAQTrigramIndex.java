@@ -0,0 +1,299 @@
+package ru.search;
+
+import io.quarkus.runtime.StartupEvent;
+import io.smallrye.mutiny.Uni;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import ru.Constants;
+import ru.dto.FAQSuggestionDTO;
+import ru.entities.FAQ;
+import ru.events.FAQChangedEvent;
+import ru.events.ThemeChangedEvent;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+//Поиск похожих вопросов FAQ по совпадению символьных триграмм (устойчив к опечаткам и перестановке слов).
+//Все данные в примитивных массивах: записи занимают слоты, удалённые слоты помечаются и вычищаются при уплотнении
+@ApplicationScoped
+public class FAQTrigramIndex extends FAQIndex {
+
+    private static final int INITIAL_CAPACITY = 1024;
+    //Уплотнять, когда удалённых слотов не меньше этого числа и больше половины всех слотов
+    private static final int MIN_DELETED_TO_COMPACT = 256;
+
+    //Триграмма -> её номер; по номеру - список слотов, где она встречается
+    private final LongIntHashMap trigramIds = new LongIntHashMap();
+    private int[][] postings = new int[INITIAL_CAPACITY][];
+    private int[] postingSizes = new int[INITIAL_CAPACITY];
+
+    //Данные записей по слотам
+    private final LongIntHashMap slotsByFaqId = new LongIntHashMap();
+    private long[] slotFaqIds = new long[INITIAL_CAPACITY];
+    private int[] slotThemeIds = new int[INITIAL_CAPACITY];
+    private String[] slotQuestions = new String[INITIAL_CAPACITY];
+    private int[][] slotTrigrams = new int[INITIAL_CAPACITY][];
+    private final BitSet deleted = new BitSet();
+    private int slotCount;
+    private int deletedCount;
+
+    private final LongAdder queries = new LongAdder();
+    private final LongAdder compactions = new LongAdder();
+
+    void onStart(@Observes StartupEvent event) {
+        start();
+    }
+
+    void onFAQChanged(@Observes FAQChangedEvent event) {
+        applyChange(event);
+    }
+
+    void onThemeChanged(@Observes ThemeChangedEvent event) {
+        applyChange(event);
+    }
+
+    //Найти до limit вопросов FAQ, похожих на текст, со сходством не ниже minSimilarity
+    public Uni<List<FAQSuggestionDTO>> suggest(String text, int limit, double minSimilarity) {
+        if (text == null || text.isBlank()) {
+            return Uni.createFrom().failure(()->new IllegalArgumentException("Text cannot be null or empty"));
+        }
+        if (text.length() > Constants.MAX_QUESTION_LENGTH) {
+            return Uni.createFrom().failure(()->new IllegalArgumentException("Text cannot exceed " + Constants.MAX_QUESTION_LENGTH + " characters"));
+        }
+        if (limit <= 0 || limit > Constants.SEARCH_MAX_LIMIT) {
+            return Uni.createFrom().failure(()->new IllegalArgumentException("Limit must be between 1 and " + Constants.SEARCH_MAX_LIMIT));
+        }
+        if (minSimilarity < 0 || minSimilarity > 1) {
+            return Uni.createFrom().failure(()->new IllegalArgumentException("Minimal similarity must be between 0 and 1"));
+        }
+        return read(()->suggestLoaded(text, limit, minSimilarity));
+    }
+
+    List<FAQSuggestionDTO> suggestLoaded(String text, int limit, double minSimilarity) {
+        queries.increment();
+        long[] queryTrigrams = trigrams(text);
+        if (queryTrigrams.length == 0) {
+            return List.of();
+        }
+        lock.readLock().lock();
+        try {
+            //Количество общих триграмм по слотам, touched - слоты с ненулевым счётчиком
+            int[] overlaps = new int[slotCount];
+            int[] touched = new int[Math.min(slotCount, 64)];
+            int touchedCount = 0;
+            for (long trigram : queryTrigrams) {
+                int trigramId = trigramIds.get(trigram);
+                if (trigramId == LongIntHashMap.MISSING) {
+                    continue;
+                }
+                int[] posting = postings[trigramId];
+                for (int i = 0; i < postingSizes[trigramId]; i++) {
+                    int slot = posting[i];
+                    if (overlaps[slot]++ == 0) {
+                        if (touchedCount == touched.length) {
+                            touched = Arrays.copyOf(touched, touched.length * 2);
+                        }
+                        touched[touchedCount++] = slot;
+                    }
+                }
+            }
+
+            //Лучшие limit слотов по убыванию сходства (вставкой, limit небольшой)
+            int[] topSlots = new int[limit];
+            double[] topScores = new double[limit];
+            int topCount = 0;
+            for (int t = 0; t < touchedCount; t++) {
+                int slot = touched[t];
+                if (deleted.get(slot)) {
+                    continue;
+                }
+                int overlap = overlaps[slot];
+                //Коэффициент Жаккара по множествам триграмм
+                double score = (double) overlap / (queryTrigrams.length + slotTrigrams[slot].length - overlap);
+                if (score < minSimilarity || (topCount == limit && score <= topScores[limit - 1])) {
+                    continue;
+                }
+                int position = topCount < limit ? topCount++ : limit - 1;
+                while (position > 0 && topScores[position - 1] < score) {
+                    topSlots[position] = topSlots[position - 1];
+                    topScores[position] = topScores[position - 1];
+                    position--;
+                }
+                topSlots[position] = slot;
+                topScores[position] = score;
+            }
+
+            List<FAQSuggestionDTO> suggestions = new ArrayList<>(topCount);
+            for (int i = 0; i < topCount; i++) {
+                int slot = topSlots[i];
+                suggestions.add(new FAQSuggestionDTO(slotFaqIds[slot], slotQuestions[slot],
+                        Math.round(topScores[i] * 1000) / 1000.0));
+            }
+            return suggestions;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    //Уникальные триграммы текста по словам с отступами, как в pg_trgm: "  сл", " сло", "сло", "лов", "ово", "во "
+    static long[] trigrams(String text) {
+        List<String> words = RussianAnalyzer.words(text);
+        int total = 0;
+        for (String word : words) {
+            total += word.length() + 1;
+        }
+        long[] trigrams = new long[total];
+        int count = 0;
+        for (String word : words) {
+            String padded = "  " + word + " ";
+            for (int i = 0; i + 3 <= padded.length(); i++) {
+                trigrams[count++] = ((long) padded.charAt(i) << 32) | ((long) padded.charAt(i + 1) << 16) | padded.charAt(i + 2);
+            }
+        }
+        Arrays.sort(trigrams, 0, count);
+        int unique = 0;
+        for (int i = 0; i < count; i++) {
+            if (unique == 0 || trigrams[unique - 1] != trigrams[i]) {
+                trigrams[unique++] = trigrams[i];
+            }
+        }
+        return Arrays.copyOf(trigrams, unique);
+    }
+
+    @Override
+    protected void clear() {
+        trigramIds.clear();
+        postings = new int[INITIAL_CAPACITY][];
+        postingSizes = new int[INITIAL_CAPACITY];
+        slotsByFaqId.clear();
+        slotFaqIds = new long[INITIAL_CAPACITY];
+        slotThemeIds = new int[INITIAL_CAPACITY];
+        slotQuestions = new String[INITIAL_CAPACITY];
+        slotTrigrams = new int[INITIAL_CAPACITY][];
+        deleted.clear();
+        slotCount = 0;
+        deletedCount = 0;
+    }
+
+    @Override
+    protected void add(FAQ faq) {
+        long[] trigrams = trigrams(faq.getQuestion());
+        int[] ids = new int[trigrams.length];
+        for (int i = 0; i < trigrams.length; i++) {
+            ids[i] = trigramId(trigrams[i]);
+        }
+        Integer themeId = faq.getTheme() != null ? faq.getTheme().getId() : null;
+        addSlot(faq.getId(), themeId != null ? themeId : 0, faq.getQuestion(), ids);
+    }
+
+    @Override
+    protected void remove(Long faqId) {
+        int slot = slotsByFaqId.get(faqId);
+        if (slot == LongIntHashMap.MISSING) {
+            return;
+        }
+        slotsByFaqId.remove(faqId);
+        deleted.set(slot);
+        slotQuestions[slot] = null;
+        deletedCount++;
+        if (deletedCount >= MIN_DELETED_TO_COMPACT && deletedCount * 2 > slotCount) {
+            compact();
+        }
+    }
+
+    @Override
+    protected List<Long> idsOfTheme(Integer themeId) {
+        List<Long> ids = new ArrayList<>();
+        for (int slot = 0; slot < slotCount; slot++) {
+            if (!deleted.get(slot) && slotThemeIds[slot] == themeId) {
+                ids.add(slotFaqIds[slot]);
+            }
+        }
+        return ids;
+    }
+
+    private int trigramId(long trigram) {
+        int id = trigramIds.get(trigram);
+        if (id == LongIntHashMap.MISSING) {
+            id = trigramIds.size();
+            trigramIds.put(trigram, id);
+            if (id == postings.length) {
+                postings = Arrays.copyOf(postings, id * 2);
+                postingSizes = Arrays.copyOf(postingSizes, id * 2);
+            }
+            postings[id] = new int[4];
+        }
+        return id;
+    }
+
+    private void addSlot(long faqId, int themeId, String question, int[] ids) {
+        if (slotCount == slotFaqIds.length) {
+            int capacity = slotCount * 2;
+            slotFaqIds = Arrays.copyOf(slotFaqIds, capacity);
+            slotThemeIds = Arrays.copyOf(slotThemeIds, capacity);
+            slotQuestions = Arrays.copyOf(slotQuestions, capacity);
+            slotTrigrams = Arrays.copyOf(slotTrigrams, capacity);
+        }
+        int slot = slotCount++;
+        slotFaqIds[slot] = faqId;
+        slotThemeIds[slot] = themeId;
+        slotQuestions[slot] = question;
+        slotTrigrams[slot] = ids;
+        slotsByFaqId.put(faqId, slot);
+        for (int id : ids) {
+            if (postingSizes[id] == postings[id].length) {
+                postings[id] = Arrays.copyOf(postings[id], postings[id].length * 2);
+            }
+            postings[id][postingSizes[id]++] = slot;
+        }
+    }
+
+    //Переложить живые слоты подряд и пересобрать списки слотов по триграммам
+    private void compact() {
+        int live = 0;
+        for (int slot = 0; slot < slotCount; slot++) {
+            if (deleted.get(slot)) {
+                continue;
+            }
+            slotFaqIds[live] = slotFaqIds[slot];
+            slotThemeIds[live] = slotThemeIds[slot];
+            slotQuestions[live] = slotQuestions[slot];
+            slotTrigrams[live] = slotTrigrams[slot];
+            slotsByFaqId.put(slotFaqIds[live], live);
+            live++;
+        }
+        Arrays.fill(slotQuestions, live, slotCount, null);
+        Arrays.fill(slotTrigrams, live, slotCount, null);
+        Arrays.fill(postingSizes, 0);
+        for (int slot = 0; slot < live; slot++) {
+            for (int id : slotTrigrams[slot]) {
+                postings[id][postingSizes[id]++] = slot;
+            }
+        }
+        deleted.clear();
+        slotCount = live;
+        deletedCount = 0;
+        compactions.increment();
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        lock.readLock().lock();
+        try {
+            stats.put("documents", slotCount - deletedCount);
+            stats.put("deletedSlots", deletedCount);
+            stats.put("trigrams", trigramIds.size());
+        } finally {
+            lock.readLock().unlock();
+        }
+        putStats(stats);
+        stats.put("queries", queries.sum());
+        stats.put("compactions", compactions.sum());
+        return stats;
+    }
+}
@@ -0,0 +1,424 @@
+package ru.search;
+
+import io.quarkus.runtime.ShutdownEvent;
+import io.quarkus.runtime.StartupEvent;
+import io.smallrye.mutiny.Uni;
+import io.smallrye.mutiny.infrastructure.Infrastructure;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.jboss.logging.Logger;
+import ru.Constants;
+import ru.dto.FAQSuggestionDTO;
+import ru.entities.FAQ;
+import ru.events.FAQChangedEvent;
+import ru.events.ThemeChangedEvent;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+//Смысловой поиск по вопросам FAQ: локальные векторы текста в графе HNSW.
+//Граф вместе с векторами сохраняется в файл; при старте файл загружается и сверяется с БД по хешу текста,
+//заново считаются векторы только изменённых записей
+@ApplicationScoped
+public class FAQVectorIndex extends FAQIndex {
+
+    private static final int FILE_MAGIC = 0x46415156;
+    private static final int FILE_FORMAT = 1;
+    private static final int MAX_CONNECTIONS = 16;
+    private static final int EF_CONSTRUCTION = 100;
+    private static final int MIN_EF_SEARCH = 50;
+    //Пересобирать граф, когда удалённых узлов не меньше этого числа и больше половины всех узлов
+    private static final int MIN_DELETED_TO_COMPACT = 256;
+    private static final long SAVE_DELAY_MILLS = 5000;
+
+    private final Logger logger = Logger.getLogger(FAQVectorIndex.class);
+
+    @ConfigProperty(name = "maxbot.vector-index.path", defaultValue = "data/faq-vectors.bin")
+    String path;
+
+    private HnswGraph graph = newGraph();
+    //Данные записей по номеру узла графа
+    private long[] nodeFaqIds = new long[0];
+    private long[] nodeHashes = new long[0];
+    private int[] nodeThemeIds = new int[0];
+    private String[] nodeQuestions = new String[0];
+    private LongIntHashMap nodesByFaqId = new LongIntHashMap();
+    //Увеличивается при каждом изменении графа; уплотнение проверяет, что граф не менялся, пока строилась копия
+    private long modifications;
+    private volatile boolean compactPending;
+
+    //Узлы, подтверждённые текущей полной загрузкой
+    private BitSet confirmed;
+
+    private final AtomicBoolean saveScheduled = new AtomicBoolean();
+    private volatile boolean unsaved;
+
+    private final LongAdder queries = new LongAdder();
+    private final LongAdder embedded = new LongAdder();
+    private final LongAdder reused = new LongAdder();
+    private final LongAdder compactions = new LongAdder();
+
+    void onStart(@Observes StartupEvent event) {
+        load();
+        start();
+    }
+
+    void onShutdown(@Observes ShutdownEvent event) {
+        if (unsaved) {
+            save();
+        }
+    }
+
+    void onFAQChanged(@Observes FAQChangedEvent event) {
+        applyChange(event);
+    }
+
+    void onThemeChanged(@Observes ThemeChangedEvent event) {
+        applyChange(event);
+    }
+
+    //Найти до limit вопросов FAQ, близких по смыслу к тексту
+    public Uni<List<FAQSuggestionDTO>> findSimilar(String text, int limit) {
+        if (text == null || text.isBlank()) {
+            return Uni.createFrom().failure(()->new IllegalArgumentException("Text cannot be null or empty"));
+        }
+        if (text.length() > Constants.MAX_QUESTION_LENGTH) {
+            return Uni.createFrom().failure(()->new IllegalArgumentException("Text cannot exceed " + Constants.MAX_QUESTION_LENGTH + " characters"));
+        }
+        if (limit <= 0 || limit > Constants.SEARCH_MAX_LIMIT) {
+            return Uni.createFrom().failure(()->new IllegalArgumentException("Limit must be between 1 and " + Constants.SEARCH_MAX_LIMIT));
+        }
+        return read(()->findSimilarLoaded(text, limit));
+    }
+
+    private List<FAQSuggestionDTO> findSimilarLoaded(String text, int limit) {
+        queries.increment();
+        float[] query = TextEmbedder.embed(text);
+        lock.readLock().lock();
+        try {
+            HnswGraph.SearchResult result = graph.search(query, limit, Math.max(MIN_EF_SEARCH, limit * 4));
+            List<FAQSuggestionDTO> similar = new ArrayList<>(result.nodes().length);
+            for (int i = 0; i < result.nodes().length; i++) {
+                int node = result.nodes()[i];
+                if (result.scores()[i] <= 0) {
+                    break;
+                }
+                similar.add(new FAQSuggestionDTO(nodeFaqIds[node], nodeQuestions[node],
+                        Math.round(result.scores()[i] * 1000) / 1000.0));
+            }
+            return similar;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    protected void clear() {
+        confirmed = new BitSet(graph.size());
+    }
+
+    @Override
+    protected void add(FAQ faq) {
+        modifications++;
+        long hash = TextEmbedder.contentHash(faq.getQuestion());
+        int themeId = faq.getTheme() != null ? faq.getTheme().getId() : 0;
+        int node = nodesByFaqId.get(faq.getId());
+        if (node != LongIntHashMap.MISSING && nodeHashes[node] == hash) {
+            //Текст не менялся - вектор и связи в графе остаются прежними
+            nodeThemeIds[node] = themeId;
+            nodeQuestions[node] = faq.getQuestion();
+            markConfirmed(node);
+            reused.increment();
+            return;
+        }
+        if (node != LongIntHashMap.MISSING) {
+            remove(faq.getId());
+        }
+        node = graph.add(TextEmbedder.embed(faq.getQuestion()));
+        embedded.increment();
+        setNode(node, faq.getId(), hash, themeId, faq.getQuestion());
+        markConfirmed(node);
+        changed();
+    }
+
+    @Override
+    protected void afterLoad() {
+        //Записи из файла, которых больше нет в БД
+        List<Long> missing = new ArrayList<>();
+        for (int node = 0; node < graph.size(); node++) {
+            if (!graph.isDeleted(node) && !confirmed.get(node)) {
+                missing.add(nodeFaqIds[node]);
+            }
+        }
+        confirmed = null;
+        missing.forEach(this::remove);
+    }
+
+    @Override
+    protected void remove(Long faqId) {
+        int node = nodesByFaqId.get(faqId);
+        if (node == LongIntHashMap.MISSING) {
+            return;
+        }
+        nodesByFaqId.remove(faqId);
+        graph.delete(node);
+        nodeQuestions[node] = null;
+        modifications++;
+        if (needsCompaction()) {
+            compactPending = true;
+        }
+        changed();
+    }
+
+    @Override
+    protected List<Long> idsOfTheme(Integer themeId) {
+        List<Long> ids = new ArrayList<>();
+        for (int node = 0; node < graph.size(); node++) {
+            if (!graph.isDeleted(node) && nodeThemeIds[node] == themeId) {
+                ids.add(nodeFaqIds[node]);
+            }
+        }
+        return ids;
+    }
+
+    private void markConfirmed(int node) {
+        if (confirmed != null) {
+            confirmed.set(node);
+        }
+    }
+
+    private void setNode(int node, long faqId, long hash, int themeId, String question) {
+        if (node >= nodeFaqIds.length) {
+            int capacity = Math.max(node + 1, nodeFaqIds.length * 2);
+            nodeFaqIds = Arrays.copyOf(nodeFaqIds, capacity);
+            nodeHashes = Arrays.copyOf(nodeHashes, capacity);
+            nodeThemeIds = Arrays.copyOf(nodeThemeIds, capacity);
+            nodeQuestions = Arrays.copyOf(nodeQuestions, capacity);
+        }
+        nodeFaqIds[node] = faqId;
+        nodeHashes[node] = hash;
+        nodeThemeIds[node] = themeId;
+        nodeQuestions[node] = question;
+        nodesByFaqId.put(faqId, node);
+    }
+
+    @Override
+    protected void afterChanges() {
+        if (compactPending) {
+            compact();
+        }
+    }
+
+    private boolean needsCompaction() {
+        return graph.deletedCount() >= MIN_DELETED_TO_COMPACT && graph.deletedCount() * 2 > graph.size();
+    }
+
+    //Перестроить граф только из живых узлов. Под блокировкой чтения копируются живые узлы, новый граф строится
+    //без блокировки (поиск в это время идёт по старому) и подменяется под блокировкой записи.
+    //Если граф за это время изменился (полное перестроение), результат отбрасывается и уплотнение повторится после
+    //следующих изменений
+    private void compact() {
+        float[][] vectors;
+        long[] faqIds;
+        long[] hashes;
+        int[] themeIds;
+        String[] questions;
+        long seen;
+        lock.readLock().lock();
+        try {
+            if (!needsCompaction()) {
+                compactPending = false;
+                return;
+            }
+            int live = graph.size() - graph.deletedCount();
+            vectors = new float[live][];
+            faqIds = new long[live];
+            hashes = new long[live];
+            themeIds = new int[live];
+            questions = new String[live];
+            int moved = 0;
+            for (int node = 0; node < graph.size(); node++) {
+                if (graph.isDeleted(node)) {
+                    continue;
+                }
+                vectors[moved] = graph.vector(node);
+                faqIds[moved] = nodeFaqIds[node];
+                hashes[moved] = nodeHashes[node];
+                themeIds[moved] = nodeThemeIds[node];
+                questions[moved] = nodeQuestions[node];
+                moved++;
+            }
+            seen = modifications;
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        HnswGraph compacted = newGraph();
+        LongIntHashMap compactedNodes = new LongIntHashMap();
+        for (int i = 0; i < vectors.length; i++) {
+            //Узлы нового графа нумеруются подряд, номер совпадает с индексом в скопированных массивах
+            compactedNodes.put(faqIds[i], compacted.add(vectors[i]));
+        }
+
+        lock.writeLock().lock();
+        try {
+            if (modifications != seen) {
+                return;
+            }
+            graph = compacted;
+            nodeFaqIds = faqIds;
+            nodeHashes = hashes;
+            nodeThemeIds = themeIds;
+            nodeQuestions = questions;
+            nodesByFaqId = compactedNodes;
+            modifications++;
+            compactPending = false;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        compactions.increment();
+        changed();
+    }
+
+    private static HnswGraph newGraph() {
+        return new HnswGraph(TextEmbedder.DIMENSION, MAX_CONNECTIONS, EF_CONSTRUCTION);
+    }
+
+    //Отложенное сохранение: несколько изменений подряд сохраняются одной записью файла
+    private void changed() {
+        unsaved = true;
+        if (saveScheduled.compareAndSet(false, true)) {
+            Infrastructure.getDefaultWorkerPool().schedule(()->{
+                saveScheduled.set(false);
+                save();
+            }, SAVE_DELAY_MILLS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void load() {
+        Path file = Path.of(path);
+        if (!Files.exists(file)) {
+            return;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != FILE_MAGIC || in.readInt() != FILE_FORMAT || in.readInt() != TextEmbedder.VERSION) {
+                logger.warnf("Файл векторного индекса %s другой версии, индекс будет построен заново", file);
+                return;
+            }
+            HnswGraph loaded = HnswGraph.read(in);
+            lock.writeLock().lock();
+            try {
+                graph = loaded;
+                modifications++;
+                nodesByFaqId.clear();
+                nodeFaqIds = new long[0];
+                nodeHashes = new long[0];
+                nodeThemeIds = new int[0];
+                nodeQuestions = new String[0];
+                for (int node = 0; node < loaded.size(); node++) {
+                    long faqId = in.readLong();
+                    long hash = in.readLong();
+                    int themeId = in.readInt();
+                    String question = in.readBoolean() ? in.readUTF() : null;
+                    setNode(node, faqId, hash, themeId, question);
+                    if (loaded.isDeleted(node)) {
+                        nodesByFaqId.remove(faqId);
+                    }
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+            logger.infof("Векторный индекс загружен из %s: %d узлов", file, loaded.size());
+        } catch (IOException | RuntimeException e) {
+            lock.writeLock().lock();
+            try {
+                graph = newGraph();
+                nodesByFaqId.clear();
+            } finally {
+                lock.writeLock().unlock();
+            }
+            logger.warnf(e, "Не удалось прочитать файл векторного индекса %s, индекс будет построен заново", file);
+        }
+    }
+
+    //Под блокировкой снимается копия графа и данных узлов, файл пишется уже без неё: поиск и применение изменений
+    //не ждут записи на диск. synchronized - чтобы более старая копия не перезаписала файл после более новой
+    private synchronized void save() {
+        HnswGraph snapshot;
+        long[] faqIds;
+        long[] hashes;
+        int[] themeIds;
+        String[] questions;
+        lock.readLock().lock();
+        try {
+            unsaved = false;
+            snapshot = graph.copy();
+            faqIds = Arrays.copyOf(nodeFaqIds, snapshot.size());
+            hashes = Arrays.copyOf(nodeHashes, snapshot.size());
+            themeIds = Arrays.copyOf(nodeThemeIds, snapshot.size());
+            questions = Arrays.copyOf(nodeQuestions, snapshot.size());
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        Path file = Path.of(path);
+        try {
+            Path parent = file.toAbsolutePath().getParent();
+            Files.createDirectories(parent);
+            Path temp = Files.createTempFile(parent, file.getFileName().toString(), ".tmp");
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+                out.writeInt(FILE_MAGIC);
+                out.writeInt(FILE_FORMAT);
+                out.writeInt(TextEmbedder.VERSION);
+                snapshot.write(out);
+                for (int node = 0; node < snapshot.size(); node++) {
+                    out.writeLong(faqIds[node]);
+                    out.writeLong(hashes[node]);
+                    out.writeInt(themeIds[node]);
+                    out.writeBoolean(questions[node] != null);
+                    if (questions[node] != null) {
+                        out.writeUTF(questions[node]);
+                    }
+                }
+            }
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            unsaved = true;
+            logger.warnf(e, "Не удалось сохранить векторный индекс в %s", file);
+        }
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        lock.readLock().lock();
+        try {
+            stats.put("documents", graph.size() - graph.deletedCount());
+            stats.put("deletedNodes", graph.deletedCount());
+        } finally {
+            lock.readLock().unlock();
+        }
+        putStats(stats);
+        stats.put("queries", queries.sum());
+        stats.put("embedded", embedded.sum());
+        stats.put("reused", reused.sum());
+        stats.put("compactions", compactions.sum());
+        stats.put("unsaved", unsaved);
+        return stats;
+    }
+}
@@ -0,0 +1,406 @@
+package ru.search;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Random;
+
+//Граф HNSW для поиска ближайших векторов по косинусному сходству (векторы нормированы).
+//Векторы и связи хранятся в примитивных массивах, удалённые узлы только помечаются и продолжают участвовать в обходе.
+//Не потокобезопасен, синхронизация на стороне владельца
+final class HnswGraph {
+
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private final int dimension;
+    private final int maxConnections;
+    private final int maxConnectionsLevel0;
+    private final int efConstruction;
+    private final double levelMultiplier;
+    private final Random random = new Random(42);
+
+    private float[] vectors;
+    private int[] levels;
+    //Нулевой уровень: на узел блок из maxConnectionsLevel0 + 1 чисел, первое - количество соседей
+    private int[] links0;
+    //Верхние уровни: на узел массив из levels[node] блоков по maxConnections + 1 чисел
+    private int[][] upperLinks;
+    private final BitSet deleted = new BitSet();
+    private int size;
+    private int deletedCount;
+    private int entryPoint = -1;
+    private int maxLevel = -1;
+
+    record SearchResult(int[] nodes, float[] scores) {}
+
+    HnswGraph(int dimension, int maxConnections, int efConstruction) {
+        this.dimension = dimension;
+        this.maxConnections = maxConnections;
+        this.maxConnectionsLevel0 = maxConnections * 2;
+        this.efConstruction = efConstruction;
+        this.levelMultiplier = 1 / Math.log(maxConnections);
+        this.vectors = new float[INITIAL_CAPACITY * dimension];
+        this.levels = new int[INITIAL_CAPACITY];
+        this.links0 = new int[INITIAL_CAPACITY * (maxConnectionsLevel0 + 1)];
+        this.upperLinks = new int[INITIAL_CAPACITY][];
+    }
+
+    int size() {
+        return size;
+    }
+
+    int deletedCount() {
+        return deletedCount;
+    }
+
+    boolean isDeleted(int node) {
+        return deleted.get(node);
+    }
+
+    float[] vector(int node) {
+        return Arrays.copyOfRange(vectors, node * dimension, (node + 1) * dimension);
+    }
+
+    //Добавить вектор, возвращает номер узла
+    int add(float[] vector) {
+        ensureCapacity(size + 1);
+        int node = size++;
+        System.arraycopy(vector, 0, vectors, node * dimension, dimension);
+        int level = (int) (-Math.log(1 - random.nextDouble()) * levelMultiplier);
+        levels[node] = level;
+        upperLinks[node] = level > 0 ? new int[level * (maxConnections + 1)] : null;
+        if (entryPoint < 0) {
+            entryPoint = node;
+            maxLevel = level;
+            return node;
+        }
+
+        int current = entryPoint;
+        for (int l = maxLevel; l > level; l--) {
+            current = greedyClosest(vector, current, l);
+        }
+        for (int l = Math.min(level, maxLevel); l >= 0; l--) {
+            NodeHeap found = searchLayer(vector, current, efConstruction, l);
+            int limit = l == 0 ? maxConnectionsLevel0 : maxConnections;
+            int[] neighbours = found.bestFirst(limit, deleted);
+            for (int neighbour : neighbours) {
+                appendLink(node, neighbour, l);
+                connect(neighbour, node, l);
+            }
+            current = found.best();
+        }
+        if (level > maxLevel) {
+            maxLevel = level;
+            entryPoint = node;
+        }
+        return node;
+    }
+
+    void delete(int node) {
+        if (!deleted.get(node)) {
+            deleted.set(node);
+            deletedCount++;
+        }
+    }
+
+    //k ближайших неудалённых узлов по убыванию сходства
+    SearchResult search(float[] query, int k, int ef) {
+        if (entryPoint < 0) {
+            return new SearchResult(new int[0], new float[0]);
+        }
+        int current = entryPoint;
+        for (int l = maxLevel; l > 0; l--) {
+            current = greedyClosest(query, current, l);
+        }
+        NodeHeap found = searchLayer(query, current, Math.max(ef, k), 0);
+        int[] nodes = found.bestFirst(k, deleted);
+        float[] scores = new float[nodes.length];
+        for (int i = 0; i < nodes.length; i++) {
+            scores[i] = similarity(query, nodes[i]);
+        }
+        return new SearchResult(nodes, scores);
+    }
+
+    private int greedyClosest(float[] query, int start, int level) {
+        int current = start;
+        float best = similarity(query, current);
+        boolean improved = true;
+        while (improved) {
+            improved = false;
+            int[] links = links(current, level);
+            int offset = offset(current, level);
+            for (int i = 1; i <= links[offset]; i++) {
+                int neighbour = links[offset + i];
+                float score = similarity(query, neighbour);
+                if (score > best) {
+                    best = score;
+                    current = neighbour;
+                    improved = true;
+                }
+            }
+        }
+        return current;
+    }
+
+    private NodeHeap searchLayer(float[] query, int start, int ef, int level) {
+        BitSet visited = new BitSet(size);
+        NodeHeap candidates = new NodeHeap(ef * 2);
+        NodeHeap results = new NodeHeap(ef + 1);
+        float startScore = similarity(query, start);
+        visited.set(start);
+        candidates.push(start, -startScore);
+        results.push(start, startScore);
+        while (candidates.size() > 0) {
+            float score = -candidates.topScore();
+            int candidate = candidates.pop();
+            if (results.size() >= ef && score < results.topScore()) {
+                break;
+            }
+            int[] links = links(candidate, level);
+            int offset = offset(candidate, level);
+            for (int i = 1; i <= links[offset]; i++) {
+                int neighbour = links[offset + i];
+                if (visited.get(neighbour)) {
+                    continue;
+                }
+                visited.set(neighbour);
+                float neighbourScore = similarity(query, neighbour);
+                if (results.size() < ef || neighbourScore > results.topScore()) {
+                    candidates.push(neighbour, -neighbourScore);
+                    results.push(neighbour, neighbourScore);
+                    if (results.size() > ef) {
+                        results.pop();
+                    }
+                }
+            }
+        }
+        return results;
+    }
+
+    //Добавить связь from -> to; если соседей уже максимум - оставить самых близких к from
+    private void connect(int from, int to, int level) {
+        int[] links = links(from, level);
+        int offset = offset(from, level);
+        int limit = level == 0 ? maxConnectionsLevel0 : maxConnections;
+        if (links[offset] < limit) {
+            links[offset + 1 + links[offset]++] = to;
+            return;
+        }
+        float[] vector = vector(from);
+        int worst = -1;
+        float worstScore = similarity(vector, to);
+        for (int i = 1; i <= limit; i++) {
+            float score = similarity(vector, links[offset + i]);
+            if (score < worstScore) {
+                worstScore = score;
+                worst = i;
+            }
+        }
+        if (worst > 0) {
+            links[offset + worst] = to;
+        }
+    }
+
+    private void appendLink(int from, int to, int level) {
+        int[] links = links(from, level);
+        int offset = offset(from, level);
+        links[offset + 1 + links[offset]++] = to;
+    }
+
+    private int[] links(int node, int level) {
+        return level == 0 ? links0 : upperLinks[node];
+    }
+
+    private int offset(int node, int level) {
+        return level == 0 ? node * (maxConnectionsLevel0 + 1) : (level - 1) * (maxConnections + 1);
+    }
+
+    private float similarity(float[] query, int node) {
+        int base = node * dimension;
+        float sum = 0;
+        for (int i = 0; i < dimension; i++) {
+            sum += query[i] * vectors[base + i];
+        }
+        return sum;
+    }
+
+    private void ensureCapacity(int required) {
+        if (required <= levels.length) {
+            return;
+        }
+        int capacity = Math.max(required, levels.length * 2);
+        vectors = Arrays.copyOf(vectors, capacity * dimension);
+        levels = Arrays.copyOf(levels, capacity);
+        links0 = Arrays.copyOf(links0, capacity * (maxConnectionsLevel0 + 1));
+        upperLinks = Arrays.copyOf(upperLinks, capacity);
+    }
+
+    //Независимая копия графа, например чтобы записать его в файл без блокировки владельца.
+    //Массивы обрезаются до size, списки соседей верхних уровней копируются: они меняются при добавлении узлов
+    HnswGraph copy() {
+        HnswGraph copy = new HnswGraph(dimension, maxConnections, efConstruction);
+        copy.vectors = Arrays.copyOf(vectors, size * dimension);
+        copy.levels = Arrays.copyOf(levels, size);
+        copy.links0 = Arrays.copyOf(links0, size * (maxConnectionsLevel0 + 1));
+        copy.upperLinks = new int[size][];
+        for (int node = 0; node < size; node++) {
+            copy.upperLinks[node] = upperLinks[node] != null ? upperLinks[node].clone() : null;
+        }
+        copy.deleted.or(deleted);
+        copy.size = size;
+        copy.deletedCount = deletedCount;
+        copy.entryPoint = entryPoint;
+        copy.maxLevel = maxLevel;
+        return copy;
+    }
+
+    void write(DataOutputStream out) throws IOException {
+        out.writeInt(dimension);
+        out.writeInt(maxConnections);
+        out.writeInt(efConstruction);
+        out.writeInt(size);
+        out.writeInt(entryPoint);
+        out.writeInt(maxLevel);
+        for (int node = 0; node < size; node++) {
+            out.writeBoolean(deleted.get(node));
+            out.writeInt(levels[node]);
+            for (int i = 0; i < dimension; i++) {
+                out.writeFloat(vectors[node * dimension + i]);
+            }
+            for (int l = 0; l <= levels[node]; l++) {
+                int[] links = links(node, l);
+                int offset = offset(node, l);
+                out.writeInt(links[offset]);
+                for (int i = 1; i <= links[offset]; i++) {
+                    out.writeInt(links[offset + i]);
+                }
+            }
+        }
+    }
+
+    static HnswGraph read(DataInputStream in) throws IOException {
+        HnswGraph graph = new HnswGraph(in.readInt(), in.readInt(), in.readInt());
+        int size = in.readInt();
+        graph.ensureCapacity(size);
+        graph.entryPoint = in.readInt();
+        graph.maxLevel = in.readInt();
+        for (int node = 0; node < size; node++) {
+            if (in.readBoolean()) {
+                graph.deleted.set(node);
+                graph.deletedCount++;
+            }
+            int level = in.readInt();
+            graph.levels[node] = level;
+            graph.upperLinks[node] = level > 0 ? new int[level * (graph.maxConnections + 1)] : null;
+            for (int i = 0; i < graph.dimension; i++) {
+                graph.vectors[node * graph.dimension + i] = in.readFloat();
+            }
+            for (int l = 0; l <= level; l++) {
+                int[] links = graph.links(node, l);
+                int offset = graph.offset(node, l);
+                int count = in.readInt();
+                links[offset] = count;
+                for (int i = 1; i <= count; i++) {
+                    links[offset + i] = in.readInt();
+                }
+            }
+            graph.size++;
+        }
+        return graph;
+    }
+
+    //Двоичная куча с минимальным score наверху на примитивных массивах
+    private static final class NodeHeap {
+
+        private int[] nodes;
+        private float[] scores;
+        private int size;
+
+        NodeHeap(int capacity) {
+            nodes = new int[Math.max(capacity, 4)];
+            scores = new float[nodes.length];
+        }
+
+        int size() {
+            return size;
+        }
+
+        float topScore() {
+            return scores[0];
+        }
+
+        void push(int node, float score) {
+            if (size == nodes.length) {
+                nodes = Arrays.copyOf(nodes, size * 2);
+                scores = Arrays.copyOf(scores, size * 2);
+            }
+            int i = size++;
+            while (i > 0) {
+                int parent = (i - 1) >>> 1;
+                if (scores[parent] <= score) {
+                    break;
+                }
+                nodes[i] = nodes[parent];
+                scores[i] = scores[parent];
+                i = parent;
+            }
+            nodes[i] = node;
+            scores[i] = score;
+        }
+
+        int pop() {
+            int top = nodes[0];
+            int lastNode = nodes[--size];
+            float lastScore = scores[size];
+            int i = 0;
+            while (true) {
+                int child = 2 * i + 1;
+                if (child >= size) {
+                    break;
+                }
+                if (child + 1 < size && scores[child + 1] < scores[child]) {
+                    child++;
+                }
+                if (scores[child] >= lastScore) {
+                    break;
+                }
+                nodes[i] = nodes[child];
+                scores[i] = scores[child];
+                i = child;
+            }
+            nodes[i] = lastNode;
+            scores[i] = lastScore;
+            return top;
+        }
+
+        //Узел с наибольшим score
+        int best() {
+            int best = 0;
+            for (int i = 1; i < size; i++) {
+                if (scores[i] > scores[best]) {
+                    best = i;
+                }
+            }
+            return nodes[best];
+        }
+
+        //До limit узлов по убыванию score, исключая отмеченные в skip
+        int[] bestFirst(int limit, BitSet skip) {
+            Integer[] order = new Integer[size];
+            for (int i = 0; i < size; i++) {
+                order[i] = i;
+            }
+            Arrays.sort(order, (a, b)->Float.compare(scores[b], scores[a]));
+            int[] result = new int[Math.min(limit, size)];
+            int count = 0;
+            for (int i = 0; i < size && count < result.length; i++) {
+                if (!skip.get(nodes[order[i]])) {
+                    result[count++] = nodes[order[i]];
+                }
+            }
+            return Arrays.copyOf(result, count);
+        }
+    }
+}
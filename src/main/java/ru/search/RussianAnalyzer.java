@@ -0,0 +1,94 @@
+package ru.search;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+//Разбор текста на термы: нижний регистр, ё->е, стоп-слова, отсечение окончаний
+public final class RussianAnalyzer {
+
+    private static final int MIN_STEM_LENGTH = 3;
+
+    private static final Set<String> STOP_WORDS = Set.of(
+            "и", "в", "во", "не", "на", "с", "со", "что", "как", "а", "то", "все", "она", "так", "его", "но",
+            "да", "ты", "к", "ко", "у", "же", "вы", "за", "бы", "по", "ее", "мне", "было", "вот", "от", "меня",
+            "о", "об", "из", "ему", "ли", "если", "или", "ни", "быть", "был", "до", "для", "нас", "их", "мы",
+            "я", "он", "они", "это", "этот", "эта", "эти", "при", "там", "тут", "где", "уже", "кто", "чем", "мой"
+    );
+
+    //Окончания от длинных к коротким, снимается первое подошедшее
+    private static final String[] ENDINGS = {
+            "иями", "ями", "ами", "ией", "иям", "ием", "иях", "ого", "его", "ому", "ему", "ыми", "ими",
+            "ешь", "ишь", "ете", "ите", "ать", "ять", "ить", "еть", "уть",
+            "ых", "их", "ой", "ей", "ий", "ый", "ая", "яя", "ое", "ее", "ую", "юю", "ом", "ем", "ам", "ям",
+            "ах", "ях", "ов", "ев", "ию", "ья", "ье", "ия", "ие", "ии", "ет", "ут", "ют", "ит", "ят", "ат",
+            "ла", "ли", "ло", "ть",
+            "а", "я", "о", "е", "ы", "и", "у", "ю", "ь", "й", "л"
+    };
+
+    private RussianAnalyzer() {}
+
+    //Приведение к нижнему регистру и замена ё на е
+    public static String normalize(String text) {
+        return text.toLowerCase(Locale.ROOT).replace('ё', 'е');
+    }
+
+    //Слова текста после нормализации, без стемминга и стоп-слов
+    public static List<String> words(String text) {
+        List<String> words = new ArrayList<>();
+        if (text == null) {
+            return words;
+        }
+        String normalized = normalize(text);
+        int start = -1;
+        for (int i = 0; i <= normalized.length(); i++) {
+            boolean letter = i < normalized.length() && Character.isLetterOrDigit(normalized.charAt(i));
+            if (letter && start < 0) {
+                start = i;
+            } else if (!letter && start >= 0) {
+                words.add(normalized.substring(start, i));
+                start = -1;
+            }
+        }
+        return words;
+    }
+
+    //Термы для индекса и запроса
+    public static List<String> terms(String text) {
+        List<String> words = words(text);
+        List<String> terms = new ArrayList<>(words.size());
+        for (String word : words) {
+            if (!STOP_WORDS.contains(word)) {
+                terms.add(stem(word));
+            }
+        }
+        return terms;
+    }
+
+    //Лёгкий стемминг: возвратная частица и одно окончание, основа не короче MIN_STEM_LENGTH
+    public static String stem(String word) {
+        if (word.length() <= MIN_STEM_LENGTH || !isCyrillic(word)) {
+            return word;
+        }
+        String stem = word;
+        if ((stem.endsWith("ся") || stem.endsWith("сь")) && stem.length() - 2 >= MIN_STEM_LENGTH) {
+            stem = stem.substring(0, stem.length() - 2);
+        }
+        for (String ending : ENDINGS) {
+            if (stem.endsWith(ending) && stem.length() - ending.length() >= MIN_STEM_LENGTH) {
+                return stem.substring(0, stem.length() - ending.length());
+            }
+        }
+        return stem;
+    }
+
+    private static boolean isCyrillic(String word) {
+        for (int i = 0; i < word.length(); i++) {
+            if (Character.UnicodeBlock.of(word.charAt(i)) != Character.UnicodeBlock.CYRILLIC) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,61 @@
+package ru.search;
+
+import java.util.List;
+
+//Локальные векторы текста без внешних сервисов: хешированные основы слов и символьные n-граммы слов,
+//нормированные по длине, поэтому скалярное произведение двух векторов - косинусное сходство
+final class TextEmbedder {
+
+    static final int DIMENSION = 256;
+    //Меняется при любом изменении алгоритма, чтобы не использовать сохранённые векторы старой версии
+    static final int VERSION = 1;
+
+    private static final float WORD_WEIGHT = 1.0f;
+    private static final float NGRAM_WEIGHT = 0.5f;
+
+    private TextEmbedder() {}
+
+    static float[] embed(String text) {
+        float[] vector = new float[DIMENSION];
+        for (String term : RussianAnalyzer.terms(text)) {
+            addFeature(vector, "w:" + term, WORD_WEIGHT);
+        }
+        List<String> words = RussianAnalyzer.words(text);
+        for (String word : words) {
+            String padded = " " + word + " ";
+            for (int n = 3; n <= 4; n++) {
+                for (int i = 0; i + n <= padded.length(); i++) {
+                    addFeature(vector, padded.substring(i, i + n), NGRAM_WEIGHT);
+                }
+            }
+        }
+        double norm = 0;
+        for (float value : vector) {
+            norm += value * value;
+        }
+        if (norm > 0) {
+            float scale = (float) (1 / Math.sqrt(norm));
+            for (int i = 0; i < DIMENSION; i++) {
+                vector[i] *= scale;
+            }
+        }
+        return vector;
+    }
+
+    //Хеш содержимого для сверки сохранённого вектора с текущим текстом
+    static long contentHash(String text) {
+        long hash = 0xcbf29ce484222325L ^ VERSION;
+        for (int i = 0; i < text.length(); i++) {
+            hash ^= text.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    //Знак берётся из старшего бита хеша, чтобы коллизии в среднем гасили друг друга
+    private static void addFeature(float[] vector, String feature, float weight) {
+        int hash = feature.hashCode() * 0x9E3779B1;
+        hash ^= hash >>> 15;
+        vector[hash & (DIMENSION - 1)] += hash < 0 ? -weight : weight;
+    }
+}
@@ -0,0 +1,332 @@
+package ru.search;
+
+import io.quarkus.runtime.StartupEvent;
+import io.smallrye.mutiny.Uni;
+import io.smallrye.mutiny.infrastructure.Infrastructure;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import ru.Constants;
+import ru.dto.CompletionDTO;
+import ru.entities.FAQ;
+import ru.entities.Theme;
+import ru.events.FAQChangedEvent;
+import ru.events.ThemeChangedEvent;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+//Автодополнение по вопросам FAQ и названиям тем.
+//Ключи - нормализованный текст, начиная с каждого слова, в отсортированном массиве; диапазон по префиксу ищется бинарным поиском,
+//лучшие по весу варианты достаются из дерева отрезков за O(limit * log n).
+//Массивы неизменяемы и пересобираются в фоне после изменений, до пересборки отвечает предыдущий снимок
+@ApplicationScoped
+public class TypeaheadIndex extends FAQIndex {
+
+    public static final String FAQ_TYPE = "faq";
+    public static final String THEME_TYPE = "theme";
+
+    //Длиннее ключи не нужны для префиксного поиска, а память на суффиксы растёт квадратично от длины вопроса
+    private static final int MAX_KEY_LENGTH = 64;
+
+    private record Source(String type, long id, String text, Integer themeId) {}
+
+    private record Key(String key, int entry) {}
+
+    private record Snapshot(String[] keys, int[] keyEntries, int[] tree, int treeSize,
+                            String[] types, long[] ids, String[] texts, long[] weights) {}
+
+    //Исходные данные, меняются под lock.writeLock()
+    private final HashMap<Long, Source> faqs = new HashMap<>();
+    private final HashMap<Integer, Source> themes = new HashMap<>();
+
+    //Вес популярности FAQ по id, задаётся снаружи
+    private final ConcurrentHashMap<Long, Long> faqWeights = new ConcurrentHashMap<>();
+
+    private volatile Snapshot snapshot;
+    private volatile boolean dirty = true;
+    private final AtomicBoolean buildScheduled = new AtomicBoolean();
+    private final Object buildMonitor = new Object();
+
+    private final LongAdder queries = new LongAdder();
+    private final LongAdder builds = new LongAdder();
+
+    void onStart(@Observes StartupEvent event) {
+        start();
+    }
+
+    void onFAQChanged(@Observes FAQChangedEvent event) {
+        applyChange(event);
+    }
+
+    void onThemeChanged(@Observes ThemeChangedEvent event) {
+        applyChange(event);
+    }
+
+    //Варианты дополнения для введённого текста, по убыванию веса
+    public Uni<List<CompletionDTO>> complete(String prefix, int limit) {
+        if (prefix == null || prefix.isBlank()) {
+            return Uni.createFrom().failure(()->new IllegalArgumentException("Prefix cannot be null or empty"));
+        }
+        if (prefix.length() > Constants.MAX_QUESTION_LENGTH) {
+            return Uni.createFrom().failure(()->new IllegalArgumentException("Prefix cannot exceed " + Constants.MAX_QUESTION_LENGTH + " characters"));
+        }
+        if (limit <= 0 || limit > Constants.SEARCH_MAX_LIMIT) {
+            return Uni.createFrom().failure(()->new IllegalArgumentException("Limit must be between 1 and " + Constants.SEARCH_MAX_LIMIT));
+        }
+        return read(()->completeLoaded(prefix, limit));
+    }
+
+    //Увеличить вес популярности FAQ
+    public void addWeight(long faqId, long delta) {
+        faqWeights.merge(faqId, delta, Long::sum);
+        markDirty();
+    }
+
+    //Заменить веса популярности FAQ целиком
+    public void setWeights(Map<Long, Long> weights) {
+        faqWeights.clear();
+        faqWeights.putAll(weights);
+        markDirty();
+    }
+
+    List<CompletionDTO> completeLoaded(String prefix, int limit) {
+        queries.increment();
+        Snapshot current = snapshot;
+        if (current == null) {
+            current = build();
+        }
+        String query = key(prefix);
+        if (query.isEmpty()) {
+            return List.of();
+        }
+        if (!Character.isLetterOrDigit(prefix.charAt(prefix.length() - 1)) && query.length() < MAX_KEY_LENGTH) {
+            //Введённое слово закончено - дополняем только следующими словами
+            query = query + " ";
+        }
+        int from = lowerBound(current.keys(), query);
+        int to = lowerBound(current.keys(), query + Character.MAX_VALUE);
+        if (from >= to) {
+            return List.of();
+        }
+
+        //Узлы дерева, покрывающие диапазон, в куче по лучшему рангу внутри узла
+        PriorityQueue<Long> nodes = new PriorityQueue<>();
+        int[] tree = current.tree();
+        for (int lo = from + current.treeSize(), hi = to + current.treeSize(); lo < hi; lo >>= 1, hi >>= 1) {
+            if ((lo & 1) == 1) {
+                nodes.add(node(tree, lo++));
+            }
+            if ((hi & 1) == 1) {
+                nodes.add(node(tree, --hi));
+            }
+        }
+        List<CompletionDTO> completions = new ArrayList<>(limit);
+        Set<Integer> seen = new HashSet<>();
+        while (!nodes.isEmpty() && completions.size() < limit) {
+            int index = (int) (long) nodes.poll();
+            if (index < current.treeSize()) {
+                nodes.add(node(tree, 2 * index));
+                nodes.add(node(tree, 2 * index + 1));
+                continue;
+            }
+            int entry = current.keyEntries()[index - current.treeSize()];
+            if (seen.add(entry)) {
+                completions.add(new CompletionDTO(current.types()[entry], current.ids()[entry],
+                        current.texts()[entry], current.weights()[entry]));
+            }
+        }
+        return completions;
+    }
+
+    //Ранг в старших битах, номер узла в младших: куча отдаёт сначала лучший ранг
+    private static long node(int[] tree, int index) {
+        return ((long) tree[index] << 32) | index;
+    }
+
+    private static int lowerBound(String[] keys, String key) {
+        int lo = 0;
+        int hi = keys.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (keys[mid].compareTo(key) < 0) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    private static String key(String text) {
+        String key = String.join(" ", RussianAnalyzer.words(text));
+        return key.length() > MAX_KEY_LENGTH ? key.substring(0, MAX_KEY_LENGTH) : key;
+    }
+
+    private void markDirty() {
+        dirty = true;
+        if (snapshot != null && buildScheduled.compareAndSet(false, true)) {
+            Infrastructure.getDefaultWorkerPool().execute(()->{
+                buildScheduled.set(false);
+                if (dirty) {
+                    build();
+                }
+            });
+        }
+    }
+
+    //Собрать новый снимок из исходных данных
+    private Snapshot build() {
+        synchronized (buildMonitor) {
+            List<Source> sources;
+            lock.readLock().lock();
+            try {
+                dirty = false;
+                sources = new ArrayList<>(themes.size() + faqs.size());
+                sources.addAll(themes.values());
+                sources.addAll(faqs.values());
+            } finally {
+                lock.readLock().unlock();
+            }
+
+            int count = sources.size();
+            String[] types = new String[count];
+            long[] ids = new long[count];
+            String[] texts = new String[count];
+            long[] weights = new long[count];
+            Map<Integer, Long> faqsPerTheme = new HashMap<>();
+            for (Source source : sources) {
+                if (source.themeId() != null) {
+                    faqsPerTheme.merge(source.themeId(), 1L, Long::sum);
+                }
+            }
+            List<Key> keys = new ArrayList<>();
+            for (int entry = 0; entry < count; entry++) {
+                Source source = sources.get(entry);
+                types[entry] = source.type();
+                ids[entry] = source.id();
+                texts[entry] = source.text();
+                //Вес темы - количество FAQ в ней
+                weights[entry] = THEME_TYPE.equals(source.type())
+                        ? faqsPerTheme.getOrDefault((int) source.id(), 0L)
+                        : faqWeights.getOrDefault(source.id(), 0L);
+                String text = String.join(" ", RussianAnalyzer.words(source.text()));
+                Set<String> entryKeys = new HashSet<>();
+                int start = 0;
+                while (start < text.length()) {
+                    String key = text.substring(start, Math.min(text.length(), start + MAX_KEY_LENGTH));
+                    if (entryKeys.add(key)) {
+                        keys.add(new Key(key, entry));
+                    }
+                    int space = text.indexOf(' ', start);
+                    start = space < 0 ? text.length() : space + 1;
+                }
+            }
+            keys.sort(Comparator.comparing(Key::key));
+
+            //Ранг записи: 0 - лучшая (больший вес, затем более короткий текст)
+            Integer[] order = new Integer[count];
+            for (int i = 0; i < count; i++) {
+                order[i] = i;
+            }
+            Arrays.sort(order, Comparator.<Integer>comparingLong(i->-weights[i])
+                    .thenComparingInt(i->texts[i].length())
+                    .thenComparing(i->texts[i]));
+            int[] ranks = new int[count];
+            for (int rank = 0; rank < count; rank++) {
+                ranks[order[rank]] = rank;
+            }
+
+            String[] keyStrings = new String[keys.size()];
+            int[] keyEntries = new int[keys.size()];
+            int treeSize = 1;
+            while (treeSize < keys.size()) {
+                treeSize <<= 1;
+            }
+            int[] tree = new int[2 * treeSize];
+            Arrays.fill(tree, Integer.MAX_VALUE);
+            for (int i = 0; i < keys.size(); i++) {
+                keyStrings[i] = keys.get(i).key();
+                keyEntries[i] = keys.get(i).entry();
+                tree[treeSize + i] = ranks[keyEntries[i]];
+            }
+            for (int i = treeSize - 1; i > 0; i--) {
+                tree[i] = Math.min(tree[2 * i], tree[2 * i + 1]);
+            }
+
+            Snapshot built = new Snapshot(keyStrings, keyEntries, tree, treeSize, types, ids, texts, weights);
+            snapshot = built;
+            builds.increment();
+            return built;
+        }
+    }
+
+    @Override
+    protected void clear() {
+        faqs.clear();
+        themes.clear();
+        markDirty();
+    }
+
+    @Override
+    protected void add(FAQ faq) {
+        faqs.put(faq.getId(), new Source(FAQ_TYPE, faq.getId(), faq.getQuestion(),
+                faq.getTheme() != null ? faq.getTheme().getId() : null));
+        markDirty();
+    }
+
+    @Override
+    protected void remove(Long faqId) {
+        if (faqs.remove(faqId) != null) {
+            markDirty();
+        }
+    }
+
+    @Override
+    protected List<Long> idsOfTheme(Integer themeId) {
+        return faqs.values().stream()
+                .filter(source->themeId.equals(source.themeId()))
+                .map(Source::id)
+                .toList();
+    }
+
+    @Override
+    protected boolean indexesThemes() {
+        return true;
+    }
+
+    @Override
+    protected void addTheme(Theme theme) {
+        themes.put(theme.getId(), new Source(THEME_TYPE, theme.getId(), theme.getName(), null));
+        markDirty();
+    }
+
+    @Override
+    protected void removeTheme(Integer themeId) {
+        if (themes.remove(themeId) != null) {
+            markDirty();
+        }
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        Snapshot current = snapshot;
+        stats.put("entries", current != null ? current.ids().length : 0);
+        stats.put("keys", current != null ? current.keys().length : 0);
+        stats.put("weights", faqWeights.size());
+        putStats(stats);
+        stats.put("snapshotBuilds", builds.sum());
+        stats.put("queries", queries.sum());
+        return stats;
+    }
+}
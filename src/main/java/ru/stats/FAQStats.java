@@ -0,0 +1,134 @@
+package ru.stats;
+
+import io.quarkus.runtime.ShutdownEvent;
+import io.quarkus.runtime.StartupEvent;
+import io.smallrye.mutiny.infrastructure.Infrastructure;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.jboss.logging.Logger;
+import ru.Constants;
+import ru.events.ChangeAction;
+import ru.events.FAQChangedEvent;
+import ru.events.ThemeChangedEvent;
+import ru.repositories.FAQStatsRepository;
+import ru.search.TypeaheadIndex;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+//Счётчики показов и отметок "полезно" по FAQ. Запросы только увеличивают LongAdder в памяти,
+//накопленное периодически прибавляется в FAQ_Stats одной транзакцией и ещё раз при остановке сервиса.
+//Показы считаются по теме: список темы отдаётся целиком (часто из кэша), на все её FAQ показы раздаются при сбросе
+@ApplicationScoped
+public class FAQStats {
+
+    private final Logger logger = Logger.getLogger(FAQStats.class);
+
+    @Inject
+    FAQStatsRepository repo;
+
+    @Inject
+    TypeaheadIndex typeahead;
+
+    @ConfigProperty(name = "maxbot.faq-stats.flush-interval-millis", defaultValue = "30000")
+    long flushIntervalMillis;
+
+    private final ConcurrentHashMap<Integer, LongAdder> themeViews = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Long, LongAdder> helpful = new ConcurrentHashMap<>();
+
+    private ScheduledFuture<?> flushTask;
+
+    private final LongAdder flushes = new LongAdder();
+    private final LongAdder failedFlushes = new LongAdder();
+    private volatile long lastFlushMillis;
+
+    void onStart(@Observes StartupEvent event) {
+        flushTask = Infrastructure.getDefaultWorkerPool().scheduleWithFixedDelay(this::flush,
+                flushIntervalMillis, flushIntervalMillis, TimeUnit.MILLISECONDS);
+        repo.scores().subscribe().with(typeahead::setWeights,
+                failure->logger.warn("Не удалось загрузить популярность FAQ", failure));
+    }
+
+    void onShutdown(@Observes ShutdownEvent event) {
+        if (flushTask != null) {
+            flushTask.cancel(false);
+        }
+        flush();
+    }
+
+    void onFAQChanged(@Observes FAQChangedEvent event) {
+        if (event.action() == ChangeAction.DELETED) {
+            helpful.remove(event.faqId());
+        }
+    }
+
+    void onThemeChanged(@Observes ThemeChangedEvent event) {
+        if (event.action() == ChangeAction.DELETED) {
+            themeViews.remove(event.themeId());
+        }
+    }
+
+    //Список FAQ темы отдан клиенту
+    public void themeServed(Integer themeId) {
+        themeViews.computeIfAbsent(themeId, id->new LongAdder()).increment();
+    }
+
+    //FAQ отмечен полезным
+    public void markHelpful(Long faqId) {
+        helpful.computeIfAbsent(faqId, id->new LongAdder()).increment();
+    }
+
+    //Прибавить накопленное в БД. При ошибке счётчики возвращаются и уйдут со следующим сбросом
+    synchronized void flush() {
+        Map<Integer, Long> views = drain(themeViews);
+        Map<Long, Long> marks = drain(helpful);
+        if (views.isEmpty() && marks.isEmpty()) {
+            return;
+        }
+        long start = System.nanoTime();
+        try {
+            repo.addCounts(views, marks).await().atMost(Duration.ofMillis(Constants.HEAVY_OPERATION_TIMEOUT_MILLS));
+        } catch (RuntimeException e) {
+            //После таймаута транзакция могла и закоммититься, но потерять счётчики хуже, чем посчитать дважды
+            views.forEach((themeId, count)->themeViews.computeIfAbsent(themeId, id->new LongAdder()).add(count));
+            marks.forEach((faqId, count)->helpful.computeIfAbsent(faqId, id->new LongAdder()).add(count));
+            failedFlushes.increment();
+            logger.warn("Не удалось сохранить счётчики FAQ", e);
+            return;
+        }
+        flushes.increment();
+        lastFlushMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        repo.scores().subscribe().with(typeahead::setWeights,
+                failure->logger.warn("Не удалось загрузить популярность FAQ", failure));
+    }
+
+    //Забрать значения счётчиков с обнулением; сами счётчики остаются, чтобы не потерять параллельные увеличения
+    private static <K> Map<K, Long> drain(ConcurrentHashMap<K, LongAdder> counters) {
+        Map<K, Long> values = new HashMap<>();
+        counters.forEach((key, counter)->{
+            long value = counter.sumThenReset();
+            if (value != 0) {
+                values.put(key, value);
+            }
+        });
+        return values;
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("themes", themeViews.size());
+        stats.put("faqs", helpful.size());
+        stats.put("flushes", flushes.sum());
+        stats.put("failedFlushes", failedFlushes.sum());
+        stats.put("lastFlushMillis", lastFlushMillis);
+        return stats;
+    }
+}
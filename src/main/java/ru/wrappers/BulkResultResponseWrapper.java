@@ -0,0 +1,18 @@
+package ru.wrappers;
+
+import org.eclipse.microprofile.openapi.annotations.media.Schema;
+import ru.dto.BulkItemResultDTO;
+
+import java.util.List;
+
+@Schema(description = "Ответ от API, содержащий результат обработки каждого элемента пакетной операции. Содержит текст ошибки в слачае возникновения таковой.")
+public class BulkResultResponseWrapper extends GenericResponseWrapper<List<BulkItemResultDTO>> {
+
+    public BulkResultResponseWrapper(List<BulkItemResultDTO> data) {
+        super(data);
+    }
+
+    public BulkResultResponseWrapper(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,16 @@
+package ru.wrappers;
+
+import org.eclipse.microprofile.openapi.annotations.media.Schema;
+import ru.dto.CatalogChangesDTO;
+
+@Schema(description = "Ответ от API, содержащий изменения каталога после указанной версии. Содержит текст ошибки в слачае возникновения таковой.")
+public class CatalogChangesResponseWrapper extends GenericResponseWrapper<CatalogChangesDTO> {
+
+    public CatalogChangesResponseWrapper(CatalogChangesDTO data) {
+        super(data);
+    }
+
+    public CatalogChangesResponseWrapper(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,16 @@
+package ru.wrappers;
+
+import org.eclipse.microprofile.openapi.annotations.media.Schema;
+import ru.dto.CatalogSnapshotDTO;
+
+@Schema(description = "Ответ от API, содержащий полный снимок каталога. Содержит текст ошибки в слачае возникновения таковой.")
+public class CatalogSnapshotResponseWrapper extends GenericResponseWrapper<CatalogSnapshotDTO> {
+
+    public CatalogSnapshotResponseWrapper(CatalogSnapshotDTO data) {
+        super(data);
+    }
+
+    public CatalogSnapshotResponseWrapper(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,18 @@
+package ru.wrappers;
+
+import org.eclipse.microprofile.openapi.annotations.media.Schema;
+import ru.dto.CompletionDTO;
+
+import java.util.List;
+
+@Schema(description = "Ответ от API, содержащий варианты автодополнения по убыванию популярности. Содержит текст ошибки в слачае возникновения таковой.")
+public class CompletionsResponseWrapper extends GenericResponseWrapper<List<CompletionDTO>> {
+
+    public CompletionsResponseWrapper(List<CompletionDTO> data) {
+        super(data);
+    }
+
+    public CompletionsResponseWrapper(String message) {
+        super(message);
+    }
+}
@@ -1,17 +1,21 @@
 package ru.wrappers;
 
 import org.eclipse.microprofile.openapi.annotations.media.Schema;
-import ru.entities.FAQ;
+import ru.dto.FAQView;
 
 import java.util.List;
 
 @Schema(description = "Ответ от API, содержащий список записей если таковые имеются. Содержит текст ошибки в слачае возникновения таковой.")
-public class FAQListResponseWrapper extends GenericResponseWrapper<List<FAQ>> {
+public class FAQListResponseWrapper extends GenericResponseWrapper<List<FAQView>> {
 
-    public FAQListResponseWrapper(List<FAQ> data) {
+    public FAQListResponseWrapper(List<FAQView> data) {
         super(data);
     }
 
+    public FAQListResponseWrapper(List<FAQView> data, String nextCursor) {
+        super(data, nextCursor);
+    }
+
     public FAQListResponseWrapper(String message) {
         super(message);
     }
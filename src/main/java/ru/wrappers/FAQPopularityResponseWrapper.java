@@ -0,0 +1,18 @@
+package ru.wrappers;
+
+import org.eclipse.microprofile.openapi.annotations.media.Schema;
+import ru.dto.FAQPopularityDTO;
+
+import java.util.List;
+
+@Schema(description = "Ответ от API, содержащий FAQ по убыванию популярности. Содержит текст ошибки в слачае возникновения таковой.")
+public class FAQPopularityResponseWrapper extends GenericResponseWrapper<List<FAQPopularityDTO>> {
+
+    public FAQPopularityResponseWrapper(List<FAQPopularityDTO> data) {
+        super(data);
+    }
+
+    public FAQPopularityResponseWrapper(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,18 @@
+package ru.wrappers;
+
+import org.eclipse.microprofile.openapi.annotations.media.Schema;
+import ru.dto.FAQSearchHitDTO;
+
+import java.util.List;
+
+@Schema(description = "Ответ от API, содержащий найденные записи FAQ по убыванию релевантности. Содержит текст ошибки в слачае возникновения таковой.")
+public class FAQSearchResponseWrapper extends GenericResponseWrapper<List<FAQSearchHitDTO>> {
+
+    public FAQSearchResponseWrapper(List<FAQSearchHitDTO> data) {
+        super(data);
+    }
+
+    public FAQSearchResponseWrapper(String message) {
+        super(message);
+    }
+}
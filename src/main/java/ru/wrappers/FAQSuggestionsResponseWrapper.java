@@ -0,0 +1,18 @@
+package ru.wrappers;
+
+import org.eclipse.microprofile.openapi.annotations.media.Schema;
+import ru.dto.FAQSuggestionDTO;
+
+import java.util.List;
+
+@Schema(description = "Ответ от API, содержащий похожие вопросы FAQ по убыванию сходства. Содержит текст ошибки в слачае возникновения таковой.")
+public class FAQSuggestionsResponseWrapper extends GenericResponseWrapper<List<FAQSuggestionDTO>> {
+
+    public FAQSuggestionsResponseWrapper(List<FAQSuggestionDTO> data) {
+        super(data);
+    }
+
+    public FAQSuggestionsResponseWrapper(String message) {
+        super(message);
+    }
+}
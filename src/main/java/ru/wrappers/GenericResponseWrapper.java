@@ -1,5 +1,6 @@
 package ru.wrappers;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import org.eclipse.microprofile.openapi.annotations.media.Schema;
 
 @Schema(description = "Стандартная обёртка для ответов API. Содержит данные (data) и сообщение (message).")
@@ -15,11 +16,21 @@ public class GenericResponseWrapper<T> {
     )
     public String message;
 
+    @Schema(description = "Курсор следующей страницы для постраничных запросов; передаётся как cursor в следующем запросе. " +
+            "Отсутствует на последней странице и в ответах без постраничного вывода.")
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public String nextCursor;
+
     public GenericResponseWrapper(T data) {
         this.data = data;
         message = "success";
     }
 
+    public GenericResponseWrapper(T data, String nextCursor) {
+        this(data);
+        this.nextCursor = nextCursor;
+    }
+
     public GenericResponseWrapper(String message) {
         this.message = message;
     }
@@ -36,6 +47,10 @@ public class GenericResponseWrapper<T> {
         return new GenericResponseWrapper<>("SqlServer Exception occurred: "+message);
     }
 
+    public static GenericResponseWrapper<?> journaled() {
+        return new GenericResponseWrapper<>("Database unavailable. Request saved and will be applied later; it can still be rejected then (user not found or already exists).");
+    }
+
     public static GenericResponseWrapper<?> customResponse(String message) {
         return new GenericResponseWrapper<>(message);
     }
@@ -0,0 +1,16 @@
+package ru.wrappers;
+
+import org.eclipse.microprofile.openapi.annotations.media.Schema;
+import ru.dto.IngestTicketDTO;
+
+@Schema(description = "Ответ от API, содержащий квитанцию асинхронно принятого вопроса. Содержит текст ошибки в слачае возникновения таковой.")
+public class IngestTicketResponseWrapper extends GenericResponseWrapper<IngestTicketDTO> {
+
+    public IngestTicketResponseWrapper(IngestTicketDTO data) {
+        super(data);
+    }
+
+    public IngestTicketResponseWrapper(String message) {
+        super(message);
+    }
+}
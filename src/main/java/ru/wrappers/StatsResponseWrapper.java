@@ -0,0 +1,17 @@
+package ru.wrappers;
+
+import org.eclipse.microprofile.openapi.annotations.media.Schema;
+
+import java.util.Map;
+
+@Schema(description = "Ответ от API, содержащий внутренние счётчики сервиса, сгруппированные по компонентам.")
+public class StatsResponseWrapper extends GenericResponseWrapper<Map<String, Map<String, Object>>> {
+
+    public StatsResponseWrapper(Map<String, Map<String, Object>> data) {
+        super(data);
+    }
+
+    public StatsResponseWrapper(String message) {
+        super(message);
+    }
+}
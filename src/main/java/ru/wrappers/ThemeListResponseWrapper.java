@@ -12,6 +12,10 @@ public class ThemeListResponseWrapper extends GenericResponseWrapper<List<Theme>
         super(data);
     }
 
+    public ThemeListResponseWrapper(List<Theme> data, String nextCursor) {
+        super(data, nextCursor);
+    }
+
     public ThemeListResponseWrapper(String message) {
         super(message);
     }
@@ -1,16 +1,20 @@
 package ru.wrappers;
 
 import org.eclipse.microprofile.openapi.annotations.media.Schema;
-import ru.entities.UserQuestion;
+import ru.dto.UserQuestionView;
 
 import java.util.List;
 @Schema(description = "Ответ от API, содержащий список записей если таковые имеются. Содержит текст ошибки в слачае возникновения таковой.")
-public class UserQuestionListResponseWrapper extends GenericResponseWrapper<List<UserQuestion>> {
+public class UserQuestionListResponseWrapper extends GenericResponseWrapper<List<UserQuestionView>> {
 
-    public UserQuestionListResponseWrapper(List<UserQuestion> data) {
+    public UserQuestionListResponseWrapper(List<UserQuestionView> data) {
         super(data);
     }
 
+    public UserQuestionListResponseWrapper(List<UserQuestionView> data, String nextCursor) {
+        super(data, nextCursor);
+    }
+
     public UserQuestionListResponseWrapper(String message) {
         super(message);
     }
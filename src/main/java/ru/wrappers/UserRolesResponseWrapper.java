@@ -0,0 +1,16 @@
+package ru.wrappers;
+
+import org.eclipse.microprofile.openapi.annotations.media.Schema;
+import ru.dto.UserRolesDTO;
+
+@Schema(description = "Ответ от API, содержащий роли пользователей и список ненайденных Id. Содержит текст ошибки в слачае возникновения таковой.")
+public class UserRolesResponseWrapper extends GenericResponseWrapper<UserRolesDTO> {
+
+    public UserRolesResponseWrapper(UserRolesDTO data) {
+        super(data);
+    }
+
+    public UserRolesResponseWrapper(String message) {
+        super(message);
+    }
+}
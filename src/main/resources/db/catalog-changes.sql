@@ -0,0 +1,14 @@
+-- Журнал изменений каталога (темы и FAQ) для /DB/catalog/snapshot и /DB/catalog/changes.
+-- Строка пишется в той же транзакции, что и изменение, поэтому без таблицы не проходит ни одна запись тем и FAQ.
+-- Скрипт можно выполнять повторно
+IF OBJECT_ID(N'dbo.Catalog_Changes', N'U') IS NULL
+BEGIN
+    CREATE TABLE dbo.Catalog_Changes (
+        Version bigint IDENTITY(1,1) NOT NULL PRIMARY KEY,
+        Entity_Type nvarchar(10) NOT NULL,
+        Entity_ID bigint NOT NULL,
+        Action nvarchar(10) NOT NULL,
+        Changed_At datetime2 NOT NULL
+    );
+END;
+GO
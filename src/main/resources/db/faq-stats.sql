@@ -0,0 +1,12 @@
+-- Накопленные показы и отметки «полезно» записей FAQ, которые периодически сбрасывает FAQStats.
+-- Без таблицы сброс не проходит, счётчики возвращаются в память и копятся, а /DB/FAQ/popular отвечает ошибкой.
+-- Скрипт можно выполнять повторно
+IF OBJECT_ID(N'dbo.FAQ_Stats', N'U') IS NULL
+BEGIN
+    CREATE TABLE dbo.FAQ_Stats (
+        FAQ_ID bigint NOT NULL PRIMARY KEY REFERENCES dbo.FAQ(ID) ON DELETE CASCADE,
+        Views bigint NOT NULL,
+        Helpful bigint NOT NULL
+    );
+END;
+GO
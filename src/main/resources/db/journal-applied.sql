@@ -0,0 +1,12 @@
+-- Последний применённый к БД номер записи журнала записей (WriteJournal), по идентификатору журнала.
+-- JournalReplayer меняет номер в одной транзакции со вставкой вопроса, поэтому запись, применённая перед сбоем
+-- до сохранения контрольной точки, при повторе не вставляется второй раз.
+-- Скрипт можно выполнять повторно
+IF OBJECT_ID(N'dbo.Journal_Applied', N'U') IS NULL
+BEGIN
+    CREATE TABLE dbo.Journal_Applied (
+        Journal_ID nvarchar(36) NOT NULL PRIMARY KEY,
+        Last_Seq bigint NOT NULL
+    );
+END;
+GO
@@ -0,0 +1,106 @@
+package ru.cache;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.smallrye.mutiny.Uni;
+import io.smallrye.mutiny.helpers.test.UniAssertSubscriber;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import ru.endPoints.SingleFlight;
+import ru.events.ChangeAction;
+import ru.events.FAQChangedEvent;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+class CatalogVersionsTest {
+
+    private static final int THEME_ID = 1;
+
+    private CatalogVersions versions;
+    private JsonBodyCache bodyCache;
+    private SingleFlight singleFlight;
+
+    private final AtomicInteger loads = new AtomicInteger();
+    private CompletableFuture<List<String>> database;
+
+    @BeforeEach
+    void setUp() {
+        bodyCache = new JsonBodyCache();
+        bodyCache.mapper = new ObjectMapper();
+        versions = new CatalogVersions();
+        versions.faqCache = new FAQCache();
+        versions.bodyCache = bodyCache;
+        singleFlight = new SingleFlight();
+    }
+
+    //Как FAQResource.getAllByTheme: общая загрузка, тег ответа - из тела
+    private UniAssertSubscriber<JsonBodyCache.CachedBody> request() {
+        return singleFlight.execute("faq:theme:" + THEME_ID, ()->bodyCache.get(JsonBodyCache.faqKey(THEME_ID),
+                        ()->versions.faqTag(THEME_ID),
+                        this::load))
+                .subscribe().withSubscriber(UniAssertSubscriber.create());
+    }
+
+    private Uni<?> load() {
+        loads.incrementAndGet();
+        return Uni.createFrom().completionStage(database);
+    }
+
+    private void faqChanged() {
+        versions.onFAQChanged(new FAQChangedEvent(ChangeAction.UPDATED, 10L, THEME_ID, null, null, 1L));
+    }
+
+    private static String json(JsonBodyCache.CachedBody body) {
+        return new String(body.json(), StandardCharsets.UTF_8);
+    }
+
+    @Test
+    void requestJoiningLoadStartedBeforeChangeGetsOldTag() {
+        String oldTag = versions.faqTag(THEME_ID);
+        database = new CompletableFuture<>();
+        UniAssertSubscriber<JsonBodyCache.CachedBody> first = request();
+
+        //Изменение между началом загрузки и её окончанием, второй запрос присоединяется к той же загрузке
+        faqChanged();
+        String newTag = versions.faqTag(THEME_ID);
+        assertNotEquals(oldTag, newTag);
+        UniAssertSubscriber<JsonBodyCache.CachedBody> joined = request();
+
+        database.complete(List.of("old"));
+        assertEquals(1, loads.get());
+        assertEquals(oldTag, first.awaitItem().getItem().tag());
+        assertEquals(oldTag, joined.awaitItem().getItem().tag());
+        assertEquals("[\"old\"]", json(joined.getItem()));
+
+        //Тело прочитано до изменения и в кэш не попало: следующий запрос читает заново под новым тегом
+        database = CompletableFuture.completedFuture(List.of("new"));
+        JsonBodyCache.CachedBody fresh = request().awaitItem().getItem();
+        assertEquals(2, loads.get());
+        assertEquals(newTag, fresh.tag());
+        assertEquals("[\"new\"]", json(fresh));
+    }
+
+    @Test
+    void bodyCachedUnderOldTagIsReloaded() {
+        //Загрузка закончилась между сбросом кэша и сменой версии: тело сохранено под прежним тегом
+        AtomicReference<String> tag = new AtomicReference<>("v1");
+        database = CompletableFuture.completedFuture(List.of("v1"));
+        bodyCache.get(JsonBodyCache.faqKey(THEME_ID), tag::get, this::load).await().indefinitely();
+        bodyCache.get(JsonBodyCache.faqKey(THEME_ID), tag::get, this::load).await().indefinitely();
+        assertEquals(1, loads.get());
+
+        tag.set("v2");
+        database = CompletableFuture.completedFuture(List.of("v2"));
+        JsonBodyCache.CachedBody reloaded = bodyCache.get(JsonBodyCache.faqKey(THEME_ID), tag::get, this::load)
+                .await().indefinitely();
+        assertEquals(2, loads.get());
+        assertEquals("v2", reloaded.tag());
+        assertEquals("[\"v2\"]", json(reloaded));
+    }
+}
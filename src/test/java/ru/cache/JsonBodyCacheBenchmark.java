@@ -0,0 +1,94 @@
+package ru.cache;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.smallrye.mutiny.Uni;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.dto.FAQView;
+import ru.wrappers.FAQListResponseWrapper;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import java.util.zip.GZIPOutputStream;
+
+//Тело ответа со списком FAQ темы: сериализация обёртки Jackson на каждый запрос против готовых байтов из JsonBodyCache.
+//Аллокации на операцию - профилировщик gc (gc.alloc.rate.norm).
+//Запуск: ./mvnw test-compile exec:exec -Dexec.classpathScope=test -Dexec.executable=java
+//        -Dexec.args="-cp %classpath org.openjdk.jmh.Main JsonBodyCacheBenchmark -prof gc"
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JsonBodyCacheBenchmark {
+
+    private static final String KEY = JsonBodyCache.faqKey(1);
+    private static final Supplier<String> TAG = ()->"bench";
+
+    //Записей в теме
+    @Param({"10", "100", "1000"})
+    int faqCount;
+
+    private ObjectMapper mapper;
+    private FAQListResponseWrapper wrapper;
+    private JsonBodyCache cache;
+    private Supplier<Uni<?>> loader;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        mapper = new ObjectMapper();
+        List<FAQView> faqs = new ArrayList<>(faqCount);
+        for (int i = 1; i <= faqCount; i++) {
+            faqs.add(new FAQView((long) i,
+                    "Как получить справку об обучении для военкомата, вопрос номер " + i + "?",
+                    ("Справку можно заказать в личном кабинете студента в разделе «Документы» или лично в деканате. "
+                            + "Срок изготовления - три рабочих дня, при себе нужно иметь студенческий билет. ").repeat(4),
+                    "Документы"));
+        }
+        wrapper = new FAQListResponseWrapper(faqs);
+        cache = new JsonBodyCache();
+        cache.mapper = mapper;
+        loader = ()->Uni.createFrom().item(wrapper);
+        //Первое обращение заполняет кэш
+        cache.get(KEY, TAG, loader).await().indefinitely().gzip();
+    }
+
+    @Benchmark
+    public byte[] jacksonPerRequest() throws IOException {
+        return mapper.writeValueAsBytes(wrapper);
+    }
+
+    @Benchmark
+    public byte[] cachedBytes() {
+        return cache.get(KEY, TAG, loader).await().indefinitely().json();
+    }
+
+    @Benchmark
+    public byte[] jacksonAndGzipPerRequest() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            mapper.writeValue(gzip, wrapper);
+        }
+        return out.toByteArray();
+    }
+
+    @Benchmark
+    public byte[] cachedGzipBytes() {
+        return cache.get(KEY, TAG, loader).await().indefinitely().gzip();
+    }
+}
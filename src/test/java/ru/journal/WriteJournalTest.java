@@ -0,0 +1,239 @@
+package ru.journal;
+
+import io.smallrye.mutiny.helpers.test.UniAssertSubscriber;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class WriteJournalTest {
+
+    private static final LocalDateTime DATE = LocalDateTime.of(2025, 9, 21, 15, 42, 34);
+
+    @TempDir
+    Path dir;
+
+    private final List<WriteJournal> opened = new ArrayList<>();
+
+    @AfterEach
+    void closeAll() {
+        opened.forEach(WriteJournal::close);
+    }
+
+    private WriteJournal open(int segmentSize, int maxSegments) {
+        WriteJournal journal = new WriteJournal();
+        journal.dir = dir.toString();
+        journal.segmentSize = segmentSize;
+        journal.maxSegments = maxSegments;
+        journal.open();
+        opened.add(journal);
+        return journal;
+    }
+
+    private void close(WriteJournal journal) {
+        journal.close();
+        opened.remove(journal);
+    }
+
+    private List<Path> segmentFiles() throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.filter(file->file.getFileName().toString().endsWith(".log")).sorted().toList();
+        }
+    }
+
+    @Test
+    void entriesAreReadInOrderUntilCommitted() {
+        WriteJournal journal = open(4096, 4);
+        assertEquals(1, journal.appendQuestion(7L, "Как поступить?", DATE));
+        assertEquals(2, journal.appendUser(8L, "Иван"));
+        assertTrue(journal.hasPending());
+
+        JournalEntry first = journal.peek();
+        assertEquals(new JournalEntry(1, JournalEntry.Kind.QUESTION, 7L, "Как поступить?", DATE), first);
+        //Без commit та же запись возвращается снова
+        assertEquals(first, journal.peek());
+
+        journal.commit(1);
+        assertEquals(new JournalEntry(2, JournalEntry.Kind.USER, 8L, "Иван", null), journal.peek());
+        journal.commit(2);
+        assertNull(journal.peek());
+        assertFalse(journal.hasPending());
+    }
+
+    @Test
+    void stringsOutsideBmpSurviveRoundTrip() {
+        WriteJournal journal = open(4096, 4);
+        String question = "Где расписание? 😀 \u0000 конец";
+        journal.appendQuestion(7L, question, DATE);
+        journal.appendUser(8L, "👨‍💻");
+        journal.appendUser(9L, null);
+
+        assertEquals(question, journal.peek().text());
+        journal.commit(1);
+        assertEquals("👨‍💻", journal.peek().text());
+        journal.commit(2);
+        assertNull(journal.peek().text());
+    }
+
+    @Test
+    void rolloverDeletesAppliedSegments() throws IOException {
+        WriteJournal journal = open(128, 16);
+        for (int i = 1; i <= 10; i++) {
+            journal.appendQuestion((long) i, "вопрос " + i, DATE);
+        }
+        int created = segmentFiles().size();
+        assertTrue(created > 1, "records must span several segments");
+
+        for (int i = 1; i <= 10; i++) {
+            JournalEntry entry = journal.peek();
+            assertEquals(i, entry.seq());
+            assertEquals("вопрос " + i, entry.text());
+            journal.commit(entry.seq());
+        }
+        assertNull(journal.peek());
+        assertEquals(1, segmentFiles().size());
+
+        //Запись продолжается после применённых
+        assertEquals(11, journal.appendUser(11L, "после"));
+        assertEquals(11, journal.peek().seq());
+    }
+
+    @Test
+    void reopenResumesAfterCheckpoint() throws IOException {
+        WriteJournal journal = open(128, 16);
+        for (int i = 1; i <= 6; i++) {
+            journal.appendUser((long) i, "имя " + i);
+        }
+        for (int i = 1; i <= 4; i++) {
+            journal.commit(journal.peek().seq());
+        }
+        close(journal);
+
+        journal = open(128, 16);
+        assertTrue(journal.hasPending());
+        assertEquals(5, journal.peek().seq());
+        assertEquals(7, journal.appendUser(7L, "новый"));
+        journal.commit(5);
+        assertEquals(6, journal.peek().seq());
+    }
+
+    @Test
+    void idSurvivesReopenAndDiffersForNewDirectory(@TempDir Path other) {
+        WriteJournal journal = open(4096, 4);
+        String id = journal.id();
+        assertNotNull(id);
+        close(journal);
+        assertEquals(id, open(4096, 4).id());
+
+        //Другой каталог - номера записей начинаются заново, идентификатор другой
+        WriteJournal fresh = new WriteJournal();
+        fresh.dir = other.toString();
+        fresh.segmentSize = 4096;
+        fresh.maxSegments = 4;
+        fresh.open();
+        opened.add(fresh);
+        assertNotEquals(id, fresh.id());
+    }
+
+    @Test
+    void tornTailIsTruncatedAndOverwritten() throws IOException {
+        WriteJournal journal = open(4096, 4);
+        journal.appendUser(1L, "первый");
+        journal.appendUser(2L, "второй");
+        journal.appendUser(3L, "третий");
+        close(journal);
+
+        //Портим тело последней записи, как будто запись оборвалась на середине
+        Path segment = segmentFiles().get(0);
+        byte[] bytes = Files.readAllBytes(segment);
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        int position = 0;
+        for (int i = 0; i < 2; i++) {
+            position += 8 + buffer.getInt(position);
+        }
+        bytes[position + 8 + 12] ^= 1;
+        Files.write(segment, bytes);
+
+        journal = open(4096, 4);
+        assertEquals(2L, journal.stats().get("lastSeq"));
+        assertEquals(3, journal.appendUser(4L, "заново"));
+        journal.commit(2);
+        JournalEntry entry = journal.peek();
+        assertEquals(3, entry.seq());
+        assertEquals(4L, entry.userId());
+        assertEquals("заново", entry.text());
+    }
+
+    @Test
+    void damagedCheckpointSlotFallsBackToPrevious() throws IOException {
+        WriteJournal journal = open(4096, 4);
+        journal.appendUser(1L, "a");
+        journal.appendUser(2L, "b");
+        journal.appendUser(3L, "c");
+        journal.commit(1);
+        journal.commit(2);
+        close(journal);
+
+        //Слот с последней точкой недописан - остаётся предыдущая
+        Path checkpoint = dir.resolve("checkpoint");
+        byte[] bytes = Files.readAllBytes(checkpoint);
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        int latest = buffer.getLong(0) == 2 ? 0 : 16;
+        assertEquals(2, buffer.getLong(latest));
+        bytes[latest + 8] ^= 1;
+        Files.write(checkpoint, bytes);
+
+        journal = open(4096, 4);
+        assertEquals(1L, journal.stats().get("checkpoint"));
+        assertEquals(2, journal.peek().seq());
+
+        //Следующая точка пишется в испорченный слот, уцелевший остаётся
+        journal.commit(2);
+        close(journal);
+        journal = open(4096, 4);
+        assertEquals(3, journal.peek().seq());
+    }
+
+    @Test
+    void fullJournalRejectsWritesAsConnectException() {
+        WriteJournal journal = open(128, 2);
+        assertThrows(IllegalStateException.class, ()->{
+            for (int i = 0; i < 100; i++) {
+                journal.appendQuestion(1L, "x".repeat(40), DATE);
+            }
+        });
+
+        journal.addQuestion(1L, "x".repeat(40))
+                .subscribe().withSubscriber(UniAssertSubscriber.create())
+                .awaitFailure()
+                .assertFailedWith(ConnectException.class);
+
+        //После применения место освобождается
+        JournalEntry entry;
+        while ((entry = journal.peek()) != null) {
+            journal.commit(entry.seq());
+        }
+        Long seq = journal.addUser(2L, "y")
+                .subscribe().withSubscriber(UniAssertSubscriber.create())
+                .awaitItem()
+                .getItem();
+        assertNotNull(seq);
+    }
+}
@@ -0,0 +1,121 @@
+package ru.search;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.dto.FAQSuggestionDTO;
+import ru.entities.FAQ;
+import ru.entities.Theme;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+//Время поиска похожих вопросов в зависимости от размера базы FAQ.
+//База синтетическая: вопросы из случайных слов общего словаря, запрос - вопрос из базы с опечаткой или случайный текст.
+//Запуск: ./mvnw test-compile exec:exec -Dexec.classpathScope=test -Dexec.executable=java
+//        -Dexec.args="-cp %classpath org.openjdk.jmh.Main FAQTrigramIndexBenchmark"
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FAQTrigramIndexBenchmark {
+
+    private static final String[] SYLLABLES = {
+            "ра", "по", "ст", "ни", "ко", "ве", "де", "за", "мо", "ли", "те", "ка", "про", "спи", "ние", "ать",
+            "ость", "ный", "ска", "вод", "ход", "реч", "лен", "сан", "при", "пе", "тор", "ул", "иск", "дом"
+    };
+    private static final int VOCABULARY_SIZE = 5000;
+    private static final int QUERIES = 256;
+
+    @Param({"1000", "10000", "100000"})
+    int corpusSize;
+
+    private FAQTrigramIndex index;
+    private String[] typoQueries;
+    private String[] unrelatedQueries;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Random random = new Random(42);
+        String[] vocabulary = new String[VOCABULARY_SIZE];
+        for (int i = 0; i < vocabulary.length; i++) {
+            vocabulary[i] = word(random);
+        }
+        Theme theme = new Theme();
+        theme.setId(1);
+
+        index = new FAQTrigramIndex();
+        index.clear();
+        String[] questions = new String[corpusSize];
+        for (int i = 0; i < corpusSize; i++) {
+            questions[i] = sentence(random, vocabulary);
+            FAQ faq = new FAQ();
+            faq.setId((long) i + 1);
+            faq.setQuestion(questions[i]);
+            faq.setTheme(theme);
+            index.add(faq);
+        }
+        index.afterLoad();
+
+        typoQueries = new String[QUERIES];
+        unrelatedQueries = new String[QUERIES];
+        for (int i = 0; i < QUERIES; i++) {
+            typoQueries[i] = typo(random, questions[random.nextInt(corpusSize)]);
+            unrelatedQueries[i] = sentence(random, vocabulary);
+        }
+    }
+
+    @Benchmark
+    public List<FAQSuggestionDTO> suggestWithTypo() {
+        return index.suggestLoaded(typoQueries[next++ & (QUERIES - 1)], 5, 0.3);
+    }
+
+    @Benchmark
+    public List<FAQSuggestionDTO> suggestUnrelated() {
+        return index.suggestLoaded(unrelatedQueries[next++ & (QUERIES - 1)], 5, 0.3);
+    }
+
+    private static String word(Random random) {
+        StringBuilder word = new StringBuilder();
+        int syllables = 2 + random.nextInt(3);
+        for (int i = 0; i < syllables; i++) {
+            word.append(SYLLABLES[random.nextInt(SYLLABLES.length)]);
+        }
+        return word.toString();
+    }
+
+    private static String sentence(Random random, String[] vocabulary) {
+        StringBuilder sentence = new StringBuilder();
+        int words = 5 + random.nextInt(8);
+        for (int i = 0; i < words; i++) {
+            if (i > 0) {
+                sentence.append(' ');
+            }
+            sentence.append(vocabulary[random.nextInt(vocabulary.length)]);
+        }
+        return sentence.append('?').toString();
+    }
+
+    //Переставить две соседние буквы
+    private static String typo(Random random, String text) {
+        char[] chars = text.toCharArray();
+        int position = random.nextInt(chars.length - 2);
+        char swapped = chars[position];
+        chars[position] = chars[position + 1];
+        chars[position + 1] = swapped;
+        return new String(chars);
+    }
+}
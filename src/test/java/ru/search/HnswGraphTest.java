@@ -0,0 +1,173 @@
+package ru.search;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class HnswGraphTest {
+
+    private static final int DIMENSION = 32;
+    private static final int K = 10;
+    private static final int EF = 50;
+
+    private final Random random = new Random(7);
+
+    private float[] randomVector() {
+        float[] vector = new float[DIMENSION];
+        double norm = 0;
+        for (int i = 0; i < DIMENSION; i++) {
+            vector[i] = (float) random.nextGaussian();
+            norm += vector[i] * vector[i];
+        }
+        for (int i = 0; i < DIMENSION; i++) {
+            vector[i] /= (float) Math.sqrt(norm);
+        }
+        return vector;
+    }
+
+    private static float dot(float[] a, float[] b) {
+        float sum = 0;
+        for (int i = 0; i < a.length; i++) {
+            sum += a[i] * b[i];
+        }
+        return sum;
+    }
+
+    private HnswGraph graph(float[][] vectors) {
+        HnswGraph graph = new HnswGraph(DIMENSION, 16, 100);
+        for (float[] vector : vectors) {
+            graph.add(vector);
+        }
+        return graph;
+    }
+
+    //k ближайших перебором, без удалённых
+    private static int[] bruteForce(HnswGraph graph, float[][] vectors, float[] query, int k) {
+        return IntStream.range(0, vectors.length)
+                .filter(node->!graph.isDeleted(node))
+                .boxed()
+                .sorted(Comparator.comparingDouble(node->-dot(query, vectors[node])))
+                .limit(k)
+                .mapToInt(Integer::intValue)
+                .toArray();
+    }
+
+    private double recall(HnswGraph graph, float[][] vectors, float[][] queries) {
+        int found = 0;
+        for (float[] query : queries) {
+            int[] expected = bruteForce(graph, vectors, query, K);
+            int[] actual = graph.search(query, K, EF).nodes();
+            for (int node : actual) {
+                if (Arrays.stream(expected).anyMatch(e->e == node)) {
+                    found++;
+                }
+            }
+        }
+        return (double) found / (queries.length * K);
+    }
+
+    private float[][] vectors(int count) {
+        float[][] vectors = new float[count][];
+        for (int i = 0; i < count; i++) {
+            vectors[i] = randomVector();
+        }
+        return vectors;
+    }
+
+    @Test
+    void recallAgainstBruteForce() {
+        float[][] vectors = vectors(3000);
+        HnswGraph graph = graph(vectors);
+        double recall = recall(graph, vectors, vectors(100));
+        assertTrue(recall >= 0.9, "recall " + recall);
+    }
+
+    @Test
+    void resultsAreSortedAndSkipDeleted() {
+        float[][] vectors = vectors(2000);
+        HnswGraph graph = graph(vectors);
+        float[] query = randomVector();
+        int[] before = graph.search(query, K, EF).nodes();
+        for (int i = 0; i < 3; i++) {
+            graph.delete(before[i]);
+        }
+        assertEquals(3, graph.deletedCount());
+
+        HnswGraph.SearchResult result = graph.search(query, K, EF);
+        assertEquals(K, result.nodes().length);
+        for (int i = 0; i < result.nodes().length; i++) {
+            assertFalse(graph.isDeleted(result.nodes()[i]));
+            assertEquals(dot(query, vectors[result.nodes()[i]]), result.scores()[i], 1e-5);
+            if (i > 0) {
+                assertTrue(result.scores()[i - 1] >= result.scores()[i]);
+            }
+        }
+        //Удалённые узлы продолжают участвовать в обходе - качество не падает
+        double recall = recall(graph, vectors, vectors(100));
+        assertTrue(recall >= 0.9, "recall " + recall);
+    }
+
+    @Test
+    void writeReadRoundTrip() throws IOException {
+        float[][] vectors = vectors(1500);
+        HnswGraph graph = graph(vectors);
+        graph.delete(10);
+        graph.delete(500);
+
+        byte[] written = write(graph);
+        HnswGraph read = HnswGraph.read(new DataInputStream(new ByteArrayInputStream(written)));
+        assertEquals(graph.size(), read.size());
+        assertEquals(2, read.deletedCount());
+        assertTrue(read.isDeleted(10));
+        assertTrue(read.isDeleted(500));
+        assertArrayEquals(vectors[42], read.vector(42));
+        //Те же связи - те же ответы и те же байты при повторной записи
+        for (float[] query : vectors(20)) {
+            assertArrayEquals(graph.search(query, K, EF).nodes(), read.search(query, K, EF).nodes());
+        }
+        assertArrayEquals(written, write(read));
+
+        //Прочитанный граф продолжает принимать узлы
+        int node = read.add(vectors[0]);
+        assertEquals(graph.size(), node);
+        assertTrue(Arrays.stream(read.search(vectors[0], 2, EF).nodes()).anyMatch(n->n == node));
+    }
+
+    @Test
+    void copyIsIndependent() throws IOException {
+        float[][] vectors = vectors(500);
+        HnswGraph graph = graph(vectors);
+        HnswGraph copy = graph.copy();
+        byte[] before = write(copy);
+        assertArrayEquals(write(graph), before);
+
+        for (int i = 0; i < 100; i++) {
+            graph.add(randomVector());
+        }
+        graph.delete(0);
+        assertEquals(500, copy.size());
+        assertFalse(copy.isDeleted(0));
+        assertArrayEquals(before, write(copy));
+    }
+
+    private static byte[] write(HnswGraph graph) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            graph.write(out);
+        }
+        return bytes.toByteArray();
+    }
+}
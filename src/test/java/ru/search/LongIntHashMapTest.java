@@ -0,0 +1,106 @@
+package ru.search;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class LongIntHashMapTest {
+
+    //Начальная ёмкость таблицы; до 12 записей она не растёт
+    private static final int CAPACITY = 16;
+
+    //Ключи с одной начальной ячейкой в таблице из CAPACITY ячеек
+    private static List<Long> collidingKeys(int home, int count) {
+        List<Long> keys = new ArrayList<>();
+        for (long key = 1; keys.size() < count; key++) {
+            if ((LongIntHashMap.mix(key) & (CAPACITY - 1)) == home) {
+                keys.add(key);
+            }
+        }
+        return keys;
+    }
+
+    @Test
+    void removeInsideCollisionChainKeepsFollowingKeysReachable() {
+        List<Long> keys = collidingKeys(CAPACITY - 2, 6);
+        //Цепочка начинается в предпоследней ячейке и переходит через конец таблицы
+        LongIntHashMap map = new LongIntHashMap();
+        for (int i = 0; i < keys.size(); i++) {
+            map.put(keys.get(i), i);
+        }
+
+        map.remove(keys.get(1));
+        assertEquals(LongIntHashMap.MISSING, map.get(keys.get(1)));
+        for (int i = 0; i < keys.size(); i++) {
+            if (i != 1) {
+                assertEquals(i, map.get(keys.get(i)));
+            }
+        }
+
+        map.remove(keys.get(0));
+        map.put(keys.get(1), 10);
+        map.put(keys.get(0), 20);
+        assertEquals(6, map.size());
+        assertEquals(20, map.get(keys.get(0)));
+        assertEquals(10, map.get(keys.get(1)));
+        for (int i = 2; i < keys.size(); i++) {
+            assertEquals(i, map.get(keys.get(i)));
+        }
+    }
+
+    @Test
+    void removeDoesNotMoveKeyAboveItsHome() {
+        //Ключи двух цепочек вперемешку: сдвигать можно только те, чья начальная ячейка не после освободившейся
+        List<Long> first = collidingKeys(3, 3);
+        List<Long> second = collidingKeys(4, 3);
+        LongIntHashMap map = new LongIntHashMap();
+        for (int i = 0; i < 3; i++) {
+            map.put(first.get(i), i);
+            map.put(second.get(i), 100 + i);
+        }
+        map.remove(first.get(0));
+        map.remove(second.get(1));
+        map.remove(first.get(2));
+        assertEquals(3, map.size());
+        assertEquals(1, map.get(first.get(1)));
+        assertEquals(100, map.get(second.get(0)));
+        assertEquals(102, map.get(second.get(2)));
+        assertEquals(LongIntHashMap.MISSING, map.get(first.get(0)));
+        assertEquals(LongIntHashMap.MISSING, map.get(second.get(1)));
+        assertEquals(LongIntHashMap.MISSING, map.get(first.get(2)));
+    }
+
+    @Test
+    void matchesHashMapUnderRandomPutsAndRemoves() {
+        Random random = new Random(11);
+        LongIntHashMap map = new LongIntHashMap();
+        Map<Long, Integer> expected = new HashMap<>();
+        //Маленький набор ключей - длинные цепочки и частые повторные вставки после удаления
+        for (int step = 0; step < 200_000; step++) {
+            long key = random.nextInt(300) * 1024L;
+            if (random.nextInt(3) == 0) {
+                map.remove(key);
+                expected.remove(key);
+            } else {
+                map.put(key, step);
+                expected.put(key, step);
+            }
+            if (step % 1000 == 0) {
+                assertEquals(expected.size(), map.size());
+                for (long k = 0; k < 300; k++) {
+                    assertEquals(expected.getOrDefault(k * 1024L, LongIntHashMap.MISSING), map.get(k * 1024L));
+                }
+            }
+        }
+
+        map.clear();
+        assertEquals(0, map.size());
+        expected.keySet().forEach(key->assertEquals(LongIntHashMap.MISSING, map.get(key)));
+    }
+}
@@ -0,0 +1,119 @@
+package ru.search;
+
+import org.junit.jupiter.api.Test;
+import ru.dto.CompletionDTO;
+import ru.entities.FAQ;
+import ru.entities.Theme;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TypeaheadIndexTest {
+
+    private static Theme theme(int id, String name) {
+        Theme theme = new Theme();
+        theme.setId(id);
+        theme.setName(name);
+        return theme;
+    }
+
+    private static FAQ faq(long id, String question, Theme theme) {
+        FAQ faq = new FAQ();
+        faq.setId(id);
+        faq.setQuestion(question);
+        faq.setTheme(theme);
+        return faq;
+    }
+
+    private static List<String> texts(List<CompletionDTO> completions) {
+        return completions.stream().map(completion->completion.text).toList();
+    }
+
+    @Test
+    void prefixMatchesWordStartsInRankOrder() {
+        TypeaheadIndex index = new TypeaheadIndex();
+        Theme schedule = theme(1, "Расписание");
+        Theme documents = theme(2, "Документы");
+        index.addTheme(schedule);
+        index.addTheme(documents);
+        index.addTheme(theme(3, "Учёба"));
+        index.add(faq(1, "Где посмотреть расписание экзаменов?", schedule));
+        index.add(faq(2, "Расписание звонков", schedule));
+        index.add(faq(3, "Как получить справку о расписании?", documents));
+        index.add(faq(4, "Перерасписание не найдено", documents));
+        index.setWeights(Map.of(1L, 5L, 3L, 5L));
+
+        //Вес 5: сначала короче текст; тема «Расписание» с двумя FAQ - вес 2; затем вес 0
+        assertEquals(List.of("Как получить справку о расписании?", "Где посмотреть расписание экзаменов?",
+                        "Расписание", "Расписание звонков"),
+                texts(index.completeLoaded("расп", 10)));
+        assertEquals(List.of("Как получить справку о расписании?", "Где посмотреть расписание экзаменов?"),
+                texts(index.completeLoaded("РАСП", 2)));
+        assertEquals(List.of("Учёба"), texts(index.completeLoaded("учеб", 10)));
+
+        //Несколько слов - префикс фразы
+        assertEquals(List.of("Где посмотреть расписание экзаменов?"), texts(index.completeLoaded("расписание экз", 10)));
+        //Законченное слово дополняется только следующими словами
+        assertEquals(List.of("Где посмотреть расписание экзаменов?", "Расписание звонков"),
+                texts(index.completeLoaded("расписание ", 10)));
+        assertEquals(List.of(), index.completeLoaded("звонк экз", 10));
+
+        CompletionDTO theme = index.completeLoaded("докум", 10).get(0);
+        assertEquals(TypeaheadIndex.THEME_TYPE, theme.type);
+        assertEquals(2L, theme.id);
+        assertEquals(2, theme.weight);
+    }
+
+    @Test
+    void matchesBruteForceOnRandomCorpus() {
+        Random random = new Random(3);
+        String[] words = {"справка", "спорт", "стипендия", "сессия", "расписание", "распределение", "общежитие",
+                "обучение", "перевод", "пересдача", "пропуск", "практика", "диплом", "документы", "деканат"};
+        TypeaheadIndex index = new TypeaheadIndex();
+        Map<Long, String> questions = new HashMap<>();
+        Map<Long, Long> weights = new HashMap<>();
+        Theme theme = theme(1, "Учёба");
+        index.addTheme(theme);
+        for (long id = 1; id <= 500; id++) {
+            //Тексты без повторов, чтобы порядок равных по весу и длине был однозначным
+            StringBuilder question;
+            do {
+                question = new StringBuilder();
+                int count = 2 + random.nextInt(5);
+                for (int i = 0; i < count; i++) {
+                    question.append(i > 0 ? " " : "").append(words[random.nextInt(words.length)]);
+                }
+            } while (questions.containsValue(question.toString()));
+            questions.put(id, question.toString());
+            weights.put(id, (long) random.nextInt(20));
+            index.add(faq(id, question.toString(), theme));
+        }
+        index.setWeights(weights);
+
+        for (String word : words) {
+            for (int length = 2; length <= word.length(); length += 3) {
+                String prefix = word.substring(0, length);
+                List<CompletionDTO> actual = index.completeLoaded(prefix, 10);
+                List<Long> expected = questions.entrySet().stream()
+                        .filter(entry->List.of(entry.getValue().split(" ")).stream().anyMatch(w->w.startsWith(prefix)))
+                        .sorted(Comparator.<Map.Entry<Long, String>>comparingLong(entry->-weights.get(entry.getKey()))
+                                .thenComparingInt(entry->entry.getValue().length())
+                                .thenComparing(Map.Entry::getValue))
+                        .limit(10)
+                        .map(Map.Entry::getKey)
+                        .toList();
+                List<Long> ids = new ArrayList<>();
+                actual.forEach(completion->ids.add(completion.id));
+                assertEquals(expected, ids, prefix);
+                assertTrue(actual.stream().allMatch(completion->TypeaheadIndex.FAQ_TYPE.equals(completion.type)));
+            }
+        }
+    }
+}